@@ -0,0 +1,57 @@
+package org.corfudb.benchmark;
+
+import org.corfudb.protocols.wireprotocol.ILogUnitEntry;
+import org.corfudb.runtime.CorfuRuntime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading entries through the address space view, both from the
+ * read cache and (with the cache disabled) from the log unit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddressSpaceViewBenchmark {
+
+    /** The number of entries written to the log before reading. */
+    static final int NUM_ENTRIES = 1_000;
+
+    @Param({"IN_PROCESS", "LOOPBACK"})
+    BenchmarkRuntimes.Transport transport;
+
+    @Param({"true", "false"})
+    boolean cacheDisabled;
+
+    CorfuRuntime runtime;
+
+    @Setup
+    public void setup() throws Exception {
+        runtime = BenchmarkRuntimes.getRuntime(transport);
+        for (long address = 0; address < NUM_ENTRIES; address++) {
+            runtime.getAddressSpaceView().write(address, Collections.emptySet(), new byte[128],
+                    Collections.emptyMap());
+        }
+        runtime.setCacheDisabled(cacheDisabled);
+    }
+
+    @State(Scope.Thread)
+    public static class ReadPosition {
+        long address;
+
+        long next() {
+            address = (address + 1) % NUM_ENTRIES;
+            return address;
+        }
+    }
+
+    @Benchmark
+    public ILogUnitEntry read(ReadPosition position) {
+        return runtime.getAddressSpaceView().read(position.next());
+    }
+}
@@ -0,0 +1,112 @@
+package org.corfudb.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.google.common.collect.ImmutableMap;
+import org.corfudb.infrastructure.CorfuServer;
+import org.corfudb.infrastructure.LayoutServer;
+import org.corfudb.infrastructure.LogUnitServer;
+import org.corfudb.infrastructure.SequencerServer;
+import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.clients.BaseClient;
+import org.corfudb.runtime.clients.LayoutClient;
+import org.corfudb.runtime.clients.LogUnitClient;
+import org.corfudb.runtime.clients.SequencerClient;
+import org.corfudb.runtime.clients.TestClientRouter;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Map;
+
+/**
+ * Creates the runtimes the benchmarks run against.
+ *
+ * An in-process runtime routes messages to servers in the same JVM through a
+ * TestClientRouter, which serializes and deserializes every message but does not
+ * touch the network. A loopback runtime connects through Netty to a Corfu server
+ * running in memory on a local port.
+ */
+public class BenchmarkRuntimes {
+
+    /** The transport a benchmark runtime uses to reach the servers. */
+    public enum Transport {
+        IN_PROCESS,
+        LOOPBACK
+    }
+
+    static final String IN_PROCESS_ENDPOINT = "localhost:9000";
+
+    /** Get a runtime connected to a single-node, in-memory Corfu instance.
+     *
+     * @param transport     The transport to connect with.
+     * @return              A connected runtime.
+     */
+    public static CorfuRuntime getRuntime(Transport transport) throws Exception {
+        quietLogging();
+        switch (transport) {
+            case IN_PROCESS:
+                return getInProcessRuntime();
+            case LOOPBACK:
+                return getLoopbackRuntime();
+        }
+        throw new UnsupportedOperationException("Unsupported transport " + transport);
+    }
+
+    /** Get the options a single-node, in-memory server is started with.
+     *
+     * @param port      The port of the server.
+     * @return          The options map to pass to the servers.
+     */
+    public static Map<String, Object> defaultOptionsMap(String port) {
+        return new ImmutableMap.Builder<String, Object>()
+                .put("--initial-token", "0")
+                .put("--memory", true)
+                .put("--single", true)
+                .put("--max-cache", "256M")
+                .put("--address", "localhost")
+                .put("<port>", port)
+                .build();
+    }
+
+    /** Raise the logging level, so that the benchmarks don't measure log statements. */
+    public static void quietLogging() {
+        Logger root = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.WARN);
+    }
+
+    static CorfuRuntime getInProcessRuntime() {
+        Map<String, Object> opts = defaultOptionsMap(IN_PROCESS_ENDPOINT.split(":")[1]);
+        TestClientRouter router = new TestClientRouter();
+        router.setAddress(IN_PROCESS_ENDPOINT);
+        router.addClient(new LayoutClient())
+                .addClient(new SequencerClient())
+                .addClient(new LogUnitClient())
+                .addClient(new BaseClient())
+                .start();
+        router.addServer(new LayoutServer(opts));
+        router.addServer(new LogUnitServer(opts));
+        router.addServer(new SequencerServer(opts));
+
+        CorfuRuntime runtime = new CorfuRuntime();
+        runtime.setGetRouterFunction(address -> router);
+        return runtime.parseConfigurationString(IN_PROCESS_ENDPOINT).connect();
+    }
+
+    static CorfuRuntime getLoopbackRuntime() throws IOException {
+        String port = Integer.toString(findRandomOpenPort());
+        // The server never returns, so run it on a daemon thread which exits with the benchmark.
+        Thread server = new Thread(() -> CorfuServer.main(
+                new String[]{"-m", "-s", "-t", "0", "-d", "WARN", port}));
+        server.setName("loopback-server");
+        server.setDaemon(true);
+        server.start();
+        return new CorfuRuntime("localhost:" + port).connect();
+    }
+
+    static int findRandomOpenPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
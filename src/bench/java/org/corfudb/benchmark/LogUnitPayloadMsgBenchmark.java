@@ -0,0 +1,73 @@
+package org.corfudb.benchmark;
+
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.corfudb.protocols.logprotocol.SMREntry;
+import org.corfudb.protocols.wireprotocol.CorfuMsg;
+import org.corfudb.protocols.wireprotocol.LogUnitWriteMsg;
+import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.util.serializer.Serializers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding a log unit write message carrying an SMR update,
+ * along with its stream and backpointer metadata.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogUnitPayloadMsgBenchmark {
+
+    /** The size of the value in the SMR update, in bytes. */
+    @Param({"16", "1024", "65536"})
+    int payloadSize;
+
+    LogUnitWriteMsg msg;
+
+    ByteBuf encoded;
+
+    ByteBuf buffer;
+
+    @Setup
+    public void setup() {
+        UUID streamID = CorfuRuntime.getStreamID("benchmark");
+        msg = new LogUnitWriteMsg(0L);
+        msg.setStreams(Collections.singleton(streamID));
+        msg.setRank(0L);
+        msg.setBackpointerMap(ImmutableMap.of(streamID, -1L));
+        msg.setPayload(new SMREntry("put", new Object[]{"key", new byte[payloadSize]},
+                Serializers.SerializerType.JAVA));
+        encoded = PooledByteBufAllocator.DEFAULT.buffer();
+        msg.serialize(encoded);
+        buffer = PooledByteBufAllocator.DEFAULT.buffer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoded.release();
+        buffer.release();
+    }
+
+    @Benchmark
+    public ByteBuf encode() {
+        buffer.clear();
+        msg.serialize(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Object decode() {
+        encoded.readerIndex(0);
+        // Deserializing the payload releases the reference the decoded message holds on the buffer.
+        LogUnitWriteMsg decoded = (LogUnitWriteMsg) CorfuMsg.deserialize(encoded);
+        return decoded.getPayload(null);
+    }
+}
@@ -0,0 +1,58 @@
+package org.corfudb.benchmark;
+
+import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.collections.SMRMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calls through an SMR object proxy. Mutators write an update to the log,
+ * while accessors sync the object, which requires a round trip to the sequencer
+ * even if there are no new updates to apply.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyDispatchBenchmark {
+
+    @Param({"IN_PROCESS", "LOOPBACK"})
+    BenchmarkRuntimes.Transport transport;
+
+    CorfuRuntime runtime;
+
+    Map<String, String> map;
+
+    Map<String, String> update = Collections.singletonMap("key", "value");
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        runtime = BenchmarkRuntimes.getRuntime(transport);
+        map = runtime.getObjectsView().build()
+                .setStreamName("benchmark")
+                .setType(SMRMap.class)
+                .open();
+        map.put("key", "value");
+    }
+
+    @Benchmark
+    public void mutator() {
+        map.putAll(update);
+    }
+
+    @Benchmark
+    public String accessor() {
+        return map.get("key");
+    }
+
+    @Benchmark
+    public String mutatorAccessor() {
+        return map.put("key", "value");
+    }
+}
@@ -0,0 +1,81 @@
+package org.corfudb.benchmark;
+
+import org.corfudb.infrastructure.SequencerServer;
+import org.corfudb.infrastructure.TestServerRouter;
+import org.corfudb.protocols.wireprotocol.TokenRequestMsg;
+import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.clients.SequencerClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures token issuance, both by calling the sequencer server directly and
+ * end to end through the sequencer view of a runtime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequencerBenchmark {
+
+    final Set<UUID> streams = Collections.singleton(CorfuRuntime.getStreamID("benchmark"));
+
+    /** A sequencer server, called directly through a TestServerRouter. */
+    @State(Scope.Benchmark)
+    public static class Server {
+        SequencerServer server;
+
+        @Setup
+        public void setup() {
+            BenchmarkRuntimes.quietLogging();
+            server = new SequencerServer(BenchmarkRuntimes.defaultOptionsMap("9000"));
+        }
+    }
+
+    /** A router per thread, since the test router records every response. */
+    @State(Scope.Thread)
+    public static class Router {
+        TestServerRouter router;
+
+        @Setup
+        public void setup(Server server) {
+            router = new TestServerRouter();
+            router.setServerUnderTest(server.server);
+        }
+
+        @TearDown(Level.Iteration)
+        public void reset() {
+            router.reset();
+        }
+    }
+
+    /** A runtime which requests tokens through the given transport. */
+    @State(Scope.Benchmark)
+    public static class Client {
+        @Param({"IN_PROCESS", "LOOPBACK"})
+        BenchmarkRuntimes.Transport transport;
+
+        CorfuRuntime runtime;
+
+        @Setup
+        public void setup() throws Exception {
+            runtime = BenchmarkRuntimes.getRuntime(transport);
+        }
+    }
+
+    @Benchmark
+    public void serverIssueToken(Router router) {
+        router.router.sendServerMessage(new TokenRequestMsg(streams, 1));
+    }
+
+    @Benchmark
+    public SequencerClient.TokenResponse runtimeIssueToken(Client client) {
+        return client.runtime.getSequencerView().nextToken(streams, 1);
+    }
+}
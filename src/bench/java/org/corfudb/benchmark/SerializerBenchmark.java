@@ -0,0 +1,62 @@
+package org.corfudb.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.corfudb.protocols.logprotocol.SMREntry;
+import org.corfudb.util.serializer.CorfuSerializer;
+import org.corfudb.util.serializer.Serializers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serializing and deserializing an SMR update with the CorfuSerializer,
+ * for each of the serializers the update arguments may be serialized with.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"JSON", "JAVA", "PRIMITIVE"})
+    Serializers.SerializerType argumentSerializer;
+
+    CorfuSerializer serializer;
+
+    SMREntry entry;
+
+    ByteBuf serialized;
+
+    ByteBuf buffer;
+
+    @Setup
+    public void setup() {
+        serializer = new CorfuSerializer();
+        entry = new SMREntry("put", new Object[]{"key", "value"}, argumentSerializer);
+        serialized = PooledByteBufAllocator.DEFAULT.buffer();
+        serializer.serialize(entry, serialized);
+        buffer = PooledByteBufAllocator.DEFAULT.buffer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        serialized.release();
+        buffer.release();
+    }
+
+    @Benchmark
+    public ByteBuf serialize() {
+        buffer.clear();
+        serializer.serialize(entry, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        serialized.readerIndex(0);
+        return serializer.deserialize(serialized, null);
+    }
+}
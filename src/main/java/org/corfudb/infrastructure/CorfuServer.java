@@ -20,7 +20,9 @@ import io.netty.util.concurrent.EventExecutorGroup;
 import lombok.extern.slf4j.Slf4j;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageDecoder;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageEncoder;
+import org.corfudb.protocols.wireprotocol.NettyFlushConsolidationHandler;
 import org.corfudb.util.GitRepositoryState;
+import org.corfudb.util.Utils;
 import org.corfudb.util.Version;
 import org.docopt.Docopt;
 import org.fusesource.jansi.AnsiConsole;
@@ -60,13 +62,26 @@ public class CorfuServer {
             "Corfu Server, the server for the Corfu Infrastructure.\n"
             + "\n"
             + "Usage:\n"
-            + "\tcorfu_server (-l <path>|-m) [-fs] [-a <address>] [-t <token>] [-c <size>] [-k seconds] [-d <level>] [-p <seconds>] <port>\n"
+            + "\tcorfu_server (-l <path>|-m) [-fs] [-a <address>] [-t <token>] [-c <size>] [-k seconds] [-d <level>] [-p <seconds>] [--group-commit-size=<size>] [--group-commit-linger=<us>] [--max-range-read=<size>] [--max-open-segments=<count>] [--recovery-threads=<count>] [--storage=<engine>] [--flush-batch-size=<size>] [--flush-batch-bytes=<bytes>] <port>\n"
             + "\n"
             + "Options:\n"
             + " -l <path>, --log-path=<path>            Set the path to the storage file for the log unit.\n"
             + " -s, --single                            Deploy a single-node configuration.\n"
             + "                                         The server will be bootstrapped with a simple one-unit layout.\n"
             + " -f, --sync                              Flush all writes to disk before acknowledging.\n"
+            + " --group-commit-size=<size>              The maximum number of synchronous writes acknowledged by a\n"
+            + "                                         single flush to disk [default: 64].\n"
+            + " --group-commit-linger=<us>              The time, in microseconds, to wait for more synchronous\n"
+            + "                                         writes before flushing to disk [default: 1000].\n"
+            + " --max-range-read=<size>                 The maximum number of addresses the log unit answers in a\n"
+            + "                                         single response to a ranged read [default: 256].\n"
+            + " --max-open-segments=<count>             The maximum number of log files the log unit keeps open,\n"
+            + "                                         after which idle files are closed [default: 256].\n"
+            + " --recovery-threads=<count>              The maximum number of log files the log unit recovers at once\n"
+            + "                                         when it starts. Defaults to the number of processors.\n"
+            + " --storage=<engine>                      The storage engine of the log unit: memory, or file to append\n"
+            + "                                         entries to segment files. Defaults to memory if -m is set,\n"
+            + "                                         and to file otherwise.\n"
             + " -a <address>, --address=<address>       IP address to advertise to external clients [default: localhost].\n"
             + " -m, --memory                            Run the unit in-memory (non-persistent).\n"
             + "                                         Data will be lost when the server exits!\n"
@@ -79,6 +94,10 @@ public class CorfuServer {
             + "                                         in seconds [default: 60].\n"
             + " -p <seconds>, --compact=<seconds>       The rate the log unit should compact entries (find the,\n"
             + "                                         contiguous tail) in seconds [default: 60].\n"
+            + " --flush-batch-size=<size>               The maximum number of responses to coalesce into a single\n"
+            + "                                         flush of a channel [default: 64].\n"
+            + " --flush-batch-bytes=<bytes>             The maximum number of bytes to coalesce into a single\n"
+            + "                                         flush of a channel [default: 65536].\n"
             + " -d <level>, --log-level=<level>         Set the logging level, valid levels are: \n"
             + "                                         ERROR,WARN,INFO,DEBUG,TRACE [default: INFO].\n"
             + " -h, --help  Show this screen\n"
@@ -203,6 +222,11 @@ public class CorfuServer {
         });
 
 
+        final int flushBatchSize = Utils.getOption(opts, "--flush-batch-size", Integer.class,
+                NettyFlushConsolidationHandler.DEFAULT_MAX_MESSAGES);
+        final long flushBatchBytes = Utils.getOption(opts, "--flush-batch-bytes", Long.class,
+                NettyFlushConsolidationHandler.DEFAULT_MAX_BYTES);
+
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
@@ -217,6 +241,7 @@ public class CorfuServer {
                         public void initChannel(io.netty.channel.socket.SocketChannel ch) throws Exception {
                             ch.pipeline().addLast(new LengthFieldPrepender(4));
                             ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
+                            ch.pipeline().addLast(new NettyFlushConsolidationHandler(flushBatchSize, flushBatchBytes));
                             ch.pipeline().addLast(ee, new NettyCorfuMessageDecoder());
                             ch.pipeline().addLast(ee, new NettyCorfuMessageEncoder());
                             ch.pipeline().addLast(ee, router);
@@ -0,0 +1,1024 @@
+package org.corfudb.infrastructure;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.corfudb.protocols.wireprotocol.LogUnitMetadataMsg;
+import org.corfudb.protocols.wireprotocol.LogUnitReadResponseMsg.LogUnitEntry;
+import org.corfudb.runtime.exceptions.OverwriteException;
+import org.corfudb.util.AddressBitmap;
+import org.corfudb.util.serializer.Serializers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * A storage engine which appends entries to segment files.
+ *
+ * Every 10,000 log entries are written to individual files (logs), which are represented as FileHandles. Each
+ * FileHandle contains a pointer to the tail of the file, a file channel, and a set of addresses known to be in the
+ * file. Files are read and written with positional I/O rather than mapped, and at most maxOpenSegments files are kept
+ * open: the least recently used files which are not in use are closed, and reopened when next accessed. To write an
+ * entry, the pointer to the tail is first extended to the length of the entry, and the entry is added to the set of
+ * known addresses. A header is written, which consists of the ASCII characters LE, followed by a set of flags,
+ * the log unit address, the size of the entry, then the metadata size, metadata, the entry itself and finally a
+ * CRC32 checksum of everything after the flags. An entry is only considered complete if its checksum matches, so
+ * a torn or partially flushed entry is detected on read and on recovery. Log files written before checksums were
+ * added (version 1) instead set a written flag in the flags field once the entry is complete.
+ *
+ * Each log file is accompanied by an offset index file (the log file name with the suffix .index), which records
+ * the byte offset of every complete entry in the log file. The index allows an entry to be read with a single
+ * positioned read instead of a scan of every header in the file. The index is only a hint: every record is
+ * validated against the log file when the file is opened, invalid records are skipped, and any entries missing from
+ * the index are found again by scanning the log file. The log file is never truncated before an indexed entry.
+ *
+ * Whenever a log file is closed, after it has been forced, a summary (the log file name with the suffix .summary)
+ * records the sizes of the log and index files, the range and number of addresses in the file, and whether the
+ * file is sealed, that is every address it covers has been written so it can never change again. A file whose
+ * summary matches the sizes of its log and index files is trusted when it is opened: its index is loaded without
+ * validating entries against the log file, or, if it is sealed, not read at all during recovery.
+ *
+ * When the server starts, recover opens every log file which was not closed cleanly in parallel, with at most
+ * recoveryThreads files recovered at once, and reports every address found to the server.
+ *
+ * In sync mode, entries are written in the calling thread, and sync forces the files they were written to.
+ * Otherwise, entries are written asynchronously.
+ */
+@Slf4j
+public class FileLogUnitStorage implements LogUnitStorage {
+
+    /** The number of addresses in each log file. */
+    static final long SEGMENT_SIZE = 10000L;
+
+    /** The log file prefix. */
+    final String prefix;
+
+    /** Whether entries are written in the calling thread. */
+    final boolean sync;
+
+    /** The size of a record in the offset index: address(8), offset(4), checksum(4). */
+    static final int INDEX_RECORD_SIZE = 16;
+
+    /** The size of a segment summary. */
+    static final int SUMMARY_SIZE = 45;
+
+    /** The size of the log file header. */
+    static final int LOG_HEADER_SIZE = 64;
+
+    /** The version of new log files, in which every entry is checksummed. */
+    static final int LOG_VERSION = 2;
+
+    /** The size of the header of an entry: magic(2), flags(2), address(8), size(4), metadata size(4),
+     * and of the checksum which follows the entry(4). */
+    static final int ENTRY_OVERHEAD = 24;
+
+    @Data
+    class FileHandle {
+        final AtomicLong filePointer;
+        final FileChannel channel;
+        final FileLock lock;
+        final FileChannel indexChannel;
+        final AtomicLong indexPointer;
+        /** The version of the log file, from its header. */
+        final int version;
+        /** The segment of the log file. */
+        final long segment;
+        final AddressBitmap knownAddresses = new AddressBitmap();
+        /** A map from log unit addresses to the offset of the entry within the file. */
+        final Map<Long, Integer> offsetIndex = new ConcurrentHashMap<>();
+        /** The number of operations using this handle, or -1 once the handle is closed. */
+        final AtomicInteger references = new AtomicInteger();
+        /** The last time this handle was retained, in nanoseconds. */
+        volatile long lastUsed = System.nanoTime();
+
+        /** Read a region of the file with a positional read.
+         *
+         * @param offset    The offset of the region.
+         * @param size      The size of the region.
+         * @return          A buffer containing the region, which is shorter than the size
+         *                  if the file ends before the region does.
+         * @throws IOException
+         */
+        public ByteBuffer read(long offset, int size)
+                throws IOException
+        {
+            ByteBuffer b = ByteBuffer.allocate(size);
+            while (b.hasRemaining() && channel.read(b, offset + b.position()) > 0);
+            b.flip();
+            return b;
+        }
+
+        /** Write a buffer to the file with a positional write.
+         *
+         * @param b         The buffer to write.
+         * @param offset    The offset to write the buffer at.
+         * @throws IOException
+         */
+        public void write(ByteBuffer b, long offset)
+                throws IOException
+        {
+            while (b.hasRemaining())
+            {
+                offset += channel.write(b, offset);
+            }
+        }
+
+        /** Retain this handle for an operation, so that it is not closed while in use.
+         *
+         * @return  True, if the handle was retained, or false if it was already closed.
+         */
+        boolean retain()
+        {
+            while (true) {
+                int r = references.get();
+                if (r < 0) {
+                    return false;
+                }
+                if (references.compareAndSet(r, r + 1)) {
+                    lastUsed = System.nanoTime();
+                    return true;
+                }
+            }
+        }
+
+        /** Release this handle once an operation is done with it. */
+        void release()
+        {
+            references.decrementAndGet();
+        }
+
+        /** Close this handle if no operation is using it.
+         *
+         * @return  True, if the handle was closed.
+         */
+        boolean closeIfIdle()
+        {
+            if (!references.compareAndSet(0, -1)) {
+                return false;
+            }
+            close();
+            return true;
+        }
+
+        /** Force and close the files of this handle, releasing its lock. Once forced, the summary
+         * of the file is written, so that the file is trusted when it is next opened. */
+        void close()
+        {
+            try {
+                channel.force(true);
+                indexChannel.force(false);
+                writeSummary(this);
+            } catch (IOException ie) {
+                log.warn("Error forcing log file handle", ie);
+            }
+            try {
+                indexChannel.close();
+                // Closing the channel also releases its lock.
+                channel.close();
+            } catch (IOException ie) {
+                log.warn("Error closing log file handle", ie);
+            }
+        }
+    }
+
+    /** A map mapping to file channels. */
+    final Map<Long, FileHandle> channelMap = new ConcurrentHashMap<>();
+
+    /** The maximum number of log files to keep open, after which the least recently used idle files are closed. */
+    final int maxOpenSegments;
+
+    /** The maximum number of log files to recover at once. */
+    final int recoveryThreads;
+
+    /** Open the log files under a path.
+     *
+     * @param logPath           The path of the log files.
+     * @param sync              Whether entries are written in the calling thread.
+     * @param maxOpenSegments   The maximum number of log files to keep open.
+     * @param recoveryThreads   The maximum number of log files to recover at once.
+     */
+    public FileLogUnitStorage(String logPath, boolean sync, int maxOpenSegments, int recoveryThreads)
+    {
+        this.prefix = logPath + File.separator + "log";
+        this.sync = sync;
+        this.maxOpenSegments = maxOpenSegments;
+        this.recoveryThreads = recoveryThreads;
+    }
+
+    @Override
+    public void recover(LongConsumer written)
+    {
+        File[] files = new File(prefix).getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        List<Long> segments = Arrays.stream(files)
+                .map(File::getName)
+                .filter(n -> n.matches("log\\d+"))
+                .map(n -> Long.parseLong(n.substring(3)))
+                .sorted()
+                .collect(Collectors.toList());
+        if (segments.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        ExecutorService recoveryPool = Executors.newFixedThreadPool(Math.min(recoveryThreads, segments.size()),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("LogUnit-Recovery-%d")
+                        .build());
+        try {
+            CompletableFuture.allOf(segments.stream()
+                    .map(segment -> CompletableFuture.runAsync(() -> recoverSegment(segment, written), recoveryPool))
+                    .toArray(CompletableFuture[]::new))
+                    .join();
+        } catch (CompletionException ce) {
+            log.error("Error recovering log files", ce.getCause());
+            throw new RuntimeException(ce.getCause());
+        } finally {
+            recoveryPool.shutdown();
+        }
+        log.info("Recovered {} log files in {} ms", segments.size(), System.currentTimeMillis() - start);
+    }
+
+    /** Recover a log file, and report every address written to it. If the summary of the file
+     * matches it, the addresses are taken from the summary or index only, otherwise the file is
+     * opened and its index recovered, and a new summary is written.
+     *
+     * @param segment   The segment of the log file.
+     * @param written   The consumer to report written addresses to.
+     */
+    void recoverSegment(long segment, LongConsumer written)
+    {
+        try {
+            SegmentSummary summary = readSummary(segment);
+            if (summary != null && summary.isSealed()) {
+                log.debug("Log file {} is sealed, skipping recovery.", segment);
+                for (long a = summary.getFirstAddress(); a <= summary.getLastAddress(); a++) {
+                    written.accept(a);
+                }
+                return;
+            }
+            if (summary != null && readTrustedIndex(segment, summary, written)) {
+                log.debug("Log file {} was closed cleanly, loaded its index.", segment);
+                return;
+            }
+            FileHandle fh = getChannelForAddress(segment * SEGMENT_SIZE);
+            try {
+                fh.getChannel().force(true);
+                fh.getIndexChannel().force(false);
+                writeSummary(fh);
+                fh.getOffsetIndex().keySet().forEach(written::accept);
+            } finally {
+                fh.release();
+            }
+        } catch (IOException ie) {
+            throw new RuntimeException(ie);
+        }
+    }
+
+    @Override
+    public void write(long address, LogUnitEntry entry)
+            throws OverwriteException, IOException
+    {
+        FileHandle fh = getChannelForAddress(address);
+        // make sure the entry doesn't currently exist...
+        if (!fh.getKnownAddresses().add(address)) {
+            fh.release();
+            throw new OverwriteException();
+        }
+        if (sync) {
+            try {
+                writeEntry(fh, address, entry);
+            } finally {
+                fh.release();
+            }
+        } else {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    writeEntry(fh, address, entry);
+                } catch (Exception e) {
+                    log.error("Disk_write[{}]: Exception", address, e);
+                } finally {
+                    fh.release();
+                }
+            });
+        }
+    }
+
+    @Override
+    public LogUnitEntry read(long address)
+            throws IOException
+    {
+        FileHandle fh = getChannelForAddress(address);
+        try {
+            return readEntry(fh, address);
+        } finally {
+            fh.release();
+        }
+    }
+
+    @Override
+    public void sync(Collection<Long> addresses)
+            throws IOException
+    {
+        Set<Long> segments = addresses.stream()
+                .map(a -> a / SEGMENT_SIZE)
+                .collect(Collectors.toSet());
+        for (long segment : segments) {
+            FileHandle fh = getChannelForAddress(segment * SEGMENT_SIZE);
+            try {
+                // Appends grow the file, so its metadata must be forced as well.
+                fh.getChannel().force(true);
+                fh.getIndexChannel().force(false);
+            } finally {
+                fh.release();
+            }
+        }
+    }
+
+    @Override
+    public void trim(long address)
+    {
+        // Trimmed entries are left in the log files.
+    }
+
+    @Override
+    public void writeStreamAddresses(UUID streamID, RangeSet<Long> addresses)
+    {
+        try {
+            ByteBuf b = Unpooled.buffer();
+            Set<Range<Long>> rs = addresses.asRanges();
+            b.writeInt(rs.size());
+            for (Range<Long> r : rs)
+            {
+                Serializers
+                        .getSerializer(Serializers.SerializerType.JAVA).serialize(r, b);
+            }
+            com.google.common.io.Files.write(b.array(), new File(prefix + File.pathSeparator +
+                    "stream" + streamID.toString()));
+        } catch (IOException ie) {
+            log.error("IOException while writing stream range for stream {}", streamID);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public RangeSet<Long> readStreamAddresses(UUID streamID)
+    {
+        Path p = FileSystems.getDefault().getPath(prefix + File.pathSeparator +
+                "stream" + streamID.toString());
+        try {
+            if (Files.exists(p)) {
+                ByteBuf b = Unpooled.wrappedBuffer(Files.readAllBytes(p));
+                RangeSet rs = TreeRangeSet.create();
+                int ranges = b.readInt();
+                for (int i = 0; i < ranges; i++)
+                {
+                    Range r = (Range) Serializers
+                            .getSerializer(Serializers.SerializerType.JAVA).deserialize(b, null);
+                    rs.add(r);
+                }
+            }
+        } catch (IOException ie) {
+            log.error("IO Exception reading from stream file {}", p);
+        }
+        return TreeRangeSet.create();
+    }
+
+    @Override
+    public boolean isPersistent()
+    {
+        return true;
+    }
+
+    @Override
+    public void reset()
+    {
+        // The log files keep their entries.
+    }
+
+    @Override
+    public void close()
+    {
+        // Clean up any file locks.
+        channelMap.values().parallelStream()
+                .forEach(FileHandle::close);
+        channelMap.clear();
+    }
+
+    @Data
+    static class SegmentSummary {
+        final long logSize;
+        final long indexSize;
+        final long firstAddress;
+        final long lastAddress;
+        final int count;
+        final boolean sealed;
+        ByteBuffer getBuffer()
+        {
+            ByteBuffer b = ByteBuffer.allocate(SUMMARY_SIZE);
+            // 0: Version number(4)
+            b.putInt(1);
+            // 4: Log file size(8), index file size(8)
+            b.putLong(logSize);
+            b.putLong(indexSize);
+            // 20: First and last address(16), number of addresses(4)
+            b.putLong(firstAddress);
+            b.putLong(lastAddress);
+            b.putInt(count);
+            // 40: Sealed(1)
+            b.put((byte) (sealed ? 1 : 0));
+            // 41: Checksum(4)
+            CRC32 crc = new CRC32();
+            crc.update(b.array(), 0, b.position());
+            b.putInt((int) crc.getValue());
+            b.flip();
+            return b;
+        }
+        static SegmentSummary fromBuffer(ByteBuffer buffer)
+        {
+            if (buffer.remaining() != SUMMARY_SIZE)
+            {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, SUMMARY_SIZE - 4);
+            if (buffer.getInt(SUMMARY_SIZE - 4) != (int) crc.getValue() || buffer.getInt() != 1)
+            {
+                return null;
+            }
+            return new SegmentSummary(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                    buffer.getInt(), buffer.get() == 1);
+        }
+    }
+
+    /** Write the summary of a log file, which must have been forced.
+     *
+     * @param fh            The file handle to summarize.
+     * @throws IOException
+     */
+    void writeSummary(FileHandle fh)
+            throws IOException
+    {
+        LongSummaryStatistics addresses = fh.getOffsetIndex().keySet().stream()
+                .mapToLong(Long::longValue)
+                .summaryStatistics();
+        int count = (int) addresses.getCount();
+        SegmentSummary summary = new SegmentSummary(fh.getChannel().size(), fh.getIndexChannel().size(),
+                count == 0 ? -1L : addresses.getMin(), count == 0 ? -1L : addresses.getMax(), count,
+                count == SEGMENT_SIZE);
+        Files.write(FileSystems.getDefault().getPath(prefix + fh.getSegment() + ".summary"),
+                summary.getBuffer().array());
+    }
+
+    /** Read the summary of a log file.
+     *
+     * @param segment       The segment of the log file.
+     * @return              The summary of the log file, or null if there is no summary, or it
+     *                      does not match the log file, which has been written since.
+     * @throws IOException
+     */
+    SegmentSummary readSummary(long segment)
+            throws IOException
+    {
+        Path p = FileSystems.getDefault().getPath(prefix + segment + ".summary");
+        if (!Files.exists(p))
+        {
+            return null;
+        }
+        SegmentSummary summary = SegmentSummary.fromBuffer(ByteBuffer.wrap(Files.readAllBytes(p)));
+        if (summary == null)
+        {
+            log.warn("Summary of log file {} is corrupted, ignoring it.", segment);
+            return null;
+        }
+        File logFile = new File(prefix + segment);
+        File indexFile = new File(prefix + segment + ".index");
+        if (summary.getLogSize() != logFile.length() || summary.getIndexSize() != indexFile.length())
+        {
+            log.info("Log file {} was written since its summary, recovering it.", segment);
+            return null;
+        }
+        return summary;
+    }
+
+    /** Read the index of a log file which matches its summary, and report every address written
+     * to it, without opening the log file.
+     *
+     * @param segment       The segment of the log file.
+     * @param summary       The summary of the log file.
+     * @param written       The consumer to report written addresses to.
+     * @return              True, if the index matches the summary and every address was reported.
+     *                      Otherwise nothing is reported, and the log file must be recovered.
+     * @throws IOException
+     */
+    boolean readTrustedIndex(long segment, SegmentSummary summary, LongConsumer written)
+            throws IOException
+    {
+        ByteBuffer ib = ByteBuffer.wrap(Files.readAllBytes(
+                FileSystems.getDefault().getPath(prefix + segment + ".index")));
+        Map<Long, Integer> records = readIndexRecords(ib);
+        if (records.size() != summary.getCount())
+        {
+            log.warn("Offset index of log file {} does not match its summary, recovering it.", segment);
+            return false;
+        }
+        records.keySet().forEach(written::accept);
+        return true;
+    }
+
+    /** Read the records of an offset index which have a valid checksum. Records with an invalid
+     * checksum are skipped, since recovery leaves the records it could not validate in place.
+     *
+     * @param ib            A buffer containing the offset index.
+     * @return              The offset of each address, from the last valid record for the address.
+     */
+    static Map<Long, Integer> readIndexRecords(ByteBuffer ib)
+    {
+        Map<Long, Integer> records = new LinkedHashMap<>();
+        while (ib.remaining() >= INDEX_RECORD_SIZE)
+        {
+            long address = ib.getLong();
+            int offset = ib.getInt();
+            if (ib.getInt() == getIndexChecksum(address, offset))
+            {
+                records.put(address, offset);
+            }
+        }
+        return records;
+    }
+
+    @Data
+    static class LogFileHeader {
+        static final String magic = "CORFULOG";
+        final int version;
+        final long flags;
+        ByteBuffer getBuffer()
+        {
+            ByteBuffer b = ByteBuffer.allocate(64);
+            // 0: "CORFULOG" header(8)
+            b.put(magic.getBytes(Charset.forName("UTF-8")),0, 8);
+            // 8: Version number(4)
+            b.putInt(version);
+            // 12: Flags (8)
+            b.putLong(flags);
+            // 20: Reserved (54)
+            b.position(64);
+            b.flip();
+            return b;
+        }
+        static LogFileHeader fromBuffer(ByteBuffer buffer)
+        {
+            byte[] bMagic = new byte[8];
+            buffer.get(bMagic, 0, 8);
+            if (!new String(bMagic).equals(magic))
+            {
+                log.warn("Encountered invalid magic, expected {}, got {}", magic, new String(bMagic));
+                throw new RuntimeException("Invalid header magic!");
+            }
+            return new LogFileHeader(buffer.getInt(), buffer.getLong());
+        }
+    }
+
+    /** Write the header for a Corfu log file.
+     *
+     * @param fc            The filechannel to use.
+     * @param pointer       The pointer to increment to the start position.
+     * @param version       The version number to write to the header.
+     * @param flags         Flags, if any to write to the header.
+     * @throws IOException
+     */
+    public void writeHeader(FileChannel fc, AtomicLong pointer, int version, long flags)
+            throws IOException
+    {
+        LogFileHeader lfg = new LogFileHeader(version, flags);
+        ByteBuffer b = lfg.getBuffer();
+        pointer.getAndAdd(b.remaining());
+        fc.write(b);
+        fc.force(true);
+    }
+
+    /** Read the header for a Corfu log file.
+     *
+     * @param fc            The filechannel to use.
+     * @throws IOException
+     */
+    public LogFileHeader readHeader(FileChannel fc)
+            throws IOException
+    {
+        ByteBuffer b = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        while (b.hasRemaining() && fc.read(b, b.position()) > 0);
+        b.flip();
+        return LogFileHeader.fromBuffer(b);
+    }
+
+    /** Write a log entry to a file.
+     *
+     * @param fh            The file handle to use.
+     * @param address       The address of the entry.
+     * @param entry         The LogUnitEntry to write.
+     */
+    public void writeEntry(FileHandle fh, long address, LogUnitEntry entry)
+        throws IOException
+    {
+        ByteBuf b = PooledByteBufAllocator.DEFAULT.directBuffer();
+        try {
+            // Checksummed entries are complete once written, older files set the written flag afterwards.
+            b.writeInt(fh.getVersion() >= 2 ? 0x4C450001 : 0x4C450000); // Flags
+            b.writeLong(address); // the log unit address
+            b.writeInt(0); // Size, set once the metadata is serialized
+            b.writeInt(0); // the metadata size
+            LogUnitMetadataMsg.bufferFromMap(b, entry.getMetadataMap());
+            b.setInt(16, b.writerIndex() - 20);
+            b.writeBytes(entry.getBuffer(), entry.getBuffer().readerIndex(), entry.getBuffer().readableBytes());
+            b.writeZero(4);
+            int entrySize = b.writerIndex();
+            b.setInt(12, entrySize);
+            b.setInt(entrySize - 4, getEntryChecksum(b.nioBuffer(0, entrySize)));
+            long pos = fh.getFilePointer().getAndAdd(entrySize);
+            fh.write(b.nioBuffer(), pos);
+            if (fh.getVersion() < 2) {
+                // Only set the written flag once the entry is complete.
+                ByteBuffer written = ByteBuffer.allocate(2);
+                written.putShort(0, (short) 1);
+                fh.write(written, pos + 2);
+            }
+            writeIndexRecord(fh, address, (int) pos);
+        } finally {
+            b.release();
+        }
+    }
+
+    /** Compute the checksum of an entry, which covers everything after the flags up to the checksum itself.
+     * The flags are not covered, since older log files set the written flag after the entry is written.
+     *
+     * @param entry         A buffer containing the whole entry, from its magic to its checksum.
+     * @return              The checksum for the entry.
+     */
+    static int getEntryChecksum(ByteBuffer entry)
+    {
+        ByteBuffer b = entry.duplicate();
+        b.limit(entry.limit() - 4);
+        b.position(entry.position() + 4);
+        CRC32 crc = new CRC32();
+        crc.update(b);
+        return (int) crc.getValue();
+    }
+
+    /** Check whether an entry read from a file was completely written.
+     *
+     * @param fh            The file handle the entry was read from.
+     * @param entry         A buffer containing the whole entry, from its magic to its checksum.
+     * @return              True, if the entry is complete.
+     */
+    static boolean isEntryComplete(FileHandle fh, ByteBuffer entry)
+    {
+        if (fh.getVersion() < 2) {
+            return entry.getShort(entry.position() + 2) % 2 != 0;
+        }
+        return entry.getInt(entry.limit() - 4) == getEntryChecksum(entry);
+    }
+
+    /** Read the complete entry at the given offset in a file.
+     *
+     * @param fh            The file handle to use.
+     * @param offset        The offset of the entry.
+     * @param address       The address the entry is expected to have, or -1 to accept any address.
+     * @return              A buffer containing the whole entry, or null if there is no complete entry
+     *                      at the offset with the expected address.
+     * @throws IOException
+     */
+    ByteBuffer readCompleteEntryAt(FileHandle fh, long offset, long address)
+            throws IOException
+    {
+        if (offset < LOG_HEADER_SIZE)
+        {
+            return null;
+        }
+        ByteBuffer o = fh.read(offset, ENTRY_OVERHEAD);
+        if (o.remaining() < ENTRY_OVERHEAD)
+        {
+            return null;
+        }
+        short magic = o.getShort();
+        o.getShort(); // flags
+        long addr = o.getLong();
+        int size = o.getInt();
+        if (magic != 0x4C45 || size < ENTRY_OVERHEAD || (address != -1 && addr != address))
+        {
+            return null;
+        }
+        ByteBuffer entry = fh.read(offset, size);
+        if (entry.remaining() < size || !isEntryComplete(fh, entry))
+        {
+            return null;
+        }
+        return entry;
+    }
+
+    /** Compute the checksum of an offset index record.
+     *
+     * @param address       The address of the entry.
+     * @param offset        The offset of the entry in the log file.
+     * @return              The checksum for the record.
+     */
+    static int getIndexChecksum(long address, int offset)
+    {
+        CRC32 crc = new CRC32();
+        ByteBuffer b = ByteBuffer.allocate(12);
+        b.putLong(address);
+        b.putInt(offset);
+        crc.update(b.array());
+        return (int) crc.getValue();
+    }
+
+    /** Append a record to the offset index of a file, and make it available for reads.
+     *
+     * @param fh            The file handle to use.
+     * @param address       The address of the entry.
+     * @param offset        The offset of the entry in the log file.
+     * @throws IOException
+     */
+    public void writeIndexRecord(FileHandle fh, long address, int offset)
+            throws IOException
+    {
+        ByteBuffer b = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+        b.putLong(address);
+        b.putInt(offset);
+        b.putInt(getIndexChecksum(address, offset));
+        b.flip();
+        long pos = fh.getIndexPointer().getAndAdd(INDEX_RECORD_SIZE);
+        while (b.hasRemaining())
+        {
+            pos += fh.getIndexChannel().write(b, pos);
+        }
+        fh.getOffsetIndex().put(address, offset);
+    }
+
+    /** Load the offset index of a file, validating each record against the log file,
+     * and rebuild any part of the index which is missing or damaged by scanning the log file.
+     * Once complete, the file pointer is set to the end of the last entry in the file.
+     *
+     * Records which cannot be validated are skipped rather than ending the index, and are left in
+     * place. If any were skipped, the whole log file is scanned, so entries whose record was damaged
+     * are indexed again. The scan resumes from the next indexed entry after a damaged region of the
+     * log file, and the log file is never truncated before the end of an indexed entry.
+     *
+     * @param fh            The file handle to recover.
+     * @throws IOException
+     */
+    void recoverIndex(FileHandle fh)
+            throws IOException
+    {
+        SegmentSummary summary = readSummary(fh.getSegment());
+        FileChannel ic = fh.getIndexChannel();
+        ByteBuffer ib = ByteBuffer.allocate((int) ic.size());
+        while (ib.hasRemaining() && ic.read(ib, ib.position()) > 0);
+        ib.flip();
+        long indexSize = ib.remaining() - ib.remaining() % INDEX_RECORD_SIZE;
+        Map<Long, Integer> records = readIndexRecords(ib);
+
+        if (summary != null && records.size() == summary.getCount())
+        {
+            // The file was closed cleanly, so its index is trusted.
+            records.forEach((address, offset) -> {
+                fh.getOffsetIndex().put(address, offset);
+                fh.getKnownAddresses().add(address);
+            });
+            fh.getIndexPointer().set(indexSize);
+            fh.getFilePointer().set(summary.getLogSize());
+            return;
+        }
+        else if (summary != null)
+        {
+            log.warn("Offset index of log file {} does not match its summary, recovering it.", fh.getSegment());
+        }
+
+        // The offset and end of every entry with a valid index record.
+        NavigableMap<Long, Long> indexed = new TreeMap<>();
+        int skipped = (int) (indexSize / INDEX_RECORD_SIZE) - records.size();
+        for (Map.Entry<Long, Integer> record : records.entrySet())
+        {
+            ByteBuffer entry = readCompleteEntryAt(fh, record.getValue(), record.getKey());
+            if (entry == null)
+            {
+                skipped++;
+                continue;
+            }
+            fh.getOffsetIndex().put(record.getKey(), record.getValue());
+            fh.getKnownAddresses().add(record.getKey());
+            indexed.put((long) record.getValue(), (long) record.getValue() + entry.remaining());
+        }
+        long scanFrom = indexed.isEmpty() ? LOG_HEADER_SIZE : Collections.max(indexed.values());
+
+        if (indexSize < ic.size())
+        {
+            log.warn("Offset index of log file {} torn, truncating {} bytes.", fh.getSegment(),
+                    ic.size() - indexSize);
+            ic.truncate(indexSize);
+        }
+        fh.getIndexPointer().set(indexSize);
+
+        // Pick up any entries which were written to the log but not to the index.
+        long offset = scanFrom;
+        if (skipped > 0)
+        {
+            log.warn("Skipped {} invalid offset index records in log file {}, scanning the whole log file.",
+                    skipped, fh.getSegment());
+            offset = LOG_HEADER_SIZE;
+        }
+        long fileSize = fh.getChannel().size();
+        while (fileSize - offset >= ENTRY_OVERHEAD)
+        {
+            ByteBuffer o = fh.read(offset, ENTRY_OVERHEAD);
+            short magic = o.getShort();
+            o.getShort(); // flags
+            long addr = o.getLong();
+            int size = o.getInt();
+            Long nextIndexed = indexed.higherKey(offset);
+            if (magic != 0x4C45 || size < ENTRY_OVERHEAD || offset + size > fileSize)
+            {
+                if (nextIndexed == null)
+                {
+                    break;
+                }
+                log.warn("Damaged region in log file {} at {}, resuming at {}.", fh.getSegment(), offset,
+                        nextIndexed);
+                offset = nextIndexed;
+                continue;
+            }
+            ByteBuffer entry = fh.read(offset, size);
+            if (!isEntryComplete(fh, entry)) {
+                log.warn("Torn write detected for address {} during recovery, skipping.", addr);
+            }
+            else if (!fh.getOffsetIndex().containsKey(addr)) {
+                fh.getKnownAddresses().add(addr);
+                writeIndexRecord(fh, addr, (int) offset);
+            }
+            offset = nextIndexed == null ? offset + size : Math.min(offset + size, nextIndexed);
+        }
+        // Entries with a valid index record were acknowledged, so the log is never truncated before them.
+        offset = Math.max(offset, scanFrom);
+        if (offset < fileSize)
+        {
+            // Nothing after the first unreadable header can be found again, so appends start from it.
+            log.warn("Log file truncated at {}, discarding {} bytes after the last entry.", offset, fileSize - offset);
+            fh.getChannel().truncate(offset);
+        }
+        fh.getFilePointer().set(offset);
+    }
+
+    /** Find a log entry in a file, using the offset index of the file.
+     * @param fh            The file handle to use.
+     * @param address       The address of the entry.
+     * @return              The log unit entry at that address, or NULL if there was no entry.
+     */
+    public LogUnitEntry readEntry(FileHandle fh, long address)
+        throws IOException
+    {
+        Integer offset = fh.getOffsetIndex().get(address);
+        if (offset == null)
+        {
+            return null;
+        }
+        ByteBuffer o = fh.read(offset, ENTRY_OVERHEAD);
+        if (o.remaining() < ENTRY_OVERHEAD)
+        {
+            log.error("Offset index for address {} points past the end of the file at {}!", address, offset);
+            throw new IOException("Invalid offset index entry!");
+        }
+        short magic = o.getShort();
+        o.getShort(); // flags
+        long addr = o.getLong();
+        int size = o.getInt();
+        if (magic != 0x4C45 || addr != address || size < ENTRY_OVERHEAD)
+        {
+            log.error("Offset index for address {} points to an invalid entry at {}!", address, offset);
+            throw new IOException("Invalid offset index entry!");
+        }
+        log.debug("Entry at {} hit, reading (size={}).", address, size);
+        int metadataMapSize = o.getInt();
+        ByteBuffer entry = fh.read(offset, size);
+        if (entry.remaining() < size || !isEntryComplete(fh, entry)) {
+            log.error("Read a log entry at {} but the write was torn or corrupted, aborting!", address);
+            throw new IOException("Torn write detected!");
+        }
+        entry.position(20);
+        ByteBuf mBuf = Unpooled.wrappedBuffer(entry.slice());
+        entry.position(20 + metadataMapSize);
+        ByteBuffer dBuf = entry.slice();
+        dBuf.limit(size - metadataMapSize - ENTRY_OVERHEAD);
+        return new LogUnitEntry(Unpooled.wrappedBuffer(dBuf),
+                LogUnitMetadataMsg.mapFromBuffer(mBuf),
+                false,
+                true);
+    }
+
+    /** Gets the file channel for a particular address, opening it
+     * if is not present in the map. The handle is retained for the caller,
+     * which must release it once done with it, and is not closed until then.
+     * @param address   The address to open.
+     * @return          The FileChannel for that address.
+     */
+    public FileHandle getChannelForAddress(long address)
+    {
+        while (true) {
+            FileHandle fh = openChannelForAddress(address);
+            if (fh.retain()) {
+                if (channelMap.size() > maxOpenSegments) {
+                    closeIdleChannels();
+                }
+                return fh;
+            }
+            // The handle was closed as we retrieved it, wait for it to leave the map and reopen it.
+            Thread.yield();
+        }
+    }
+
+    /** Close the least recently used log files which are not in use, until at most
+     * the maximum number of open log files remain. Closed files are reopened and
+     * their offset index recovered when next accessed.
+     */
+    void closeIdleChannels()
+    {
+        List<Map.Entry<Long, FileHandle>> handles = new ArrayList<>(channelMap.entrySet());
+        handles.sort(Comparator.comparingLong(e -> e.getValue().getLastUsed()));
+        int excess = handles.size() - maxOpenSegments;
+        for (Map.Entry<Long, FileHandle> e : handles) {
+            if (excess <= 0) {
+                break;
+            }
+            if (e.getValue().closeIfIdle()) {
+                log.debug("Closed idle log file {}", e.getKey());
+                channelMap.remove(e.getKey(), e.getValue());
+                excess--;
+            }
+        }
+    }
+
+    FileHandle openChannelForAddress(long address)
+    {
+        return channelMap.computeIfAbsent(address / SEGMENT_SIZE, a -> {
+            String filePath = prefix + a.toString();
+            try {
+                FileChannel fc = FileChannel.open(FileSystems.getDefault().getPath(filePath),
+                        EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE, StandardOpenOption.SPARSE));
+
+                FileLock fl = fc.lock();
+
+                FileChannel ic = FileChannel.open(FileSystems.getDefault().getPath(filePath + ".index"),
+                        EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE));
+
+                AtomicLong fp = new AtomicLong();
+                int version;
+                if (fc.size() == 0) {
+                    writeHeader(fc, fp, LOG_VERSION, 0);
+                    version = LOG_VERSION;
+                    log.info("Opened new log file at {}", filePath);
+                } else {
+                    LogFileHeader header = readHeader(fc);
+                    version = header.getVersion();
+                    log.info("Opened existing log file at {}, header {}", filePath, header);
+                }
+                FileHandle fh = new FileHandle(fp, fc, fl, ic, new AtomicLong(), version, a);
+                // The first time we open a file we should load the offset index, which also
+                // rebuilds the map of entries we already have.
+                recoverIndex(fh);
+                return fh;
+            }
+            catch (IOException e)
+            {
+                log.error("Error opening file {}", a, e);
+                throw new RuntimeException(e);
+            }
+        });
+    }
+}
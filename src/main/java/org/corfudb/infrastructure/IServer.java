@@ -16,6 +16,17 @@ public interface IServer {
      */
     void handleMessage(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r);
 
+    /** Handle the end of a batch of messages read from a channel. This is only called by
+     * routers which batch reads (see {@link IServerRouter#isBatchingReads()}), and servers
+     * which defer responses while a batch is being read must send them here.
+     *
+     * @param ctx   The channel handler context.
+     * @param r     The router that took in the batch.
+     */
+    default void handleReadComplete(ChannelHandlerContext ctx, IServerRouter r) {
+
+    }
+
     /** Reset the server.
      *
      */
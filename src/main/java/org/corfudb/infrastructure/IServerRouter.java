@@ -14,4 +14,12 @@ public interface IServerRouter {
 
     /** Set the current epoch. */
     void setEpoch(long newEpoch);
+
+    /** Whether this router notifies servers at the end of each batch of messages read from a channel.
+     * @return  True, if {@link IServer#handleReadComplete(ChannelHandlerContext, IServerRouter)} is
+     *          called at the end of each batch.
+     */
+    default boolean isBatchingReads() {
+        return false;
+    }
 }
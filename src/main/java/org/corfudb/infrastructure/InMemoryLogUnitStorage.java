@@ -0,0 +1,134 @@
+package org.corfudb.infrastructure;
+
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import lombok.extern.slf4j.Slf4j;
+import org.corfudb.protocols.wireprotocol.LogUnitReadResponseMsg.LogUnitEntry;
+import org.corfudb.runtime.exceptions.OverwriteException;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongConsumer;
+
+/**
+ * A storage engine which holds entries in memory.
+ *
+ * The engine holds at most maxSize bytes of entries. Once it is full, the entries at the lowest
+ * addresses are trimmed to make room for new entries, and the trim listener is notified of each.
+ * The buffer of an entry trimmed this way is only released once trim is called for its address,
+ * so that the owner of the listener can stop serving the entry first.
+ * Nothing survives a restart of the server.
+ */
+@Slf4j
+public class InMemoryLogUnitStorage implements LogUnitStorage {
+
+    /** The maximum number of bytes of entries to hold. */
+    final long maxSize;
+
+    /** The entries, by address. */
+    final NavigableMap<Long, LogUnitEntry> entries = new ConcurrentSkipListMap<>();
+
+    /** The addresses of each stream. */
+    final Map<UUID, RangeSet<Long>> streamAddresses = new ConcurrentHashMap<>();
+
+    /** The entries trimmed to make room, whose buffers are released once they are trimmed. */
+    final Map<Long, LogUnitEntry> trimmed = new ConcurrentHashMap<>();
+
+    /** The number of bytes of entries held. */
+    long size = 0L;
+
+    /** The listener to notify when entries are trimmed to make room. */
+    LongConsumer trimListener = address -> {};
+
+    public InMemoryLogUnitStorage(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    static long getSize(LogUnitEntry entry) {
+        return entry.getBuffer() == null ? 1 : entry.getBuffer().readableBytes();
+    }
+
+    @Override
+    public synchronized void write(long address, LogUnitEntry entry)
+            throws OverwriteException {
+        if (entries.putIfAbsent(address, entry) != null) {
+            throw new OverwriteException();
+        }
+        size += getSize(entry);
+        while (size > maxSize && entries.size() > 1) {
+            Map.Entry<Long, LogUnitEntry> lowest = entries.pollFirstEntry();
+            log.warn("In-memory log unit is full, data@{} will be trimmed and lost!", lowest.getKey());
+            size -= getSize(lowest.getValue());
+            trimmed.put(lowest.getKey(), lowest.getValue());
+            trimListener.accept(lowest.getKey());
+        }
+    }
+
+    @Override
+    public LogUnitEntry read(long address) {
+        return entries.get(address);
+    }
+
+    @Override
+    public void sync(Collection<Long> addresses) {
+        // Nothing is durable.
+    }
+
+    @Override
+    public synchronized void trim(long address) {
+        remove(address);
+        release(trimmed.remove(address));
+    }
+
+    void remove(long address) {
+        LogUnitEntry entry = entries.remove(address);
+        if (entry != null) {
+            size -= getSize(entry);
+            release(entry);
+        }
+    }
+
+    static void release(LogUnitEntry entry) {
+        if (entry != null && entry.getBuffer() != null) {
+            entry.getBuffer().release();
+        }
+    }
+
+    @Override
+    public void writeStreamAddresses(UUID streamID, RangeSet<Long> addresses) {
+        streamAddresses.put(streamID, addresses);
+    }
+
+    @Override
+    public RangeSet<Long> readStreamAddresses(UUID streamID) {
+        RangeSet<Long> addresses = streamAddresses.get(streamID);
+        return addresses == null ? TreeRangeSet.create() : TreeRangeSet.create(addresses);
+    }
+
+    @Override
+    public void setTrimListener(LongConsumer listener) {
+        this.trimListener = listener;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public synchronized void reset() {
+        entries.keySet().forEach(this::remove);
+        trimmed.values().forEach(InMemoryLogUnitStorage::release);
+        trimmed.clear();
+        streamAddresses.clear();
+    }
+
+    @Override
+    public void close() {
+        reset();
+    }
+}
@@ -5,54 +5,45 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
-import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 import org.corfudb.protocols.wireprotocol.*;
+import org.corfudb.util.AddressBitmap;
 import org.corfudb.util.Utils;
 import org.corfudb.util.retry.IRetry;
 import org.corfudb.util.retry.IntervalAndSentinelRetry;
 
 import java.io.*;
-import java.nio.ByteBuffer;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.nio.charset.Charset;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import org.corfudb.protocols.wireprotocol.LogUnitReadResponseMsg.ReadResultType;
 import org.corfudb.protocols.wireprotocol.LogUnitReadResponseMsg.LogUnitEntry;
-import org.corfudb.util.serializer.Serializers;
 
 /**
  * Created by mwei on 12/10/15.
  *
  * A Log Unit Server, which is responsible for providing the persistent storage for the Corfu Distributed Shared Log.
  *
- * All reads and writes go through a cache. If the sync flag (--sync) is set, the cache is configured in write-through
- * mode, otherwise the cache is configured in write-back mode. For persistence, every 10,000 log entries are written
- * to individual files (logs), which are represented as FileHandles. Each FileHandle contains a pointer to the tail
- * of the file, a memory-mapped file channel, and a set of addresses known to be in the file. To write an entry, the
- * pointer to the tail is first extended to the length of the entry, and the entry is added to the set of known
- * addresses. A header is written, which consists of the ASCII characters LE, followed by a set of flags,
- * the log unit address, the size of the entry, then the metadata size, metadata and finally the entry itself.
- * When the entry is complete, a written flag is set in the flags field.
+ * All reads and writes go through a cache, which is backed by a storage engine (see LogUnitStorage). If the sync
+ * flag (--sync) is set, the engine is written to before a write is acknowledged, otherwise it may be written to
+ * asynchronously. The engine is selected with --storage, and defaults to the in-memory engine if --memory is set,
+ * and to the file engine (see FileLogUnitStorage) otherwise.
+ *
+ * In sync mode, writes are made durable by a group commit thread: writes which arrive within a short window
+ * (--group-commit-linger microseconds, up to --group-commit-size writes) are covered by a single sync of the
+ * storage engine, and their acknowledgements are only sent once that sync completes. If the sync fails, every
+ * write it covered is answered with ERROR_SYNC, since the write may or may not be durable.
  */
 @Slf4j
 public class LogUnitServer implements IServer {
@@ -60,40 +51,42 @@ public class LogUnitServer implements IServer {
     /** The options map. */
     Map<String,Object> opts;
 
-    /** The log file prefix, which can be null if the server is in memory. */
-    String prefix;
+    /** The storage engine which backs the cache. */
+    @Getter
+    final LogUnitStorage storage;
+
+    /** The garbage collection thread. */
+    Thread gcThread;
 
+    /** A write which has been written to the storage engine, but is waiting for the engine to be synced
+     * before it is acknowledged, or failed if the sync fails.
+     */
     @Data
-    class FileHandle {
-        final AtomicLong filePointer;
-        final FileChannel channel;
-        final FileLock lock;
-        final Set<Long> knownAddresses = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        @Getter(lazy=true)
-        private final MappedByteBuffer byteBuffer = getMappedBuffer();
-        public ByteBuffer getMapForRegion(int offset, int size)
-        {
-            ByteBuffer o = getByteBuffer().duplicate();
-            o.position(offset);
-            return o.slice();
-        }
-        private MappedByteBuffer getMappedBuffer() {
-            try {
-                return channel.map(FileChannel.MapMode.READ_WRITE, 0L, Integer.MAX_VALUE);
-            }
-            catch (IOException ie)
-            {
-                log.error("Failed to map buffer for channel.");
-                throw new RuntimeException(ie);
-            }
-        }
+    class PendingCommit {
+        final long address;
+        final Runnable acknowledgement;
+        final Runnable failure;
     }
 
-    /** A map mapping to file channels. */
-    Map<Long, FileHandle> channelMap;
+    /** Queued after every pending write when the server shuts down, to stop the group commit thread.
+     * The thread is not interrupted, since interrupting a force would close the files being forced.
+     */
+    final PendingCommit COMMIT_SHUTDOWN = new PendingCommit(-1L, () -> {}, () -> {});
 
-    /** The garbage collection thread. */
-    Thread gcThread;
+    /** Writes waiting for the group commit thread. */
+    BlockingQueue<PendingCommit> commitQueue = new LinkedBlockingQueue<>();
+
+    /** The group commit thread, which is only present in sync mode. */
+    Thread commitThread;
+
+    /** The maximum number of writes to cover with a single force. */
+    int groupCommitSize;
+
+    /** The maximum time, in microseconds, to wait for more writes before forcing. */
+    long groupCommitLinger;
+
+    /** The maximum number of addresses to answer in a single ranged read response. */
+    int maxRangeReadSize;
 
     /**
      * The contiguous head of the log (that is, the lowest address which has NOT been trimmed yet).
@@ -105,38 +98,26 @@ public class LogUnitServer implements IServer {
     long contiguousTail;
 
     /**
-     * The addresses that this unit has seen, temporarily until they are integrated into the contiguousTail.
+     * The addresses that this unit has seen.
      */
-    Set<Address> seenAddressesTemp;
+    AddressBitmap seenAddresses;
 
-    @Data
-    class Address implements Comparable<Address> {
-        final long logAddress;
-        final Set<UUID> StreamIDs;
-
-        @Override
-        public int compareTo(Address o) {
-            return Long.compare(logAddress, o.logAddress);
-        }
-
-        @Override
-        public int hashCode()
-        {
-            return Long.hashCode(logAddress);
-        }
-
-        @Override
-        public boolean equals(Object obj)
-        {
-            return obj instanceof Address && logAddress == ((Address)obj).logAddress;
-        }
-    }
+    /**
+     * The streams of the addresses that this unit has seen, temporarily until they are integrated into the
+     * contiguousTail.
+     */
+    ConcurrentNavigableMap<Long, Set<UUID>> pendingStreams;
 
     /**
      * A range set representing trimmed addresses on the log unit.
      */
     RangeSet<Long> trimRange;
 
+    /**
+     * The addresses the storage engine trimmed on its own, which are yet to be removed from the cache.
+     */
+    final Queue<Long> storageTrims = new ConcurrentLinkedQueue<>();
+
     ConcurrentHashMap<UUID, Long> trimMap;
 
     IntervalAndSentinelRetry gcRetry;
@@ -167,24 +148,42 @@ public class LogUnitServer implements IServer {
                             .build());
 
     public LogUnitServer(Map<String, Object> opts)
+    {
+        this(opts, createStorage(opts));
+    }
+
+    /** Create a log unit server backed by the given storage engine.
+     *
+     * @param opts      The options map.
+     * @param storage   The storage engine to back the cache with.
+     */
+    public LogUnitServer(Map<String, Object> opts, LogUnitStorage storage)
     {
         this.opts = opts;
+        this.storage = storage;
 
         maxCacheSize = Utils.parseLong(opts.get("--max-cache"));
+        maxRangeReadSize = Utils.getOption(opts, "--max-range-read", Integer.class, 256);
 
-        if ((Boolean)opts.get("--memory")) {
+        if (!storage.isPersistent()) {
             log.warn("Log unit opened in-memory mode (Maximum size={}). " +
                     "This should be run for testing purposes only. " +
                     "If you exceed the maximum size of the unit, old entries will be AUTOMATICALLY trimmed. " +
                     "The unit WILL LOSE ALL DATA if it exits.", Utils.convertToByteStringRepresentation(maxCacheSize));
-            reset();
         }
-        else {
-            channelMap = new ConcurrentHashMap<>();
-            prefix = opts.get("--log-path") + File.separator + "log";
+        storage.setTrimListener(this::handleStorageTrim);
+
+        if (storage.isPersistent() && Utils.getOption(opts, "--sync", Boolean.class, false)) {
+            groupCommitSize = Utils.getOption(opts, "--group-commit-size", Integer.class, 64);
+            groupCommitLinger = Utils.getOption(opts, "--group-commit-linger", Long.class, 1000L);
+            commitThread = new Thread(this::runGroupCommit);
+            commitThread.setDaemon(true);
+            commitThread.start();
         }
 
         reset();
+        storage.recover(seenAddresses::add);
+        compactTail();
 
         scheduler.scheduleAtFixedRate(this::compactTail,
                 Utils.getOption(opts, "--compact", Long.class, 60L),
@@ -195,203 +194,49 @@ public class LogUnitServer implements IServer {
         gcThread.start();
     }
 
-    @Data
-    static class LogFileHeader {
-        static final String magic = "CORFULOG";
-        final int version;
-        final long flags;
-        ByteBuffer getBuffer()
-        {
-            ByteBuffer b = ByteBuffer.allocate(64);
-            // 0: "CORFULOG" header(8)
-            b.put(magic.getBytes(Charset.forName("UTF-8")),0, 8);
-            // 8: Version number(4)
-            b.putInt(version);
-            // 12: Flags (8)
-            b.putLong(flags);
-            // 20: Reserved (54)
-            b.position(64);
-            b.flip();
-            return b;
-        }
-        static LogFileHeader fromBuffer(ByteBuffer buffer)
-        {
-            byte[] bMagic = new byte[8];
-            buffer.get(bMagic, 0, 8);
-            if (!new String(bMagic).equals(magic))
-            {
-                log.warn("Encountered invalid magic, expected {}, got {}", magic, new String(bMagic));
-                throw new RuntimeException("Invalid header magic!");
-            }
-            return new LogFileHeader(buffer.getInt(), buffer.getLong());
+    /** Create the storage engine selected by the options.
+     *
+     * @param opts  The options map.
+     * @return      The storage engine.
+     */
+    static LogUnitStorage createStorage(Map<String, Object> opts)
+    {
+        String engine = Utils.getOption(opts, "--storage", String.class,
+                Utils.getOption(opts, "--memory", Boolean.class, false) ? "memory" : "file");
+        switch (engine) {
+            case "memory":
+                return new InMemoryLogUnitStorage(Utils.parseLong(opts.get("--max-cache")));
+            case "file":
+                return new FileLogUnitStorage((String) opts.get("--log-path"),
+                        Utils.getOption(opts, "--sync", Boolean.class, false),
+                        Utils.getOption(opts, "--max-open-segments", Integer.class, 256),
+                        Utils.getOption(opts, "--recovery-threads", Integer.class,
+                                Runtime.getRuntime().availableProcessors()));
+            default:
+                throw new IllegalArgumentException("Unknown storage engine " + engine);
         }
     }
 
     public synchronized void compactTail() {
-        long numEntries = 0;
-        List<Address> setCopy = new ArrayList<>(seenAddressesTemp);
-        Collections.sort(setCopy);
-        for (Address i : setCopy)
+        long newTail = seenAddresses.nextClearAddress(contiguousTail + 1) - 1;
+        long numEntries = newTail - contiguousTail;
+        Map<Long, Set<UUID>> compacted = pendingStreams.headMap(newTail, true);
+        for (Map.Entry<Long, Set<UUID>> e : compacted.entrySet())
         {
-            if (i.getLogAddress() == contiguousTail + 1)
+            for (UUID stream : e.getValue())
             {
-                contiguousTail = i.getLogAddress();
-                seenAddressesTemp.remove(i);
-                numEntries++;
-
-                if (i.getStreamIDs().size() > 0)
-                {
-                    for (UUID stream : i.getStreamIDs())
-                    {
-                        RangeSet<Long> currentSet = streamCache.get(stream);
-                        currentSet.add(Range.singleton(i.getLogAddress()));
-                        streamCache.put(stream, currentSet);
-                    }
-                }
-            }
-            else {
-                break;
+                RangeSet<Long> currentSet = streamCache.get(stream);
+                currentSet.add(Range.singleton(e.getKey()));
+                streamCache.put(stream, currentSet);
             }
         }
+        compacted.clear();
+        contiguousTail = newTail;
         if (numEntries > 0) {
             log.debug("Completed tail compaction, compacted {} entries, tail is now at {}", numEntries, contiguousTail);
         }
     }
 
-    /** Write the header for a Corfu log file.
-     *
-     * @param fc            The filechannel to use.
-     * @param pointer       The pointer to increment to the start position.
-     * @param version       The version number to write to the header.
-     * @param flags         Flags, if any to write to the header.
-     * @throws IOException
-     */
-    public void writeHeader(FileChannel fc, AtomicLong pointer, int version, long flags)
-            throws IOException
-    {
-        LogFileHeader lfg = new LogFileHeader(version, flags);
-        ByteBuffer b = lfg.getBuffer();
-        pointer.getAndAdd(b.remaining());
-        fc.write(b);
-        fc.force(true);
-    }
-
-    /** Read the header for a Corfu log file.
-     *
-     * @param fc            The filechannel to use.
-     * @throws IOException
-     */
-    public LogFileHeader readHeader(FileChannel fc)
-            throws IOException
-    {
-        ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, 64);
-        return LogFileHeader.fromBuffer(b);
-    }
-
-    /** Write a log entry to a file.
-     *
-     * @param fh            The file handle to use.
-     * @param address       The address of the entry.
-     * @param entry         The LogUnitEntry to write.
-     */
-    public void writeEntry(FileHandle fh, long address, LogUnitEntry entry)
-        throws IOException
-    {
-        ByteBuf metadataBuffer = Unpooled.buffer();
-        LogUnitMetadataMsg.bufferFromMap(metadataBuffer, entry.getMetadataMap());
-        int entrySize = entry.getBuffer().writerIndex() + metadataBuffer.writerIndex() + 24;
-        long pos = fh.getFilePointer().getAndAdd(entrySize);
-        ByteBuffer o = fh.getMapForRegion((int)pos, entrySize);
-        o.putInt(0x4C450000); // Flags
-        o.putLong(address); // the log unit address
-        o.putInt(entrySize); // Size
-        o.putInt(metadataBuffer.writerIndex()); // the metadata size
-        o.put(metadataBuffer.nioBuffer());
-        o.put(entry.buffer.nioBuffer());
-        metadataBuffer.release();
-        o.putShort(2, (short) 1); // written flag
-        o.flip();
-    }
-
-    /** Find a log entry in a file.
-     * @param fh            The file handle to use.
-     * @param address       The address of the entry.
-     * @return              The log unit entry at that address, or NULL if there was no entry.
-     */
-    public LogUnitEntry readEntry(FileHandle fh, long address)
-        throws IOException
-    {
-        ByteBuffer o = fh.getMapForRegion(64, (int)fh.getChannel().size());
-        while (o.hasRemaining())
-        {
-            short magic = o.getShort();
-            if (magic != 0x4C45)
-            {
-                return null;
-            }
-            short flags = o.getShort();
-            long addr = o.getLong();
-            if (address == -1) {
-            fh.knownAddresses.add(addr); }
-            int size = o.getInt();
-            if (addr != address)
-            {
-                o.position(o.position() + size-16); //skip over (size-20 is what we haven't read).
-                log.trace("Read address {}, not match {}, skipping. (remain={})", addr, address, o.remaining());
-            }
-            else {
-                log.debug("Entry at {} hit, reading (size={}).", address, size);
-                if (flags % 2 == 0) {
-                    log.error("Read a log entry but the write was torn, aborting!");
-                    throw new IOException("Torn write detected!");
-                }
-                int metadataMapSize = o.getInt();
-                ByteBuf mBuf = Unpooled.wrappedBuffer(o.slice());
-                o.position(o.position() + metadataMapSize);
-                ByteBuffer dBuf = o.slice();
-                dBuf.limit(size - metadataMapSize - 24);
-                return new LogUnitEntry(Unpooled.wrappedBuffer(dBuf),
-                        LogUnitMetadataMsg.mapFromBuffer(mBuf),
-                        false,
-                        true);
-            }
-        }
-        return null;
-    }
-
-    /** Gets the file channel for a particular address, creating it
-     * if is not present in the map.
-     * @param address   The address to open.
-     * @return          The FileChannel for that address.
-     */
-    public FileHandle getChannelForAddress(long address)
-    {
-        return channelMap.computeIfAbsent(address/10000, a -> {
-            String filePath = prefix + a.toString();
-            try {
-                FileChannel fc = FileChannel.open(FileSystems.getDefault().getPath(filePath),
-                        EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE,
-                                StandardOpenOption.CREATE, StandardOpenOption.SPARSE));
-
-                FileLock fl = fc.lock();
-
-                AtomicLong fp = new AtomicLong();
-                writeHeader(fc, fp, 1, 0);
-                log.info("Opened new log file at {}", filePath);
-                FileHandle fh = new FileHandle(fp, fc, fl);
-                // The first time we open a file we should read to the end, to load the
-                // map of entries we already have.
-                readEntry(fh, -1);
-                return fh;
-            }
-            catch (IOException e)
-            {
-                log.error("Error opening file {}", a, e);
-                throw new RuntimeException(e);
-            }
-        });
-    }
-
     @Override
     public void handleMessage(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r) {
         switch(msg.getMsgType())
@@ -462,7 +307,8 @@ public class LogUnitServer implements IServer {
                 } else {
                     CorfuRangeMsg rm = new CorfuRangeMsg(streamCache.get(m.getId()));
                     rm.copyBaseFields(m);
-                    read(rm, ctx, r);
+                    // Stream reads cannot be resumed, so they are always answered completely.
+                    read(rm, Integer.MAX_VALUE, ctx, r);
                 }
             }
             break;
@@ -474,7 +320,9 @@ public class LogUnitServer implements IServer {
         contiguousHead = 0L;
         contiguousTail = -1L;
         trimRange = TreeRangeSet.create();
-        seenAddressesTemp = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        seenAddresses = new AddressBitmap();
+        pendingStreams = new ConcurrentSkipListMap<>();
+        storage.reset();
 
         if (dataCache != null)
         {
@@ -493,35 +341,22 @@ public class LogUnitServer implements IServer {
                         if (dataCache.getIfPresent(address) != null) {// || seenAddresses.contains(address)) {
                             throw new RuntimeException("overwrite");
                         }
-                        seenAddressesTemp.add(new Address(address, entry.getStreams()));
-                        if (!entry.isPersisted && prefix != null) { //don't persist an entry twice.
-                            //evict the data by getting the next pointer.
+                        if (!entry.isPersisted) { //don't persist an entry twice.
                             try {
-                                // make sure the entry doesn't currently exist...
-                                // (probably need a faster way to do this - high watermark?)
-                                FileHandle fh = getChannelForAddress(address);
-                                if (!fh.getKnownAddresses().contains(address)) {
-                                    fh.getKnownAddresses().add(address);
-                                    if ((Boolean) opts.get("--sync")) {
-                                        writeEntry(fh, address, entry);
-                                    } else {
-                                        CompletableFuture.runAsync(() -> {
-                                            try {
-                                                writeEntry(fh, address, entry);
-                                            } catch (Exception e) {
-                                                log.error("Disk_write[{}]: Exception", address, e);
-                                            }
-                                        });
-                                    }
-                                } else {
-                                    throw new Exception("overwrite");
-                                }
-                                log.info("Disk_write[{}]: Written to disk.", address);
+                                storage.write(address, entry);
+                                log.trace("Storage_write[{}]: Written to storage.", address);
                             } catch (Exception e) {
-                                log.error("Disk_write[{}]: Exception", address, e);
+                                log.error("Storage_write[{}]: Exception", address, e);
                                 throw new RuntimeException(e);
                             }
                         }
+                        // Only record an entry once it is written, so a rejected overwrite does not replace
+                        // the streams of the entry already at the address. The streams are recorded first,
+                        // so they are pending once the address is seen.
+                        if (entry.getStreams() != null && !entry.getStreams().isEmpty()) {
+                            pendingStreams.put(address, entry.getStreams());
+                        }
+                        seenAddresses.add(address);
                     }
 
                     @Override
@@ -535,29 +370,14 @@ public class LogUnitServer implements IServer {
                 .writer(new CacheWriter<UUID, RangeSet<Long>>() {
                     @Override
                     public void write(UUID streamID, RangeSet<Long> entry) {
-                        if (prefix != null) {
-                            try {
-                                ByteBuf b = Unpooled.buffer();
-                                Set<Range<Long>> rs = entry.asRanges();
-                                b.writeInt(rs.size());
-                                for (Range<Long> r : rs)
-                                {
-                                    Serializers
-                                            .getSerializer(Serializers.SerializerType.JAVA).serialize(r, b);
-                                }
-                                com.google.common.io.Files.write(b.array(), new File(prefix + File.pathSeparator +
-                                        "stream" + streamID.toString()));
-                            } catch (IOException ie) {
-                                log.error("IOException while writing stream range for stream {}", streamID);
-                            }
-                        }
+                        storage.writeStreamAddresses(streamID, entry);
                     }
 
                     @Override
                     public void delete(UUID streamID, RangeSet<Long> entry, RemovalCause removalCause) {
                         // never need to delete
                     }
-                }).build(this::handleStreamRetrieval);
+                }).build(storage::readStreamAddresses);
 
         // Hints are always in memory and never persisted.
         /*
@@ -570,31 +390,7 @@ public class LogUnitServer implements IServer {
         trimMap = new ConcurrentHashMap<>();
     }
 
-    @SuppressWarnings("unchecked")
-    public RangeSet<Long> handleStreamRetrieval(UUID stream) {
-        if (prefix != null) {
-            Path p = FileSystems.getDefault().getPath(prefix + File.pathSeparator +
-                    "stream" + stream.toString());
-            try {
-                if (Files.exists(p)) {
-                    ByteBuf b = Unpooled.wrappedBuffer(Files.readAllBytes(p));
-                    RangeSet rs = TreeRangeSet.create();
-                    int ranges = b.readInt();
-                    for (int i = 0; i < ranges; i++)
-                    {
-                        Range r = (Range) Serializers
-                                .getSerializer(Serializers.SerializerType.JAVA).deserialize(b, null);
-                        rs.add(r);
-                    }
-                }
-            } catch (IOException ie) {
-                log.error("IO Exception reading from stream file {}", p);
-            }
-        }
-        return TreeRangeSet.create();
-    }
-
-    /** Retrieve the LogUnitEntry from disk, given an address.
+    /** Retrieve the LogUnitEntry from the storage engine, given an address.
      *
      * @param address   The address to retrieve the entry from.
      * @return          The log unit entry to retrieve into the cache.
@@ -604,15 +400,8 @@ public class LogUnitServer implements IServer {
      */
     public synchronized LogUnitEntry handleRetrieval(Long address) {
         log.trace("Retrieve[{}]", address);
-        if (prefix == null)
-        {
-            log.trace("This is an in-memory log unit, but a load was requested.");
-            return null;
-        }
-        FileHandle fh = getChannelForAddress(address);
         try {
-            log.info("Got header {}", readHeader(fh.getChannel()));
-            return readEntry(getChannelForAddress(address), address);
+            return storage.read(address);
         } catch (Exception e)
         {
             throw new RuntimeException(e);
@@ -621,13 +410,34 @@ public class LogUnitServer implements IServer {
 
     public synchronized void handleEviction(Long address, LogUnitEntry entry, RemovalCause cause) {
         log.trace("Eviction[{}]: {}", address, cause);
-        if (entry.buffer != null) {
-            if (prefix == null) {
-                log.warn("This is an in-memory log unit, data@{} will be trimmed and lost due to {}!", address, cause);
+        // Free the internal buffer once the data has been evicted, unless the storage engine owns it.
+        if (entry.buffer != null && storage.isPersistent()) {
+            entry.buffer.release();
+        }
+    }
+
+    /** Handle an entry which the storage engine trimmed on its own.
+     *
+     * The engine trims while a write is in the cache's writer, where the cache cannot be modified,
+     * so the address is only queued here and trimmed by processStorageTrims once the write returns.
+     *
+     * @param address   The address which was trimmed.
+     */
+    public void handleStorageTrim(long address) {
+        storageTrims.add(address);
+    }
+
+    /** Trim the entries which the storage engine trimmed on its own. The entry is removed from the
+     * cache before the engine is told to free it, so it is never served once its buffer is released.
+     */
+    void processStorageTrims() {
+        Long address;
+        while ((address = storageTrims.poll()) != null) {
+            synchronized (this) {
                 trimRange.add(Range.closed(address, address));
             }
-            // Free the internal buffer once the data has been evicted (in the case the server is not sync).
-            entry.buffer.release();
+            dataCache.invalidate(address);
+            storage.trim(address);
         }
     }
 
@@ -655,21 +465,52 @@ public class LogUnitServer implements IServer {
         }
     }
 
-    /** Service an incoming ranged read request. */
+    /** Service an incoming ranged read request.
+     *
+     * At most maxRangeReadSize addresses are answered, in ascending order, so that the size of the
+     * response is bounded no matter how large the requested range is. If the range was not completely
+     * answered, the response contains the address the client should resume reading from.
+     */
     public void read(CorfuRangeMsg msg, ChannelHandlerContext ctx, IServerRouter r)
+    {
+        read(msg, maxRangeReadSize, ctx, r);
+    }
+
+    /** Service a ranged read request, answering at most maxAddresses addresses. */
+    void read(CorfuRangeMsg msg, int maxAddresses, ChannelHandlerContext ctx, IServerRouter r)
     {
         log.trace("ReadRange[{}]", msg.getRanges());
-        Set<Long> total = new HashSet<>();
+        Map<Long, LogUnitReadResponseMsg> o = new HashMap<>();
+        long resumeAddress = -1L;
+        int count = 0;
         for (Range<Long> range : msg.getRanges().asRanges())
         {
-            total.addAll(Utils.discretizeRange(range));
+            // The canonical form of a range of longs is [lower, upper).
+            Range<Long> canonical = range.canonical(DiscreteDomain.longs());
+            long start = Math.max(canonical.hasLowerBound() ? canonical.lowerEndpoint() : 0L, 0L);
+            long end = canonical.hasUpperBound() ? canonical.upperEndpoint() : Long.MAX_VALUE;
+            for (long address = start; address < end; address++)
+            {
+                if (count == maxAddresses)
+                {
+                    resumeAddress = address;
+                    break;
+                }
+                count++;
+                LogUnitEntry e = dataCache.get(address);
+                if (e != null)
+                {
+                    o.put(address, new LogUnitReadResponseMsg(e));
+                }
+            }
+            if (resumeAddress != -1L)
+            {
+                log.trace("ReadRange[{}]: answered {} addresses, resume at {}", msg.getRanges(), count,
+                        resumeAddress);
+                break;
+            }
         }
-
-        Map<Long, LogUnitEntry> e = dataCache.getAll(total);
-        Map<Long, LogUnitReadResponseMsg> o = new ConcurrentHashMap<>();
-        e.entrySet().parallelStream()
-                .forEach(rv -> o.put(rv.getKey(), new LogUnitReadResponseMsg(rv.getValue())));
-        r.sendResponse(ctx, msg, new LogUnitReadRangeResponseMsg(o));
+        r.sendResponse(ctx, msg, new LogUnitReadRangeResponseMsg(o, resumeAddress));
     }
 
     /** Service an incoming write request. */
@@ -689,15 +530,81 @@ public class LogUnitServer implements IServer {
             msg.getData().release();
             try {
                 dataCache.put(msg.getAddress(), e);
-                r.sendResponse(ctx, msg, new CorfuMsg(CorfuMsg.CorfuMsgType.ERROR_OK));
+                if (commitThread != null) {
+                    // Acknowledge only once the group commit thread has forced the write to disk.
+                    commitQueue.add(new PendingCommit(msg.getAddress(),
+                            () -> r.sendResponse(ctx, msg, new CorfuMsg(CorfuMsg.CorfuMsgType.ERROR_OK)),
+                            () -> r.sendResponse(ctx, msg, new CorfuMsg(CorfuMsg.CorfuMsgType.ERROR_SYNC))));
+                } else {
+                    r.sendResponse(ctx, msg, new CorfuMsg(CorfuMsg.CorfuMsgType.ERROR_OK));
+                }
             } catch (Exception ex)
             {
                 r.sendResponse(ctx, msg, new CorfuMsg(CorfuMsg.CorfuMsgType.ERROR_OVERWRITE));
                 e.getBuffer().release();
+            } finally {
+                processStorageTrims();
             }
         }
     }
 
+    /** Run the group commit loop, which forces batches of writes to disk and then
+     * releases their acknowledgements.
+     */
+    public void runGroupCommit()
+    {
+        Thread.currentThread().setName("LogUnit-GroupCommit");
+        List<PendingCommit> batch = new ArrayList<>(groupCommitSize);
+        boolean shutdown = false;
+        while (!shutdown) {
+            try {
+                PendingCommit first = commitQueue.take();
+                shutdown = first == COMMIT_SHUTDOWN;
+                if (!shutdown) {
+                    batch.add(first);
+                }
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(groupCommitLinger);
+                while (!shutdown && batch.size() < groupCommitSize) {
+                    PendingCommit next = commitQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    shutdown = next == COMMIT_SHUTDOWN;
+                    if (!shutdown) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException ie) {
+                log.warn("Group commit interrupted, committing the writes collected so far.");
+            }
+            commitBatch(batch);
+        }
+    }
+
+    /** Sync the storage engine for a batch of writes, then acknowledge the writes.
+     * If the sync fails for any reason, every write in the batch is answered with ERROR_SYNC,
+     * since the write may or may not be durable, and the group commit thread carries on.
+     *
+     * @param batch     The batch of writes to commit, which is cleared once committed.
+     */
+    void commitBatch(List<PendingCommit> batch)
+    {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            storage.sync(batch.stream().map(PendingCommit::getAddress).collect(Collectors.toList()));
+            log.trace("Group commit of {} writes complete.", batch.size());
+            batch.forEach(p -> p.getAcknowledgement().run());
+        } catch (Exception e) {
+            // The storage engine may also fail with an unchecked exception, for example when a closed
+            // file cannot be reopened, which must not kill the thread and leave later writes unanswered.
+            log.error("Group commit of {} writes failed, failing the writes.", batch.size(), e);
+            batch.forEach(p -> p.getFailure().run());
+        }
+        batch.clear();
+    }
+
     public void runGC()
     {
         Thread.currentThread().setName("LogUnit-GC");
@@ -760,11 +667,11 @@ public class LogUnitServer implements IServer {
     {
         // Add this entry to the trimmed range map.
         trimRange.add(Range.closed(address, address));
-        // Invalidate this entry from the cache. This will cause the CacheLoader to free the entry from the disk
-        // assuming the entry is back by disk
+        // Invalidate this entry from the cache, and free it from the storage engine.
         dataCache.invalidate(address);
-        //and free any references the buffer might have
-        if (entry.getBuffer() != null)
+        storage.trim(address);
+        //and free any references the buffer might have, unless the storage engine owns it.
+        if (entry.getBuffer() != null && storage.isPersistent())
         {
             entry.getBuffer().release();
         }
@@ -776,17 +683,15 @@ public class LogUnitServer implements IServer {
     @Override
     public void shutdown() {
         scheduler.shutdownNow();
-        // Clean up any file locks.
-        if (channelMap != null) {
-            channelMap.entrySet().parallelStream()
-                    .forEach(f -> {
-                        try {
-                            f.getValue().getLock().release();
-                        } catch (IOException ie) {
-                            log.warn("Error releasing lock for channel {}", f.getKey());
-                        }
-                    });
+        if (commitThread != null) {
+            commitQueue.add(COMMIT_SHUTDOWN);
+            try {
+                commitThread.join();
+            } catch (InterruptedException ie) {
+                log.warn("Interrupted while waiting for group commit to complete.");
+            }
         }
+        storage.close();
     }
 
     @VisibleForTesting
@@ -0,0 +1,108 @@
+package org.corfudb.infrastructure;
+
+import com.google.common.collect.RangeSet;
+import org.corfudb.protocols.wireprotocol.LogUnitReadResponseMsg.LogUnitEntry;
+import org.corfudb.runtime.exceptions.OverwriteException;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+
+/**
+ * The storage engine of a log unit, which holds the entries written to the log unit and the
+ * addresses of each stream.
+ *
+ * The log unit server handles the protocol, caches entries and tracks the contiguous tail of the
+ * log, while the storage engine decides how entries are laid out. An engine is selected with the
+ * --storage option of the server:
+ *
+ * - memory: entries are held in memory, up to the size of the cache, after which the lowest
+ *           addresses are trimmed. All data is lost when the server exits.
+ * - file:   entries are appended to segment files under the log path.
+ *
+ * Engines which are not persistent own the buffers of the entries written to them, and release
+ * them when the entries are trimmed. Persistent engines copy the entries written to them, so the
+ * buffers remain owned by the caller.
+ */
+public interface LogUnitStorage {
+
+    /** Write an entry to an address.
+     *
+     * @param address           The address to write to.
+     * @param entry             The entry to write.
+     * @throws OverwriteException   If the address was already written.
+     * @throws IOException          If the entry could not be written.
+     */
+    void write(long address, LogUnitEntry entry)
+            throws OverwriteException, IOException;
+
+    /** Read the entry at an address.
+     *
+     * @param address   The address to read.
+     * @return          The entry at the address, or null if the address was not written.
+     * @throws IOException  If the entry could not be read.
+     */
+    LogUnitEntry read(long address)
+            throws IOException;
+
+    /** Make the writes to the given addresses durable.
+     *
+     * @param addresses     The addresses which were written.
+     * @throws IOException  If the writes could not be made durable.
+     */
+    void sync(Collection<Long> addresses)
+            throws IOException;
+
+    /** Discard the entry at an address, which has been trimmed.
+     *
+     * @param address   The address which was trimmed.
+     */
+    void trim(long address);
+
+    /** Persist the addresses of a stream.
+     *
+     * @param streamID      The stream.
+     * @param addresses     The addresses of the stream.
+     */
+    void writeStreamAddresses(UUID streamID, RangeSet<Long> addresses);
+
+    /** Read the addresses of a stream.
+     *
+     * @param streamID  The stream.
+     * @return          The addresses of the stream, which are empty if none were persisted.
+     */
+    RangeSet<Long> readStreamAddresses(UUID streamID);
+
+    /** Recover the engine when the server starts, reporting every address which was written to it
+     * before the server was restarted. Engines which are not persistent have nothing to recover.
+     *
+     * @param written   The consumer to report written addresses to, which may be called from
+     *                  several threads at once.
+     */
+    default void recover(LongConsumer written) {
+    }
+
+    /** Set the listener to notify when the engine trims an entry on its own, for example to bound
+     * the memory it uses. Engines which never trim on their own ignore the listener.
+     *
+     * The listener may be called from within write, so it must not write to the engine. The engine
+     * may keep the entry's buffer until trim is called for the address, once it is no longer served.
+     *
+     * @param listener  The listener, which is given the address which was trimmed.
+     */
+    default void setTrimListener(LongConsumer listener) {
+    }
+
+    /** Whether the entries written to this engine survive a restart of the server.
+     *
+     * @return  True, if the engine is persistent.
+     */
+    boolean isPersistent();
+
+    /** Reset the engine. Engines which are not persistent discard everything written to them. */
+    void reset();
+
+    /** Close the engine, releasing any files it holds. */
+    void close();
+}
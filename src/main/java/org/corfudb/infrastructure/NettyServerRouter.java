@@ -10,8 +10,10 @@ import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.protocols.wireprotocol.CorfuSetEpochMsg;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 /**
@@ -27,6 +29,9 @@ implements IServerRouter {
     /** This map stores the mapping from message type to netty server handler. */
     Map<CorfuMsg.CorfuMsgType, IServer> handlerMap;
 
+    /** The servers registered to this router. */
+    List<IServer> servers;
+
     BaseServer baseServer;
 
     /** The epoch of this router. This is managed by the base server implementation. */
@@ -37,6 +42,7 @@ implements IServerRouter {
     public NettyServerRouter()
     {
         handlerMap = new ConcurrentHashMap<>();
+        servers = new CopyOnWriteArrayList<>();
         baseServer = new BaseServer(this);
         addServer(baseServer);
     }
@@ -46,6 +52,7 @@ implements IServerRouter {
      * @param server The server to add.
      */
     public void addServer(IServer server) {
+        servers.add(server);
         // Iterate through all types of CorfuMsgType, registering the handler
         Arrays.<CorfuMsg.CorfuMsgType>stream(CorfuMsg.CorfuMsgType.values())
                 .forEach(x -> {
@@ -67,6 +74,7 @@ implements IServerRouter {
     {
         outMsg.copyBaseFields(inMsg);
         outMsg.setEpoch(epoch);
+        // The flush is coalesced with other responses written in the same event loop turn.
         ctx.writeAndFlush(outMsg);
         log.trace("Sent response: {}", outMsg);
     }
@@ -109,6 +117,11 @@ implements IServerRouter {
                 // The message was unregistered, we are dropping it.
                 log.warn("Received unregistered message {}, dropping", m);
             }
+            else if (m.isExpired())
+            {
+                // The client has given up on this request, so there is no point serving it.
+                log.debug("Deadline of message {} has passed, dropping", m);
+            }
             else
             {
                 if (validateEpoch(m, ctx)) {
@@ -131,6 +144,28 @@ implements IServerRouter {
         }
     }
 
+    /**
+     * Notify each server that a batch of messages has been read from the channel.
+     * @param ctx   Channel handler context
+     */
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        for (IServer server : servers) {
+            try {
+                server.handleReadComplete(ctx, this);
+            } catch (Exception e) {
+                log.error("Exception during read complete!", e);
+            }
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isBatchingReads() {
+        return true;
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         log.error("Error in handling inbound message, {}", cause);
@@ -1,13 +1,16 @@
 package org.corfudb.infrastructure;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Striped;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.channel.ChannelHandlerContext;
+import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.protocols.wireprotocol.TokenRequestMsg;
 import org.corfudb.protocols.wireprotocol.TokenResponseMsg;
+import org.corfudb.protocols.wireprotocol.TxResolutionInfo;
 import org.corfudb.util.Utils;
 
 import java.io.File;
@@ -15,16 +18,26 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
 
 /**
  * This server implements the sequencer functionality of Corfu.
@@ -33,6 +46,23 @@ import java.util.concurrent.atomic.AtomicLong;
  *
  * TOKEN_REQ - Request the next token.
  *
+ * Token issuance does not take a global lock. Requests which share a stream are serialized by a
+ * lock striped over stream IDs, so tokens for a stream are issued in order and each backpointer is
+ * the previous token issued for that stream, while requests on disjoint streams proceed concurrently.
+ * If the router batches reads, token requests read from a channel are deferred until the end of the
+ * batch and then issued together, with a single increment of the global index.
+ *
+ * A token request for a transaction may carry the reads and writes of the transaction, in which case
+ * the sequencer decides whether the transaction commits when it issues the token. It tracks the last
+ * committed write to each stream, and to each conflict key of a stream, and aborts a transaction if a
+ * part of an object it read was written after its read timestamp. Token requests which are not for a
+ * resolved transaction are treated as committed writes of the whole object. Only the most recently
+ * written conflict keys are tracked; reads older than the last key forgotten, or older than the first
+ * token issued after the sequencer started, abort conservatively.
+ *
+ * A persistent sequencer periodically checkpoints the global index together with the last token
+ * issued for each stream, so that backpointers remain available after the sequencer recovers.
+ *
  * Created by mwei on 12/8/15.
  */
 @Slf4j
@@ -46,15 +76,60 @@ public class SequencerServer implements IServer {
 
     AtomicLong globalIndex;
 
-    /** The file channel. */
-    FileChannel fc;
+    /** The path of the checkpoint file, if the sequencer is persistent. */
+    Path checkpointPath;
 
     /**
      * A simple map of the most recently issued token for any given stream.
      */
     ConcurrentHashMap<UUID, Long> lastIssuedMap;
 
+    /** The maximum number of conflict keys whose last write is tracked. */
+    static final int MAX_CONFLICT_KEYS = 1 << 20;
+
+    /** The last committed write to each stream, including writes of only some of its keys. */
+    final ConcurrentHashMap<UUID, Long> lastWriteMap = new ConcurrentHashMap<>();
+
+    /** The last committed write of the whole object to each stream. */
+    final ConcurrentHashMap<UUID, Long> lastObjectWriteMap = new ConcurrentHashMap<>();
+
+    /** A conflict key of a stream. */
+    @Data
+    static class ConflictKey {
+        final UUID streamID;
+        final long key;
+    }
+
+    /** The last committed write to each conflict key, with the least recently written key first. */
+    final LinkedHashMap<ConflictKey, Long> lastKeyWriteMap = new LinkedHashMap<ConflictKey, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ConflictKey, Long> eldest) {
+            if (size() > MAX_CONFLICT_KEYS) {
+                conflictWatermark = Math.max(conflictWatermark, eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /** The address below which writes are no longer tracked, so any read before it must abort. */
+    volatile long conflictWatermark = -1L;
+
+    /** Locks, striped by stream ID, which serialize the issuance of tokens for a stream. */
+    final Striped<Lock> streamLocks = Striped.lock(1024);
 
+    /** A token request waiting for the end of the batch it was read in. */
+    @Data
+    static class PendingTokenRequest {
+        final TokenRequestMsg msg;
+        final ChannelHandlerContext ctx;
+        final IServerRouter router;
+    }
+
+    /** The token requests read in the current batch. Reads for a channel are always delivered
+     * on the same thread, so the batch is kept per thread.
+     */
+    final ThreadLocal<List<PendingTokenRequest>> pendingRequests = ThreadLocal.withInitial(ArrayList::new);
 
     /**
      * A scheduler, which is used to schedule checkpoints and lease renewal
@@ -76,10 +151,8 @@ public class SequencerServer implements IServer {
         try {
             if (!(Boolean) opts.get("--memory"))
             {
-                fc = FileChannel.open(FileSystems.getDefault().getPath(opts.get("--log-path")
-                                + File.separator + "sequencer_checkpoint"),
-                        EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE,
-                                StandardOpenOption.CREATE, StandardOpenOption.SPARSE));
+                checkpointPath = FileSystems.getDefault().getPath(opts.get("--log-path")
+                                + File.separator + "sequencer_checkpoint");
                 // schedule checkpointing.
                 scheduler.scheduleAtFixedRate(this::checkpointState,
                         Utils.parseLong(opts.get("--checkpoint")),
@@ -92,15 +165,7 @@ public class SequencerServer implements IServer {
             {
                 if (!(Boolean) opts.get("--memory"))
                 {
-                    ByteBuffer b = ByteBuffer.allocate((int)fc.size());
-                    fc.read(b);
-                    if (fc.size() >= 8) {
-                        globalIndex.set(b.getLong(0));
-                    }
-                    else {
-                        log.warn("Sequencer recovery requested but checkpoint not set, defaulting to 0");
-                        globalIndex.set(0);
-                    }
+                    recoverState();
                 }
                 else {
                     log.warn("Sequencer recovery requested but has no meaning for a in-memory server, defaulting to 0");
@@ -111,6 +176,8 @@ public class SequencerServer implements IServer {
             {
                 globalIndex.set(newIndex);
             }
+            // Writes before the sequencer started were not tracked.
+            conflictWatermark = globalIndex.get() - 1;
             log.info("Sequencer initial token set to {}", globalIndex.get());
         }
         catch (Exception ex)
@@ -119,18 +186,80 @@ public class SequencerServer implements IServer {
         }
     }
 
+    /** Recovers the state of the sequencer from the checkpoint.
+     *
+     * The global index is set past both the checkpointed index and every checkpointed stream tail,
+     * since a stream tail may have been issued after the index was read during the checkpoint.
+     */
+    void recoverState() throws IOException {
+        if (!Files.exists(checkpointPath) || Files.size(checkpointPath) < 8) {
+            log.warn("Sequencer recovery requested but checkpoint not set, defaulting to 0");
+            globalIndex.set(0);
+            return;
+        }
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(checkpointPath));
+        if (b.remaining() == 8) {
+            // A checkpoint written before stream tails were checkpointed.
+            globalIndex.set(b.getLong(0));
+            log.warn("Sequencer checkpoint does not contain stream tails, backpointers will be rebuilt by new writes");
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(b.array(), 0, b.limit() - 4);
+        if (b.getInt(b.limit() - 4) != (int) crc.getValue()) {
+            log.error("Sequencer checkpoint is corrupted, defaulting to 0");
+            globalIndex.set(0);
+            return;
+        }
+
+        long index = b.getLong();
+        int numStreams = b.getInt();
+        for (int i = 0; i < numStreams; i++) {
+            UUID id = new UUID(b.getLong(), b.getLong());
+            long lastIssued = b.getLong();
+            lastIssuedMap.put(id, lastIssued);
+            index = Math.max(index, lastIssued + 1);
+        }
+        globalIndex.set(index);
+        log.info("Sequencer recovered tails for {} streams from checkpoint", numStreams);
+    }
+
     /** Checkpoints the state of the sequencer.
      *
+     * The checkpoint contains the global index and the last token issued for each stream,
+     * followed by a CRC32 of its contents. It is written to a temporary file which then
+     * atomically replaces the previous checkpoint, so a crash never leaves a partial checkpoint.
      */
-    public void checkpointState() {
-        ByteBuffer b = ByteBuffer.allocate(8);
+    public synchronized void checkpointState() {
         long checkpointAddress = globalIndex.get();
-        b.putLong(globalIndex.get());
+        Map<UUID, Long> tails = new HashMap<>(lastIssuedMap);
+        ByteBuffer b = ByteBuffer.allocate(8 + 4 + tails.size() * 24 + 4);
+        b.putLong(checkpointAddress);
+        b.putInt(tails.size());
+        tails.forEach((id, lastIssued) -> {
+            b.putLong(id.getMostSignificantBits());
+            b.putLong(id.getLeastSignificantBits());
+            b.putLong(lastIssued);
+        });
+        CRC32 crc = new CRC32();
+        crc.update(b.array(), 0, b.position());
+        b.putInt((int) crc.getValue());
         b.flip();
+
+        Path tempPath = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
         try {
-            fc.write(b, 0L);
-            fc.force(true);
-            log.debug("Sequencer state successfully checkpointed at {}", checkpointAddress);
+            try (FileChannel fc = FileChannel.open(tempPath, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (b.hasRemaining()) {
+                    fc.write(b);
+                }
+                fc.force(true);
+            }
+            Files.move(tempPath, checkpointPath, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Sequencer state successfully checkpointed at {} with {} stream tails",
+                    checkpointAddress, tails.size());
         } catch (IOException ie)
         {
             log.warn("Sequencer checkpoint failed due to exception", ie);
@@ -138,13 +267,15 @@ public class SequencerServer implements IServer {
     }
 
     @Override
-    public synchronized void handleMessage(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r) {
+    public void handleMessage(CorfuMsg msg, ChannelHandlerContext ctx, IServerRouter r) {
         switch (msg.getMsgType())
         {
             case TOKEN_REQ: {
                 TokenRequestMsg req = (TokenRequestMsg) msg;
                 if (req.getNumTokens() == 0)
                 {
+                    // A query must observe every token issued before it in the batch.
+                    issuePendingTokens();
                     long max = 0L;
                     boolean hit = false;
                     for (UUID id : req.getStreamIDs()) {
@@ -163,21 +294,10 @@ public class SequencerServer implements IServer {
                             new TokenResponseMsg(max, Collections.emptyMap()));
                 }
                 else {
-                    long thisIssue = globalIndex.getAndAdd(req.getNumTokens());
-                    ImmutableMap.Builder<UUID,Long> mb  = ImmutableMap.builder();
-                    for (UUID id : req.getStreamIDs()) {
-                        lastIssuedMap.compute(id, (k, v) ->{
-                                if (v == null)
-                                {
-                                    mb.put(k, -1L);
-                                    return thisIssue + req.getNumTokens() -1;
-                                }
-                                mb.put(k, v);
-                                return Math.max(thisIssue + req.getNumTokens()-1, v);
-                        });
+                    pendingRequests.get().add(new PendingTokenRequest(req, ctx, r));
+                    if (!r.isBatchingReads()) {
+                        issuePendingTokens();
                     }
-                    r.sendResponse(ctx, msg,
-                            new TokenResponseMsg(thisIssue, mb.build()));
                 }
             }
             break;
@@ -187,9 +307,153 @@ public class SequencerServer implements IServer {
         }
     }
 
+    @Override
+    public void handleReadComplete(ChannelHandlerContext ctx, IServerRouter r) {
+        issuePendingTokens();
+    }
+
+    /** Issue tokens for all the requests read in the current batch, and respond to them.
+     *
+     * The locks for every stream in the batch are taken in a consistent order, so that the
+     * tokens for the batch can be reserved with a single increment of the global index and
+     * assigned to the requests in the order they were read.
+     */
+    void issuePendingTokens() {
+        List<PendingTokenRequest> batch = pendingRequests.get();
+        if (batch.isEmpty()) {
+            return;
+        }
+        pendingRequests.set(new ArrayList<>());
+
+        Set<UUID> streams = new HashSet<>();
+        long totalTokens = 0L;
+        for (PendingTokenRequest p : batch) {
+            streams.addAll(p.getMsg().getStreamIDs());
+            if (p.getMsg().getTxResolution() != null) {
+                // The streams a transaction read must not be written while it is decided.
+                streams.addAll(p.getMsg().getTxResolution().getReadSet().keySet());
+            }
+            totalTokens += p.getMsg().getNumTokens();
+        }
+
+        List<TokenResponseMsg> responses = new ArrayList<>(batch.size());
+        Iterable<Lock> locks = streamLocks.bulkGet(streams);
+        locks.forEach(Lock::lock);
+        try {
+            long thisIssue = globalIndex.getAndAdd(totalTokens);
+            for (PendingTokenRequest p : batch) {
+                long lastToken = thisIssue + p.getMsg().getNumTokens() - 1;
+                ImmutableMap.Builder<UUID, Long> mb = ImmutableMap.builder();
+                for (UUID id : p.getMsg().getStreamIDs()) {
+                    Long prev = lastIssuedMap.put(id, lastToken);
+                    mb.put(id, prev == null ? -1L : prev);
+                }
+                TxResolutionInfo tx = p.getMsg().getTxResolution();
+                TokenResponseMsg.TxResolution resolution = TokenResponseMsg.TxResolution.UNRESOLVED;
+                if (tx != null) {
+                    resolution = isConflicting(tx) ? TokenResponseMsg.TxResolution.ABORTED
+                            : TokenResponseMsg.TxResolution.COMMITTED;
+                }
+                if (resolution != TokenResponseMsg.TxResolution.ABORTED) {
+                    recordWrites(p.getMsg().getStreamIDs(), tx == null ? null : tx.getWriteSet(), lastToken);
+                }
+                responses.add(new TokenResponseMsg(thisIssue, mb.build(), resolution));
+                thisIssue = lastToken + 1;
+            }
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingTokenRequest p = batch.get(i);
+            p.getRouter().sendResponse(p.getCtx(), p.getMsg(), responses.get(i));
+        }
+    }
+
+    /** Check whether a write committed after a transaction read the log conflicts with its reads.
+     * The caller must hold the locks of the streams the transaction read.
+     *
+     * If the transaction is retried because writing its last token failed, the writes recorded at
+     * that token are its own, so they are not conflicts.
+     *
+     * @param tx    The reads and writes of the transaction.
+     * @return      True, if a part of an object the transaction read was written after it read.
+     */
+    boolean isConflicting(TxResolutionInfo tx) {
+        long readTimestamp = tx.getReadTimestamp();
+        long failedToken = tx.getFailedToken();
+        for (Map.Entry<UUID, Set<Long>> read : tx.getReadSet().entrySet()) {
+            long lastWrite;
+            if (read.getValue() == null) {
+                lastWrite = Math.max(ownWrite(conflictWatermark, failedToken),
+                        ownWrite(lastWriteMap.getOrDefault(read.getKey(), -1L), failedToken));
+            } else {
+                lastWrite = ownWrite(lastObjectWriteMap.getOrDefault(read.getKey(), -1L), failedToken);
+                synchronized (lastKeyWriteMap) {
+                    // Evicting a key raises the watermark, so it must be read under the same lock as the keys,
+                    // or a key could be evicted by a write to another stream between the two reads.
+                    lastWrite = Math.max(lastWrite, ownWrite(conflictWatermark, failedToken));
+                    for (Long key : read.getValue()) {
+                        lastWrite = Math.max(lastWrite, ownWrite(lastKeyWriteMap
+                                .getOrDefault(new ConflictKey(read.getKey(), key), -1L), failedToken));
+                    }
+                }
+            }
+            if (lastWrite > readTimestamp) {
+                log.debug("Transaction read stream {} at {}, but it was written at {}, aborting",
+                        read.getKey(), readTimestamp, lastWrite);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Ignore a recorded write if it was made at the failed token of a retried transaction.
+     *
+     * @param address       The address of the recorded write.
+     * @param failedToken   The failed token of the transaction, or -1.
+     * @return              The address, or -1 if the write was the transaction's own.
+     */
+    static long ownWrite(long address, long failedToken) {
+        return failedToken != -1L && address == failedToken ? -1L : address;
+    }
+
+    /** Record a committed write to a set of streams.
+     * The caller must hold the locks of the streams.
+     *
+     * @param streamIDs     The streams written.
+     * @param writeSet      The conflict keys written, by stream, or null if the whole
+     *                      object of every stream was written.
+     * @param address       The address of the write.
+     */
+    void recordWrites(Set<UUID> streamIDs, Map<UUID, Set<Long>> writeSet, long address) {
+        for (UUID id : streamIDs) {
+            lastWriteMap.put(id, address);
+            Set<Long> keys = writeSet == null ? null : writeSet.get(id);
+            if (keys == null) {
+                lastObjectWriteMap.put(id, address);
+                continue;
+            }
+            synchronized (lastKeyWriteMap) {
+                for (Long key : keys) {
+                    // Re-insert the key, so it becomes the most recently written.
+                    ConflictKey conflictKey = new ConflictKey(id, key);
+                    lastKeyWriteMap.remove(conflictKey);
+                    lastKeyWriteMap.put(conflictKey, address);
+                }
+            }
+        }
+    }
+
     @Override
     public void reset() {
         globalIndex.set(0L);
+        lastWriteMap.clear();
+        lastObjectWriteMap.clear();
+        synchronized (lastKeyWriteMap) {
+            lastKeyWriteMap.clear();
+        }
+        conflictWatermark = -1L;
     }
 
     /**
@@ -197,13 +461,9 @@ public class SequencerServer implements IServer {
      */
     @Override
     public void shutdown() {
-        try {
-            scheduler.shutdownNow();
+        scheduler.shutdownNow();
+        if (checkpointPath != null) {
             checkpointState();
-            fc.close();
-        } catch (IOException ie)
-        {
-            log.warn("Error checkpointing server during shutdown!", ie);
         }
     }
 }
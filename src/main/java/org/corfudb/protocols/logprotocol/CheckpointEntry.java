@@ -0,0 +1,88 @@
+package org.corfudb.protocols.logprotocol;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.util.serializer.Serializers;
+
+import java.util.UUID;
+
+/**
+ * A checkpoint of the state of an SMR object.
+ *
+ * The checkpoint contains a serialized snapshot of the object state, which reflects
+ * every update in the object's stream up to and including the checkpoint address.
+ * Checkpoints are written to a side stream (see getCheckpointStreamID), so that
+ * an object can be restored by reading the latest checkpoint and then replaying only
+ * the entries in its stream after the checkpoint address.
+ */
+@ToString(callSuper = true, exclude = "state")
+@NoArgsConstructor
+public class CheckpointEntry extends LogEntry {
+
+    /** The stream of the object this checkpoint was taken from. */
+    @Getter
+    UUID streamID;
+
+    /** The stream address the state reflects. */
+    @Getter
+    long checkpointAddress;
+
+    /** The serializer used to serialize the state. */
+    @Getter
+    Serializers.SerializerType serializerType;
+
+    /** The object state. */
+    @Getter
+    Object state;
+
+    public CheckpointEntry(UUID streamID, long checkpointAddress, Object state,
+                           Serializers.SerializerType serializerType)
+    {
+        super(LogEntryType.CHECKPOINT);
+        this.streamID = streamID;
+        this.checkpointAddress = checkpointAddress;
+        this.state = state;
+        this.serializerType = serializerType;
+    }
+
+    /** Get the ID of the stream which checkpoints of the given stream are written to.
+     *
+     * @param streamID  The stream of the object being checkpointed.
+     * @return          The ID of the checkpoint stream.
+     */
+    public static UUID getCheckpointStreamID(UUID streamID) {
+        return CorfuRuntime.getStreamID(streamID.toString() + "_checkpoint");
+    }
+
+    /**
+     * Serialize the message into the given bytebuffer.
+     *
+     * @param buffer The buffer to serialize to.
+     */
+    @Override
+    public void serialize(ByteBuf buffer) {
+        super.serialize(buffer);
+        buffer.writeLong(streamID.getMostSignificantBits());
+        buffer.writeLong(streamID.getLeastSignificantBits());
+        buffer.writeLong(checkpointAddress);
+        buffer.writeByte(serializerType.asByte());
+        Serializers.getSerializer(serializerType).serialize(state, buffer);
+    }
+
+    /**
+     * Parse the rest of the message from the buffer.
+     *
+     * @param buffer The remaining buffer.
+     */
+    @Override
+    void deserializeBuffer(ByteBuf buffer, CorfuRuntime rt) {
+        super.deserializeBuffer(buffer, rt);
+        this.streamID = new UUID(buffer.readLong(), buffer.readLong());
+        this.checkpointAddress = buffer.readLong();
+        this.serializerType = Serializers.typeMap.get(buffer.readByte());
+        this.state = Serializers.getSerializer(serializerType).deserialize(buffer, rt);
+    }
+}
@@ -24,6 +24,14 @@ public class SMREntry extends LogEntry {
     @Getter
     private String SMRMethod;
 
+    /**
+     *  The ID of the SMR method, or null if the entry carries the name of the method.
+     *  If the entry carries an ID, the name is not serialized, and is null once the
+     *  entry has been read back.
+     */
+    @Getter
+    private Integer SMRMethodId;
+
     /**
      * The arguments to the SMR method, which could be 0.
      */
@@ -44,6 +52,13 @@ public class SMREntry extends LogEntry {
         this.serializerType = serializer;
     }
 
+    public SMREntry(String SMRMethod, Integer SMRMethodId, @NonNull Object[] SMRArguments,
+                    Serializers.SerializerType serializer)
+    {
+        this(SMRMethod, SMRArguments, serializer);
+        this.SMRMethodId = SMRMethodId;
+    }
+
     /**
      * This function provides the remaining buffer. Child entries
      * should initialize their contents based on the buffer.
@@ -54,9 +69,14 @@ public class SMREntry extends LogEntry {
     void deserializeBuffer(ByteBuf b, CorfuRuntime rt) {
         super.deserializeBuffer(b, rt);
         short methodLength = b.readShort();
-        byte[] methodBytes = new byte[methodLength];
-        b.readBytes(methodBytes, 0, methodLength);
-        SMRMethod = new String(methodBytes);
+        if (methodLength < 0) {
+            // A negative length means the entry carries a method ID instead of a name.
+            SMRMethodId = b.readInt();
+        } else {
+            byte[] methodBytes = new byte[methodLength];
+            b.readBytes(methodBytes, 0, methodLength);
+            SMRMethod = new String(methodBytes);
+        }
         serializerType = Serializers.typeMap.get(b.readByte());
         byte numArguments = b.readByte();
         Object[] arguments = new Object[numArguments];
@@ -73,8 +93,13 @@ public class SMREntry extends LogEntry {
     @Override
     public void serialize(ByteBuf b) {
         super.serialize(b);
-        b.writeShort(SMRMethod.length());
-        b.writeBytes(SMRMethod.getBytes());
+        if (SMRMethodId != null) {
+            b.writeShort(-1);
+            b.writeInt(SMRMethodId);
+        } else {
+            b.writeShort(SMRMethod.length());
+            b.writeBytes(SMRMethod.getBytes());
+        }
         b.writeByte(serializerType.asByte());
         b.writeByte(SMRArguments.length);
         Arrays.stream(SMRArguments)
@@ -4,11 +4,14 @@ import io.netty.buffer.ByteBuf;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.corfudb.protocols.wireprotocol.ILogUnitEntry;
 import org.corfudb.protocols.wireprotocol.IMetadata;
 import org.corfudb.protocols.wireprotocol.LogUnitReadResponseMsg;
+import org.corfudb.protocols.wireprotocol.TokenResponseMsg;
+import org.corfudb.protocols.wireprotocol.TxResolutionInfo;
 import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.util.serializer.ICorfuSerializable;
 import org.corfudb.util.serializer.Serializers;
@@ -33,12 +36,74 @@ public class TXEntry extends LogEntry {
         @Getter
         boolean read;
 
+        /** The conflict keys of the parts of the object which were read, or null if
+         * the whole object was read. */
+        @Getter
+        Set<Long> readConflictKeys;
+
+        /** The conflict keys of the parts of the object which were written, or null if
+         * the whole object was written. */
+        @Getter
+        Set<Long> writeConflictKeys;
+
         public TXObjectEntry(List<SMREntry> updates, boolean read)
         {
             this.updates = updates;
             this.read = read;
         }
 
+        public TXObjectEntry(List<SMREntry> updates, boolean read,
+                             Set<Long> readConflictKeys, Set<Long> writeConflictKeys)
+        {
+            this(updates, read);
+            this.readConflictKeys = readConflictKeys;
+            this.writeConflictKeys = writeConflictKeys;
+        }
+
+        /** Check whether a write by another transaction conflicts with the reads of this one.
+         *
+         * @param other     The entry of the other transaction for the same object.
+         * @return          True, if the other transaction wrote a part of the object
+         *                  this transaction read.
+         */
+        public boolean conflictsWith(TXObjectEntry other) {
+            if (readConflictKeys == null || other.writeConflictKeys == null) {
+                return true;
+            }
+            return !Collections.disjoint(readConflictKeys, other.writeConflictKeys);
+        }
+
+        void serializeConflictKeys(ByteBuf b) {
+            writeKeySet(b, readConflictKeys);
+            writeKeySet(b, writeConflictKeys);
+        }
+
+        void deserializeConflictKeys(ByteBuf b) {
+            readConflictKeys = readKeySet(b);
+            writeConflictKeys = readKeySet(b);
+        }
+
+        static void writeKeySet(ByteBuf b, Set<Long> keys) {
+            if (keys == null) {
+                b.writeInt(-1);
+                return;
+            }
+            b.writeInt(keys.size());
+            keys.forEach(b::writeLong);
+        }
+
+        static Set<Long> readKeySet(ByteBuf b) {
+            int numKeys = b.readInt();
+            if (numKeys < 0) {
+                return null;
+            }
+            Set<Long> keys = new HashSet<>();
+            for (int i = 0; i < numKeys; i++) {
+                keys.add(b.readLong());
+            }
+            return keys;
+        }
+
         public TXObjectEntry(ByteBuf b, CorfuRuntime rt)
         {
             read = b.readBoolean();
@@ -70,6 +135,11 @@ public class TXEntry extends LogEntry {
     @Getter
     long readTimestamp;
 
+    /** The decision the sequencer made on this transaction when it issued its token, if it made one. */
+    @Getter
+    @Setter
+    TokenResponseMsg.TxResolution resolution = TokenResponseMsg.TxResolution.UNRESOLVED;
+
     @Getter(lazy=true)
     private final transient boolean aborted = checkAbort();
 
@@ -82,6 +152,20 @@ public class TXEntry extends LogEntry {
     }
 
 
+    /** Check whether a mutation of a stream by another entry conflicts with the reads of this transaction.
+     * Only transactions record which parts of an object they write, so any other mutation conflicts.
+     *
+     * @param other     The entry which mutated the stream.
+     * @param stream    The stream which was mutated.
+     * @return          True, if the mutation conflicts with this transaction.
+     */
+    boolean conflictsWith(LogEntry other, UUID stream) {
+        if (!(other instanceof TXEntry) || !((TXEntry) other).getTxMap().containsKey(stream)) {
+            return true;
+        }
+        return txMap.get(stream).conflictsWith(((TXEntry) other).getTxMap().get(stream));
+    }
+
     public boolean checkIfStreamAborts(UUID stream) {
         if (getEntry() != null && getEntry().hasBackpointer(stream)) {
             ILogUnitEntry backpointedEntry = getEntry();
@@ -93,7 +177,8 @@ public class TXEntry extends LogEntry {
                             !backpointedEntry.isFirstEntry(stream))
             {
                 if (!backpointedEntry.getAddress().equals(getEntry().getAddress()) && //not self!
-                        backpointedEntry.isLogEntry() && backpointedEntry.getLogEntry().isMutation(stream)) {
+                        backpointedEntry.isLogEntry() && backpointedEntry.getLogEntry().isMutation(stream) &&
+                        conflictsWith(backpointedEntry.getLogEntry(), stream)) {
                     log.debug("TX aborted due to mutation [via backpointer]: " +
                                     "on stream {} at {}, tx is at {}, object read at {}, aborting entry was {}",
                             stream,
@@ -118,7 +203,8 @@ public class TXEntry extends LogEntry {
                     ((Set<UUID>) rr.getMetadataMap().get(IMetadata.LogUnitMetadataType.STREAM))
                             .contains(stream) && readTimestamp != i &&
                     rr.getPayload() instanceof LogEntry &&
-                    ((LogEntry)rr.getPayload()).isMutation(stream)) {
+                    ((LogEntry)rr.getPayload()).isMutation(stream) &&
+                    conflictsWith((LogEntry) rr.getPayload(), stream)) {
                 log.debug("TX aborted due to mutation on stream {} at {}, tx is at {}, object read at {}", stream,
                         i, entry.getAddress(), readTimestamp);
                 return true;
@@ -128,6 +214,9 @@ public class TXEntry extends LogEntry {
     }
 
     public boolean checkAbort() {
+        if (resolution != TokenResponseMsg.TxResolution.UNRESOLVED) {
+            return resolution == TokenResponseMsg.TxResolution.ABORTED;
+        }
         return txMap.entrySet().stream()
                 .filter(e -> e.getValue().isRead())
                 .anyMatch(e -> checkIfStreamAborts(e.getKey()));
@@ -145,6 +234,24 @@ public class TXEntry extends LogEntry {
                 .collect(Collectors.toSet());
     }
 
+    /** Get the reads and writes of this transaction, for the sequencer to decide whether it commits.
+     *
+     * @return  The reads and writes of this transaction.
+     */
+    public TxResolutionInfo getTxResolutionInfo() {
+        Map<UUID, Set<Long>> readSet = new HashMap<>();
+        Map<UUID, Set<Long>> writeSet = new HashMap<>();
+        txMap.forEach((id, toe) -> {
+            if (toe.isRead()) {
+                readSet.put(id, toe.getReadConflictKeys());
+            }
+            if (toe.getUpdates().size() != 0) {
+                writeSet.put(id, toe.getWriteConflictKeys());
+            }
+        });
+        return new TxResolutionInfo(readTimestamp, readSet, writeSet);
+    }
+
     /**
      * This function provides the remaining buffer. Child entries
      * should initialize their contents based on the buffer.
@@ -164,6 +271,17 @@ public class TXEntry extends LogEntry {
             TXObjectEntry toe = new TXObjectEntry(b, rt);
             txMap.put(id, toe);
         }
+        // Entries written before conflict keys were recorded end here, and conflict on the whole object.
+        if (b.isReadable()) {
+            short keyEntries = b.readShort();
+            for (short i = 0; i < keyEntries; i++) {
+                UUID id = new UUID(b.readLong(), b.readLong());
+                txMap.get(id).deserializeConflictKeys(b);
+            }
+        }
+        if (b.isReadable()) {
+            resolution = TokenResponseMsg.TxResolution.fromByte(b.readByte());
+        }
     }
 
     @Override
@@ -177,6 +295,15 @@ public class TXEntry extends LogEntry {
                     b.writeLong(x.getKey().getLeastSignificantBits());
                     x.getValue().serialize(b);
                 });
+        // The conflict keys follow the map, so that readers which don't know about them can skip them.
+        b.writeShort(txMap.size());
+        txMap.entrySet().stream()
+                .forEach(x -> {
+                    b.writeLong(x.getKey().getMostSignificantBits());
+                    b.writeLong(x.getKey().getLeastSignificantBits());
+                    x.getValue().serializeConflictKeys(b);
+                });
+        b.writeByte(resolution.ordinal());
     }
 
     /**
@@ -1,8 +1,8 @@
 package org.corfudb.protocols.logprotocol;
 
+import com.google.common.util.concurrent.Striped;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.buffer.ByteBuf;
-import javafx.scene.effect.Reflection;
 import lombok.Data;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -45,27 +45,77 @@ public class TXLambdaReferenceEntry extends LogEntry {
     Serializers.SerializerType serializerType;
 
 
-    public final static LambdaLock globalLock = new LambdaLock(new ReentrantLock());
-    public static LambdaLock getLockForTXAddress(long address) {
-        return globalLock;
+    /** Locks, striped by stream ID, which serialize lambda transactions on the same streams. */
+    static final Striped<Lock> lambdaLocks = Striped.lock(256);
+
+    /** The methods which have been resolved from their string form, by string form. */
+    static final Map<String, Method> methodCache = new ConcurrentHashMap<>();
+
+    /** Get the lock for the lambda transaction at the given address.
+     *
+     * Lambda transactions are serialized with other lambda transactions on any of the same
+     * streams, and run in parallel with lambda transactions on disjoint streams. A lambda
+     * transaction must therefore only access objects in the streams it was written to.
+     * The same transaction is always given the same lock, so it is never executed by two
+     * threads at once.
+     *
+     * @param address   The address of the transaction.
+     * @param streams   The streams the transaction was written to.
+     * @return          A lock for the transaction, which must be locked before it is executed.
+     */
+    public static LambdaLock getLockForTXAddress(long address, Set<UUID> streams) {
+        if (streams == null || streams.isEmpty()) {
+            return new LambdaLock(lambdaLocks.bulkGet(Collections.singleton(address)));
+        }
+        return new LambdaLock(lambdaLocks.bulkGet(streams));
     }
 
+    /** A set of locks which is unlocked when it is closed. */
     @Getter
     @Data
     public static class LambdaLock implements AutoCloseable {
 
-        final Lock lock;
+        /** The locks to take, in the order they must be taken. */
+        final Iterable<Lock> locks;
+
+        /** Take all the locks. */
+        public void lock() {
+            locks.forEach(Lock::lock);
+        }
 
         public void close() {
-            lock.unlock();
+            locks.forEach(Lock::unlock);
         }
     }
 
+    /** Resolve a method from its string form, caching the result.
+     *
+     * @param methodString  The string form of the method, as returned by Method.toString().
+     * @return              The method, which has been made accessible.
+     */
+    static Method getMethodFromToString(String methodString) {
+        return methodCache.computeIfAbsent(methodString, x -> {
+            Method m = ReflectionUtils.getMethodFromToString(x);
+            m.setAccessible(true);
+            return m;
+        });
+    }
+
+    /** Get the streams this transaction was written to.
+     *
+     * @return  The streams of the log entry this transaction was read from, or null if it
+     *          was not read from the log.
+     */
+    public Set<UUID> getAffectedStreams() {
+        return entry == null ? null : entry.getStreams();
+    }
 
     @SuppressWarnings("unchecked")
     public synchronized Object invoke() {
             try {
-                method.setAccessible(true);
+                if (!method.isAccessible()) {
+                    method.setAccessible(true);
+                }
                 Object ret = method.invoke(transactionalObject, lambdaArguments);
                 if (runtime.getObjectsView().getTxFuturesMap().containsKey(entry.getAddress())) {
                     runtime.getObjectsView().getTxFuturesMap().get(entry.getAddress()).complete(ret);
@@ -135,13 +185,13 @@ public class TXLambdaReferenceEntry extends LogEntry {
 
         // Now we have to find the Method....
         String methodName = new String(methodBytes);
+        method = getMethodFromToString(methodName);
         if (!b.readBoolean()) {
             UUID streamID = new UUID(b.readLong(), b. readLong());
-            Class<ICorfuObject> c = ReflectionUtils.getClassFromMethodToString(methodName);
+            Class<ICorfuObject> c = (Class<ICorfuObject>) method.getDeclaringClass();
             transactionalObject = rt.getObjectsView().open(streamID, c);
         }
 
-        method = ReflectionUtils.getMethodFromToString(methodName);
         serializerType = Serializers.typeMap.get(b.readByte());
         byte numArguments = b.readByte();
         Object[] arguments = new Object[numArguments];
@@ -22,6 +22,9 @@ public class CorfuMsg {
     /** Marker field value, should equal 0xC0FC0FC0 */
     final static int markerField = 0xC0FC0FC0;
 
+    /** Deadline field value of a message which does not expire. */
+    public final static long NO_DEADLINE = -1L;
+
     /** The unique id of the client making the request */
     UUID clientID;
 
@@ -31,6 +34,9 @@ public class CorfuMsg {
     /** The epoch of this request/response */
     long epoch;
 
+    /** The deadline of this request, in milliseconds since the epoch, or NO_DEADLINE. */
+    long deadline = NO_DEADLINE;
+
     /** The underlying ByteBuf, if present. */
     ByteBuf buf;
 
@@ -82,7 +88,8 @@ public class CorfuMsg {
         ERROR_TRIMMED(51, CorfuMsg.class, LogUnitServer.class),
         ERROR_OVERWRITE(52, CorfuMsg.class, LogUnitServer.class),
         ERROR_OOS(53, CorfuMsg.class, LogUnitServer.class),
-        ERROR_RANK(54, CorfuMsg.class, LogUnitServer.class)
+        ERROR_RANK(54, CorfuMsg.class, LogUnitServer.class),
+        ERROR_SYNC(55, CorfuMsg.class, LogUnitServer.class)
         ;
 
         public final int type;
@@ -101,7 +108,10 @@ public class CorfuMsg {
     CorfuMsgType msgType;
 
         /* The wire format of the NettyCorfuMessage message is below:
-        markerField(1) | client ID(8) | request ID(8) |  epoch(8)   |  type(1)  |
+        markerField(1) | client ID(8) | request ID(8) |  epoch(8)   | remaining(8) | type(1)  |
+
+        The deadline is sent as the milliseconds remaining before it, or -1 if there is none,
+        so that the clocks of the client and server do not need to agree.
 */
     /** Serialize the message into the given bytebuffer.
      * @param buffer    The buffer to serialize to.
@@ -117,6 +127,8 @@ public class CorfuMsg {
         }
         buffer.writeLong(requestID);
         buffer.writeLong(epoch);
+        buffer.writeLong(deadline == NO_DEADLINE ? NO_DEADLINE
+                : Math.max(0L, deadline - System.currentTimeMillis()));
         buffer.writeByte(msgType.asByte());
     }
 
@@ -134,6 +146,15 @@ public class CorfuMsg {
         this.clientID = msg.clientID;
         this.epoch = msg.epoch;
         this.requestID = msg.requestID;
+        this.deadline = msg.deadline;
+    }
+
+    /** Check whether the deadline of this message has passed.
+     *
+     * @return  True, if the message has a deadline and it has passed.
+     */
+    public boolean isExpired() {
+        return deadline != NO_DEADLINE && System.currentTimeMillis() > deadline;
     }
 
     /** Take the given bytebuffer and deserialize it into a message.
@@ -150,6 +171,7 @@ public class CorfuMsg {
         UUID clientID = new UUID(buffer.readLong(), buffer.readLong());
         long requestID = buffer.readLong();
         long epoch = buffer.readLong();
+        long remaining = buffer.readLong();
         CorfuMsgType message = typeMap.get(buffer.readByte());
         CorfuMsg msg;
         try {
@@ -162,6 +184,7 @@ public class CorfuMsg {
         msg.clientID = clientID;
         msg.requestID = requestID;
         msg.epoch = epoch;
+        msg.deadline = remaining == NO_DEADLINE ? NO_DEADLINE : System.currentTimeMillis() + remaining;
         msg.msgType = message;
         msg.fromBuffer(buffer);
         msg.buf = buffer;
@@ -20,10 +20,21 @@ public class LogUnitReadRangeResponseMsg extends CorfuMsg {
 
     Map<Long, LogUnitReadResponseMsg> responseMap;
 
+    /** The address to resume reading the requested range from,
+     * or -1L if the entire range was answered.
+     */
+    long resumeAddress;
+
     public LogUnitReadRangeResponseMsg(Map<Long, LogUnitReadResponseMsg> map)
+    {
+        this(map, -1L);
+    }
+
+    public LogUnitReadRangeResponseMsg(Map<Long, LogUnitReadResponseMsg> map, long resumeAddress)
     {
         this.msgType = CorfuMsgType.READ_RANGE_RESPONSE;
         this.responseMap = map;
+        this.resumeAddress = resumeAddress;
     }
 
     /**
@@ -34,6 +45,7 @@ public class LogUnitReadRangeResponseMsg extends CorfuMsg {
     @Override
     public void serialize(ByteBuf buffer) {
         super.serialize(buffer);
+        buffer.writeLong(resumeAddress);
         buffer.writeInt(responseMap.size());
         for (Map.Entry<Long,LogUnitReadResponseMsg> e : responseMap.entrySet())
         {
@@ -52,6 +64,7 @@ public class LogUnitReadRangeResponseMsg extends CorfuMsg {
     @SuppressWarnings("unchecked")
     public void fromBuffer(ByteBuf buffer) {
         super.fromBuffer(buffer);
+        resumeAddress = buffer.readLong();
         int size = buffer.readInt();
         responseMap = new HashMap<>();
         for (int i = 0; i < size; i++)
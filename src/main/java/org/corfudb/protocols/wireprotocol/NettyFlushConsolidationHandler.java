@@ -0,0 +1,106 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A handler which consolidates flushes, so that messages written during the same turn of the
+ * channel's event loop are sent with a single flush (and a single syscall).
+ *
+ * Messages are written without being flushed. Instead, the first flush request after a write
+ * schedules a flush to run once the event loop has processed the tasks which are already queued,
+ * which typically includes the writes of other messages. The pending writes are flushed
+ * immediately if more than maxMessages flushes were requested or more than maxBytes bytes
+ * were written since the last flush.
+ *
+ * This handler should be added to the pipeline before the encoder (closer to the head), without
+ * an executor, so that it sees encoded frames and runs on the channel's event loop.
+ */
+@Slf4j
+public class NettyFlushConsolidationHandler extends ChannelDuplexHandler {
+
+    /** The default number of messages to coalesce before flushing. */
+    public static final int DEFAULT_MAX_MESSAGES = 64;
+
+    /** The default number of bytes to coalesce before flushing. */
+    public static final long DEFAULT_MAX_BYTES = 65_536L;
+
+    /** The maximum number of flush requests to coalesce into a single flush. */
+    @Getter
+    final int maxMessages;
+
+    /** The maximum number of bytes to write before flushing. */
+    @Getter
+    final long maxBytes;
+
+    /** The number of flush requests since the last flush. */
+    int pendingFlushes;
+
+    /** The number of bytes written since the last flush. */
+    long pendingBytes;
+
+    /** Whether a flush has been scheduled on the event loop. */
+    boolean flushScheduled;
+
+    public NettyFlushConsolidationHandler() {
+        this(DEFAULT_MAX_MESSAGES, DEFAULT_MAX_BYTES);
+    }
+
+    public NettyFlushConsolidationHandler(int maxMessages, long maxBytes) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf) {
+            pendingBytes += ((ByteBuf) msg).readableBytes();
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        pendingFlushes++;
+        if (pendingFlushes >= maxMessages || pendingBytes >= maxBytes) {
+            flushNow(ctx);
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            ctx.executor().execute(() -> {
+                if (flushScheduled) {
+                    flushNow(ctx);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushNow(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushNow(ctx);
+        ctx.disconnect(promise);
+    }
+
+    /** Flush all pending writes and reset the counters.
+     *
+     * @param ctx   The channel handler context to flush.
+     */
+    void flushNow(ChannelHandlerContext ctx) {
+        if (pendingFlushes > 1) {
+            log.trace("Coalesced {} flushes ({} bytes) into a single flush.", pendingFlushes, pendingBytes);
+        }
+        pendingFlushes = 0;
+        pendingBytes = 0;
+        flushScheduled = false;
+        ctx.flush();
+    }
+}
@@ -25,8 +25,14 @@ public class TokenRequestMsg extends CorfuMsg {
     @Getter
     Set<TokenRequestFlags> tokenFlags;
 
+    /** The reads and writes of the transaction the token is for, if the sequencer
+     * should decide whether the transaction commits. */
+    @Getter
+    TxResolutionInfo txResolution;
+
     public enum TokenRequestFlags {
-        STREAM_HINT((short) 1)
+        STREAM_HINT((short) 1),
+        TX_RESOLUTION((short) 2)
         ;
 
         private final short flag;
@@ -57,6 +63,12 @@ public class TokenRequestMsg extends CorfuMsg {
         this.tokenFlags = tokenFlags;
     }
 
+    public TokenRequestMsg(Set<UUID> streamIDs, long numTokens, TxResolutionInfo txResolution)
+    {
+        this(streamIDs, numTokens, EnumSet.of(TokenRequestFlags.TX_RESOLUTION));
+        this.txResolution = txResolution;
+    }
+
     public static Set<TokenRequestFlags> flagsFromShort(short flagsShort)
     {
         Set<TokenRequestFlags> flagsSet = EnumSet.noneOf(TokenRequestFlags.class);
@@ -95,6 +107,9 @@ public class TokenRequestMsg extends CorfuMsg {
             buffer.writeLong(sid.getLeastSignificantBits());
         }
         buffer.writeLong(numTokens);
+        if (tokenFlags.contains(TokenRequestFlags.TX_RESOLUTION)) {
+            txResolution.serialize(buffer);
+        }
     }
 
     /**
@@ -114,5 +129,8 @@ public class TokenRequestMsg extends CorfuMsg {
             streamIDs.add(new UUID(buffer.readLong(), buffer.readLong()));
         }
         numTokens = buffer.readLong();
+        if (tokenFlags.contains(TokenRequestFlags.TX_RESOLUTION)) {
+            txResolution = new TxResolutionInfo(buffer);
+        }
     }
 }
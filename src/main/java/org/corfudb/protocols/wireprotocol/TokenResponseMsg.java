@@ -20,6 +20,32 @@ public class TokenResponseMsg extends CorfuMsg {
 
     /** A map of backpointers. */
     Map<UUID, Long> backpointerMap;
+
+    /** The decision the sequencer made on the transaction the token was requested for. */
+    TxResolution txResolution = TxResolution.UNRESOLVED;
+
+    /** The decision a sequencer made on a transaction. */
+    public enum TxResolution {
+        /** The sequencer was not asked to decide, so readers must check the transaction for conflicts. */
+        UNRESOLVED,
+        /** The transaction commits. */
+        COMMITTED,
+        /** The transaction conflicted with a write committed after it read the log, and aborts. */
+        ABORTED;
+
+        /** Get the resolution encoded by a byte.
+         *
+         * @param b     The encoded resolution.
+         * @return      The resolution.
+         * @throws IllegalArgumentException If the byte does not encode a resolution.
+         */
+        public static TxResolution fromByte(byte b) {
+            if (b < 0 || b >= values().length) {
+                throw new IllegalArgumentException("Invalid transaction resolution " + b);
+            }
+            return values()[b];
+        }
+    }
         /* The wire format of the NettyStreamingServerTokenResponse message is below:
             | client ID(16) | request ID(8) |  type(1)  |  token(8) |
             |  MSB  |  LSB  |               |           |           |
@@ -33,6 +59,13 @@ public class TokenResponseMsg extends CorfuMsg {
         this.backpointerMap = backpointerMap;
     }
 
+    public TokenResponseMsg(@NonNull Long token, @NonNull Map<UUID,Long> backpointerMap,
+                            @NonNull TxResolution txResolution)
+    {
+        this(token, backpointerMap);
+        this.txResolution = txResolution;
+    }
+
     /**
      * Serialize the message into the given bytebuffer.
      *
@@ -49,6 +82,7 @@ public class TokenResponseMsg extends CorfuMsg {
                    buffer.writeLong(e.getKey().getLeastSignificantBits());
                    buffer.writeLong(e.getValue());
                 });
+        buffer.writeByte(txResolution.ordinal());
     }
 
     /**
@@ -70,5 +104,6 @@ public class TokenResponseMsg extends CorfuMsg {
             mb.put(id, backPointer);
         }
         backpointerMap = mb.build();
+        txResolution = TxResolution.fromByte(buffer.readByte());
     }
 }
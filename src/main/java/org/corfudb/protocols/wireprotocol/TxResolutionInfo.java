@@ -0,0 +1,99 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Data;
+import lombok.NonNull;
+import org.corfudb.util.serializer.ICorfuSerializable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The reads and writes of a transaction, which a sequencer uses to decide
+ * whether the transaction commits when it issues the token for it.
+ *
+ * Both sets map a stream to the conflict keys of the parts of the object which
+ * were read or written, or to null if the whole object was read or written.
+ */
+@Data
+public class TxResolutionInfo implements ICorfuSerializable {
+
+    /** The address the transaction read the log at. */
+    final long readTimestamp;
+
+    /** The conflict keys read, by stream. Streams which were not read are absent. */
+    @NonNull
+    final Map<UUID, Set<Long>> readSet;
+
+    /** The conflict keys written, by stream. Streams which were not written are absent. */
+    @NonNull
+    final Map<UUID, Set<Long>> writeSet;
+
+    /** The token the transaction was last issued, if writing it failed and the transaction is being
+     * retried, or -1. The sequencer recorded the transaction's writes at that token, so they are not
+     * conflicts. */
+    final long failedToken;
+
+    public TxResolutionInfo(ByteBuf b) {
+        readTimestamp = b.readLong();
+        readSet = readConflictSet(b);
+        writeSet = readConflictSet(b);
+        failedToken = b.readLong();
+    }
+
+    public TxResolutionInfo(long readTimestamp, Map<UUID, Set<Long>> readSet,
+                            Map<UUID, Set<Long>> writeSet) {
+        this(readTimestamp, readSet, writeSet, -1L);
+    }
+
+    public TxResolutionInfo(long readTimestamp, Map<UUID, Set<Long>> readSet,
+                            Map<UUID, Set<Long>> writeSet, long failedToken) {
+        this.readTimestamp = readTimestamp;
+        this.readSet = readSet;
+        this.writeSet = writeSet;
+        this.failedToken = failedToken;
+    }
+
+    @Override
+    public void serialize(ByteBuf b) {
+        b.writeLong(readTimestamp);
+        writeConflictSet(b, readSet);
+        writeConflictSet(b, writeSet);
+        b.writeLong(failedToken);
+    }
+
+    static void writeConflictSet(ByteBuf b, Map<UUID, Set<Long>> conflictSet) {
+        b.writeShort(conflictSet.size());
+        conflictSet.forEach((id, keys) -> {
+            b.writeLong(id.getMostSignificantBits());
+            b.writeLong(id.getLeastSignificantBits());
+            if (keys == null) {
+                b.writeInt(-1);
+            } else {
+                b.writeInt(keys.size());
+                keys.forEach(b::writeLong);
+            }
+        });
+    }
+
+    static Map<UUID, Set<Long>> readConflictSet(ByteBuf b) {
+        short numStreams = b.readShort();
+        Map<UUID, Set<Long>> conflictSet = new HashMap<>();
+        for (short i = 0; i < numStreams; i++) {
+            UUID id = new UUID(b.readLong(), b.readLong());
+            int numKeys = b.readInt();
+            Set<Long> keys = null;
+            if (numKeys >= 0) {
+                keys = new HashSet<>();
+                for (int j = 0; j < numKeys; j++) {
+                    keys.add(b.readLong());
+                }
+            }
+            conflictSet.put(id, keys);
+        }
+        return conflictSet;
+    }
+}
@@ -3,9 +3,11 @@ package org.corfudb.runtime;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.corfudb.protocols.wireprotocol.NettyFlushConsolidationHandler;
 import org.corfudb.runtime.clients.*;
 import org.corfudb.runtime.view.*;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -44,13 +46,200 @@ public class CorfuRuntime {
     @Getter
     public int maxCacheSize = 100_000_000;
 
+    /** The maximum number of stream addresses to cache, over all streams. */
+    @Getter
+    public int maxStreamAddressCacheSize = 1_000_000;
+
+    /** How long to cache an empty read before reading the address again, or zero to never cache it. */
+    @Getter
+    public Duration emptyEntryCacheDuration = Duration.ofMillis(5000L);
+
     //endregion Address Space Options
 
+    //region Transport Options
+
+    /** The maximum number of messages to coalesce into a single flush of a channel. */
+    @Getter
+    public int flushBatchSize = NettyFlushConsolidationHandler.DEFAULT_MAX_MESSAGES;
+
+    /** The maximum number of bytes to coalesce into a single flush of a channel. */
+    @Getter
+    public long flushBatchBytes = NettyFlushConsolidationHandler.DEFAULT_MAX_BYTES;
+
+    /**
+     * Set the maximum number of messages to coalesce into a single flush of a channel.
+     * Only applies to routers created after this is set.
+     * @param flushBatchSize    The maximum number of messages per flush.
+     * @return                  A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setFlushBatchSize(int flushBatchSize)
+    {
+        this.flushBatchSize = flushBatchSize;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of bytes to coalesce into a single flush of a channel.
+     * Only applies to routers created after this is set.
+     * @param flushBatchBytes   The maximum number of bytes per flush.
+     * @return                  A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setFlushBatchBytes(long flushBatchBytes)
+    {
+        this.flushBatchBytes = flushBatchBytes;
+        return this;
+    }
+
+    /** The shortest time to wait for a response to a request. */
+    @Getter
+    public Duration minRequestTimeout = Duration.ofMillis(500);
+
+    /** The longest time to wait for a response to a request. */
+    @Getter
+    public Duration maxRequestTimeout = Duration.ofSeconds(5);
+
+    /** How long an operation of a view may retry before failing, or null to retry indefinitely. */
+    @Getter
+    public Duration operationTimeout = null;
+
+    /**
+     * Set the bounds of the time to wait for a response to a request. Within these bounds,
+     * the timeout of each type of request adapts to the latency observed for that type.
+     * Only applies to routers created after this is set.
+     * @param min   The shortest time to wait for a response.
+     * @param max   The longest time to wait for a response, which is also the timeout
+     *              of types of requests whose latency is not yet known.
+     * @return      A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setRequestTimeouts(Duration min, Duration max)
+    {
+        this.minRequestTimeout = min;
+        this.maxRequestTimeout = max;
+        return this;
+    }
+
+    /**
+     * Set how long an operation of a view may retry before failing. Requests sent by the
+     * operation are timed out no later than its deadline, and servers drop requests
+     * whose deadline has passed.
+     * @param timeout   The time an operation may take, or null to retry indefinitely.
+     * @return          A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setOperationTimeout(Duration timeout)
+    {
+        this.operationTimeout = timeout;
+        return this;
+    }
+
+    /** Whether routers share the event loops and executors of the whole JVM, instead of the runtime's. */
+    @Getter
+    public boolean jvmSharedTransport = false;
+
+    /** The event loops and executors of this runtime's routers, created when the first router connects. */
+    NettyClientResources clientResources;
+
+    /**
+     * Whether the routers of this runtime share their event loops and executors with every other
+     * runtime in the JVM which does so, instead of only with the other routers of this runtime.
+     * Only applies to routers created after this is set.
+     * @param shared    True, if the JVM-wide resources should be used, false otherwise.
+     * @return          A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setJvmSharedTransport(boolean shared)
+    {
+        this.jvmSharedTransport = shared;
+        return this;
+    }
+
+    /**
+     * Get the event loops and executors which service the channels of this runtime's routers.
+     * @return  The resources shared by the routers of this runtime.
+     */
+    public synchronized NettyClientResources getClientResources()
+    {
+        if (jvmSharedTransport) {
+            return NettyClientResources.getShared();
+        }
+        if (clientResources == null) {
+            clientResources = new NettyClientResources();
+        }
+        return clientResources;
+    }
+
+    //endregion Transport Options
+
 
     /** Whether or not to disable backpointers. */
     @Getter
     public boolean backpointersDisabled = false;
 
+    /** The number of addresses to prefetch when resolving backpointers, or 1 to read one hop at a time. */
+    @Getter
+    public int backpointerPrefetchSize = 32;
+
+    /** Whether or not SMR updates are written with method IDs instead of method names. */
+    @Getter
+    public boolean smrMethodIdsEnabled = false;
+
+    /** Whether or not the sequencer decides whether transactions commit. */
+    @Getter
+    public boolean sequencerTxResolution = false;
+
+    /** Whether or not chain replication writes are pipelined. */
+    @Getter
+    public boolean pipelinedChainWrites = false;
+
+    /**
+     * Whether or not to pipeline chain replication writes. In pipelined mode, the head of the chain
+     * is written first, and every other replica is written in parallel once the head has accepted
+     * the write.
+     * @param pipelined True, if chain replication writes should be pipelined, false otherwise.
+     * @return          A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setPipelinedChainWrites(boolean pipelined)
+    {
+        this.pipelinedChainWrites = pipelined;
+        return this;
+    }
+
+    /**
+     * Set the number of addresses to prefetch when resolving backpointers. Streams read the
+     * addresses below a backpointer in a single batch, so that following the next hops does
+     * not require a round trip each.
+     * @param size      The number of addresses to prefetch, or 1 to read one hop at a time.
+     * @return          A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setBackpointerPrefetchSize(int size)
+    {
+        this.backpointerPrefetchSize = size;
+        return this;
+    }
+
+    /**
+     * Whether or not to write SMR updates with compact method IDs instead of method names.
+     * Clients which do not understand method IDs cannot read updates written this way.
+     * @param enable    True, if method IDs should be written, false otherwise.
+     * @return          A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setSmrMethodIdsEnabled(boolean enable)
+    {
+        this.smrMethodIdsEnabled = enable;
+        return this;
+    }
+
+    /**
+     * Whether or not to have the sequencer decide whether transactions commit when it issues
+     * their tokens. The decision is recorded in the transaction entry, so readers of the entry
+     * do not have to check it for conflicts.
+     * @param enable    True, if the sequencer should resolve transactions, false otherwise.
+     * @return          A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setSequencerTxResolution(boolean enable)
+    {
+        this.sequencerTxResolution = enable;
+        return this;
+    }
+
     /**
      * Whether or not to disable backpointers
      * @param disable   True, if the cache should be disabled, false otherwise.
@@ -73,6 +262,32 @@ public class CorfuRuntime {
         return this;
     }
 
+    /**
+     * Set the maximum number of stream addresses to cache. Streams are evicted from the cache
+     * when the addresses of all cached streams exceed this size, and are read again when needed.
+     * Takes effect when the address space caches are next reset.
+     * @param size      The maximum number of addresses to cache.
+     * @return          A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setMaxStreamAddressCacheSize(int size)
+    {
+        this.maxStreamAddressCacheSize = size;
+        return this;
+    }
+
+    /**
+     * Set how long an empty read is cached. An empty address may be a write which is still in
+     * progress, so empty reads are cached apart from data, and read again once they expire.
+     * Takes effect when the address space caches are next reset.
+     * @param duration  How long to cache an empty read, or zero to always read the address again.
+     * @return          A CorfuRuntime to support chaining.
+     */
+    public CorfuRuntime setEmptyEntryCacheDuration(Duration duration)
+    {
+        this.emptyEntryCacheDuration = duration;
+        return this;
+    }
+
     /** Get a UUID for a named stream.
      *
      * @param string    The name of the stream.
@@ -100,8 +315,12 @@ public class CorfuRuntime {
         String host = address.split(":")[0];
         Integer port = Integer.parseInt(address.split(":")[1]);
         // Generate a new router, start it and add it to the table.
-        NettyClientRouter router = new NettyClientRouter(host, port);
+        NettyClientRouter router = new NettyClientRouter(host, port, getClientResources());
         log.debug("Connecting to new router {}:{}", host, port);
+        router.setFlushBatchSize(flushBatchSize);
+        router.setFlushBatchBytes(flushBatchBytes);
+        router.getTimeouts().setMinTimeout(minRequestTimeout);
+        router.getTimeouts().setMaxTimeout(maxRequestTimeout);
         router.addClient(new LayoutClient())
                 .addClient(new SequencerClient())
                 .addClient(new LogUnitClient())
@@ -136,6 +355,21 @@ public class CorfuRuntime {
         retryRate = 5;
     }
 
+    /** Shut down this runtime. Stops the routers of the runtime and the threads which serviced
+     * them, unless they are shared across the JVM. The runtime connects new routers if it is used again.
+     */
+    public void shutdown()
+    {
+        nodeRouters.values().forEach(IClientRouter::stop);
+        nodeRouters.clear();
+        synchronized (this) {
+            if (clientResources != null) {
+                clientResources.shutdown();
+                clientResources = null;
+            }
+        }
+    }
+
     /** Parse a configuration string and get a CorfuRuntime.
      *
      * @param configurationString   The configuration string to parse.
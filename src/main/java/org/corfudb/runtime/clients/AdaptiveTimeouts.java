@@ -0,0 +1,118 @@
+package org.corfudb.runtime.clients;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.corfudb.protocols.wireprotocol.CorfuMsg.CorfuMsgType;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Request timeouts derived from the latency observed for each type of request.
+ *
+ * The latency of the most recent requests of each type is kept in a small window. Once enough
+ * requests of a type have completed, its timeout is a multiple of the 99th percentile latency
+ * of the window, bounded by the minimum and maximum timeout. Types which have not yet
+ * completed enough requests wait for the maximum timeout.
+ *
+ * A request which times out is recorded as a sample at its timeout, and doubles the timeout of
+ * its type, so that requests which become slower than the window predicts are eventually given
+ * enough time to complete instead of timing out on every retry.
+ */
+public class AdaptiveTimeouts {
+
+    /** The number of latency samples kept for each type of request. */
+    static final int WINDOW_SIZE = 128;
+
+    /** The number of samples recorded between recomputing the percentile of a window. */
+    static final int RECOMPUTE_INTERVAL = 32;
+
+    /** The percentile of the latency window the timeout is derived from. */
+    static final double PERCENTILE = 0.99;
+
+    /** The multiple of the percentile latency to wait before timing out a request. */
+    static final int LATENCY_MULTIPLIER = 4;
+
+    /** The shortest timeout to give a request. */
+    @Getter
+    @Setter
+    Duration minTimeout = Duration.ofMillis(500);
+
+    /** The longest timeout to give a request, and the timeout of types without enough samples. */
+    @Getter
+    @Setter
+    Duration maxTimeout = Duration.ofSeconds(5);
+
+    /** The latency windows, indexed by the ordinal of the type of request. */
+    final LatencyWindow[] windows;
+
+    public AdaptiveTimeouts() {
+        windows = new LatencyWindow[CorfuMsgType.values().length];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new LatencyWindow();
+        }
+    }
+
+    /** Record the latency of a completed request.
+     *
+     * @param type          The type of the request.
+     * @param latencyNanos  The time between sending the request and receiving its response.
+     */
+    public void recordLatency(CorfuMsgType type, long latencyNanos) {
+        windows[type.ordinal()].record(latencyNanos);
+    }
+
+    /** Record a request which timed out, backing off the timeout of its type.
+     *
+     * @param type          The type of the request.
+     * @param timeoutNanos  The timeout the request was given.
+     */
+    public void recordTimeout(CorfuMsgType type, long timeoutNanos) {
+        windows[type.ordinal()].recordTimeout(timeoutNanos);
+    }
+
+    /** Get the timeout to give a request.
+     *
+     * @param type  The type of the request.
+     * @return      The time to wait for a response to the request.
+     */
+    public Duration getTimeout(CorfuMsgType type) {
+        long percentile = windows[type.ordinal()].percentileNanos;
+        if (percentile < 0) {
+            return maxTimeout;
+        }
+        long timeout = Math.max(percentile * LATENCY_MULTIPLIER, minTimeout.toNanos());
+        return Duration.ofNanos(Math.min(timeout, maxTimeout.toNanos()));
+    }
+
+    /** The latency of the most recent requests of a type. */
+    static class LatencyWindow {
+
+        final long[] samples = new long[WINDOW_SIZE];
+
+        /** The number of samples recorded. */
+        long count = 0;
+
+        /** The percentile latency of the window, or -1 if not enough samples were recorded. */
+        volatile long percentileNanos = -1;
+
+        synchronized void record(long latencyNanos) {
+            samples[(int) (count % WINDOW_SIZE)] = latencyNanos;
+            count++;
+            if (count % RECOMPUTE_INTERVAL == 0) {
+                int size = (int) Math.min(count, WINDOW_SIZE);
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                percentileNanos = sorted[(int) Math.ceil(PERCENTILE * size) - 1];
+            }
+        }
+
+        synchronized void recordTimeout(long timeoutNanos) {
+            record(timeoutNanos);
+            // Until a recompute sees the timed out samples, double the timeout the request was given.
+            if (percentileNanos >= 0) {
+                percentileNanos = Math.max(percentileNanos, timeoutNanos * 2 / LATENCY_MULTIPLIER);
+            }
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package org.corfudb.runtime.clients;
 
+import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.Data;
@@ -11,6 +14,7 @@ import org.corfudb.protocols.wireprotocol.*;
 import org.corfudb.protocols.wireprotocol.LogUnitReadResponseMsg.ReadResult;
 import org.corfudb.runtime.exceptions.OutOfSpaceException;
 import org.corfudb.runtime.exceptions.OverwriteException;
+import org.corfudb.runtime.exceptions.WriteNotPersistedException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -28,6 +32,16 @@ public class LogUnitClient implements IClient {
     @Setter
     IClientRouter router;
 
+    /** The maximum number of addresses to request in each chunk of a ranged read. */
+    @Getter
+    @Setter
+    int rangeReadChunkSize = 256;
+
+    /** The maximum number of chunks of a ranged read which may be outstanding at once. */
+    @Getter
+    @Setter
+    int rangeReadWindow = 4;
+
     /**
      * Handle a incoming message on the channel
      *
@@ -53,17 +67,16 @@ public class LogUnitClient implements IClient {
             case ERROR_RANK:
                 router.completeExceptionally(msg.getRequestID(), new Exception("Rank"));
                 break;
+            case ERROR_SYNC:
+                router.completeExceptionally(msg.getRequestID(), new WriteNotPersistedException());
+                break;
             case READ_RESPONSE:
                 router.completeRequest(msg.getRequestID(), new ReadResult((LogUnitReadResponseMsg)msg));
                 break;
-            case READ_RANGE_RESPONSE: {
-                LogUnitReadRangeResponseMsg rmsg = (LogUnitReadRangeResponseMsg) msg;
-                Map<Long, ReadResult> lr = new ConcurrentHashMap<>();
-                rmsg.getResponseMap().entrySet().parallelStream()
-                    .forEach(e -> lr.put(e.getKey(), new ReadResult(e.getValue())));
-                router.completeRequest(msg.getRequestID(), lr);
-            }
-            break;
+            case READ_RANGE_RESPONSE:
+                // Chunks are assembled into a single result by the RangeRead which requested them.
+                router.completeRequest(msg.getRequestID(), msg);
+                break;
             case CONTIGUOUS_TAIL: {
                 LogUnitTailMsg m = (LogUnitTailMsg) msg;
                 router.completeRequest(msg.getRequestID(), new ContiguousTailData(m.getContiguousTail(),
@@ -96,6 +109,7 @@ public class LogUnitClient implements IClient {
                     .add(CorfuMsg.CorfuMsgType.ERROR_OVERWRITE)
                     .add(CorfuMsg.CorfuMsgType.ERROR_OOS)
                     .add(CorfuMsg.CorfuMsgType.ERROR_RANK)
+                    .add(CorfuMsg.CorfuMsgType.ERROR_SYNC)
                     .build();
 
     /**
@@ -190,10 +204,106 @@ public class LogUnitClient implements IClient {
     /**
      * Read a range of addresses.
      *
+     * The range is requested in chunks of at most rangeReadChunkSize addresses, with at most
+     * rangeReadWindow chunks outstanding at a time, so that neither the log unit nor the
+     * transport has to hold the entire range in a single message.
+     *
      * @param addresses The addresses to read.
      */
     public CompletableFuture<Map<Long,ReadResult>> readRange(RangeSet<Long> addresses) {
-        return router.sendMessageAndGetCompletable(new CorfuRangeMsg(CorfuMsg.CorfuMsgType.READ_RANGE, addresses));
+        RangeRead read = new RangeRead(addresses);
+        read.issue();
+        return read.result;
+    }
+
+    /** The state of a ranged read which is requested in chunks. */
+    class RangeRead {
+
+        /** The addresses which have not been requested yet. */
+        final RangeSet<Long> remaining;
+
+        /** The results received so far. */
+        final Map<Long, ReadResult> results = new ConcurrentHashMap<>();
+
+        /** A future which completes once every chunk has been received. */
+        final CompletableFuture<Map<Long, ReadResult>> result = new CompletableFuture<>();
+
+        /** The number of chunks which have been requested but not received. */
+        int outstanding;
+
+        /** Whether issue() is running on the current call stack. */
+        boolean issuing;
+
+        RangeRead(RangeSet<Long> addresses) {
+            // Addresses are never negative, so clamp ranges without a lower bound to 0, as the log unit does.
+            this.remaining = TreeRangeSet.create(addresses.subRangeSet(Range.atLeast(0L)));
+        }
+
+        /** Request chunks until the window is full or there is nothing left to request. */
+        synchronized void issue() {
+            // Chunks may complete on the calling thread, in which case the loop below issues the next ones.
+            if (issuing) {
+                return;
+            }
+            issuing = true;
+            try {
+                while (!result.isDone() && outstanding < rangeReadWindow && !remaining.isEmpty()) {
+                    RangeSet<Long> chunk = takeChunk();
+                    outstanding++;
+                    router.<LogUnitReadRangeResponseMsg>sendMessageAndGetCompletable(
+                            new CorfuRangeMsg(CorfuMsg.CorfuMsgType.READ_RANGE, chunk))
+                            .whenComplete((r, ex) -> chunkComplete(chunk, r, ex));
+                }
+            } finally {
+                issuing = false;
+            }
+            if (outstanding == 0 && remaining.isEmpty()) {
+                result.complete(results);
+            }
+        }
+
+        /** Remove at most rangeReadChunkSize of the lowest remaining addresses.
+         *
+         * @return  The addresses to request in the next chunk.
+         */
+        RangeSet<Long> takeChunk() {
+            RangeSet<Long> chunk = TreeRangeSet.create();
+            long size = 0;
+            for (Range<Long> range : remaining.asRanges()) {
+                // The canonical form of a range of longs is [lower, upper).
+                Range<Long> canonical = range.canonical(DiscreteDomain.longs());
+                long lower = canonical.lowerEndpoint();
+                long upper = canonical.hasUpperBound() ? canonical.upperEndpoint() : Long.MAX_VALUE;
+                long take = Math.min(upper - lower, rangeReadChunkSize - size);
+                chunk.add(Range.closedOpen(lower, lower + take));
+                size += take;
+                if (size == rangeReadChunkSize) {
+                    break;
+                }
+            }
+            remaining.removeAll(chunk);
+            return chunk;
+        }
+
+        /** Record the results of a chunk and request more chunks.
+         *
+         * @param chunk     The addresses which were requested.
+         * @param response  The response to the chunk, if successful.
+         * @param ex        The exception which occurred, if not successful.
+         */
+        synchronized void chunkComplete(RangeSet<Long> chunk, LogUnitReadRangeResponseMsg response, Throwable ex) {
+            outstanding--;
+            if (ex != null) {
+                result.completeExceptionally(ex);
+                return;
+            }
+            response.getResponseMap().forEach((address, msg) -> results.put(address, new ReadResult(msg)));
+            if (response.getResumeAddress() != -1L) {
+                // The log unit answered only part of the chunk, so request the rest again.
+                remaining.addAll(chunk.subRangeSet(Range.atLeast(response.getResumeAddress())));
+            }
+            issue();
+        }
     }
 
     /**
@@ -202,7 +312,13 @@ public class LogUnitClient implements IClient {
      * @param streamID The stream to read.
      */
     public CompletableFuture<Map<Long,ReadResult>> readStream(UUID streamID) {
-        return router.sendMessageAndGetCompletable(new CorfuUUIDMsg(CorfuMsg.CorfuMsgType.STREAM_READ, streamID));
+        return router.<LogUnitReadRangeResponseMsg>sendMessageAndGetCompletable(
+                new CorfuUUIDMsg(CorfuMsg.CorfuMsgType.STREAM_READ, streamID))
+                .thenApply(response -> {
+                    Map<Long, ReadResult> results = new HashMap<>();
+                    response.getResponseMap().forEach((address, msg) -> results.put(address, new ReadResult(msg)));
+                    return results;
+                });
     }
 
 
@@ -0,0 +1,91 @@
+package org.corfudb.runtime.clients;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads which service the channels of client routers.
+ *
+ * Routers which are given a set of resources share its event loops and executors, instead of
+ * creating their own, so that the number of threads a client uses does not grow with the number
+ * of nodes it talks to. The resources are shut down by their owner, once no router uses them.
+ */
+@Slf4j
+public class NettyClientResources {
+
+    /** The default number of threads in each group. */
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+
+    /** The resources shared by every runtime in this JVM which is configured to share them. */
+    static volatile NettyClientResources shared;
+
+    /** The event loops which perform I/O on the channels. */
+    @Getter
+    final EventLoopGroup workerGroup;
+
+    /** The executors which decode, encode and handle messages. */
+    @Getter
+    final EventExecutorGroup executorGroup;
+
+    /** Create a new set of resources.
+     *
+     * @param workerThreads     The number of event loop threads.
+     * @param executorThreads   The number of executor threads.
+     */
+    public NettyClientResources(int workerThreads, int executorThreads) {
+        workerGroup = new NioEventLoopGroup(workerThreads, threadFactory("worker-"));
+        executorGroup = new DefaultEventExecutorGroup(executorThreads,
+                threadFactory(NettyClientRouter.class.getName() + "event-"));
+    }
+
+    public NettyClientResources() {
+        this(DEFAULT_THREADS, DEFAULT_THREADS);
+    }
+
+    /** Get the resources shared across this JVM, creating them if needed.
+     * The shared resources use daemon threads and are never shut down.
+     *
+     * @return  The JVM-wide resources.
+     */
+    public static NettyClientResources getShared() {
+        if (shared == null) {
+            synchronized (NettyClientResources.class) {
+                if (shared == null) {
+                    shared = new NettyClientResources();
+                }
+            }
+        }
+        return shared;
+    }
+
+    /** Shut down the threads of these resources. Routers using them can no longer send requests. */
+    public void shutdown() {
+        if (this == shared) {
+            log.warn("Ignoring shutdown of the JVM-wide client resources");
+            return;
+        }
+        workerGroup.shutdownGracefully();
+        executorGroup.shutdownGracefully();
+    }
+
+    static ThreadFactory threadFactory(String prefix) {
+        return new ThreadFactory() {
+            final AtomicInteger threadNum = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setName(prefix + threadNum.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+}
@@ -2,12 +2,10 @@ package org.corfudb.runtime.clients;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
-import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import io.netty.util.concurrent.EventExecutorGroup;
 import lombok.Getter;
 import lombok.Setter;
@@ -16,6 +14,7 @@ import org.corfudb.runtime.exceptions.NetworkException;
 import org.corfudb.runtime.exceptions.WrongEpochException;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageDecoder;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageEncoder;
+import org.corfudb.protocols.wireprotocol.NettyFlushConsolidationHandler;
 import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.util.CFUtils;
 
@@ -24,8 +23,7 @@ import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
 /** A client router which multiplexes operations over the Netty transport.
@@ -77,16 +75,50 @@ implements IClientRouter {
     /** The currently registered channel. */
     public Channel channel;
 
-    /** The worker group for this router. */
-    public EventLoopGroup workerGroup;
+    /** The threads which service the channel of this router. */
+    @Getter
+    public NettyClientResources resources;
+
+    /** Whether this router created its resources, and shuts them down when it stops. */
+    final boolean ownsResources;
+
+    /** The maximum number of messages to coalesce into a single flush. */
+    @Getter
+    @Setter
+    public int flushBatchSize = NettyFlushConsolidationHandler.DEFAULT_MAX_MESSAGES;
+
+    /** The maximum number of bytes to coalesce into a single flush. */
+    @Getter
+    @Setter
+    public long flushBatchBytes = NettyFlushConsolidationHandler.DEFAULT_MAX_BYTES;
 
-    /** The event executor group for this router. */
-    public EventExecutorGroup ee;
+    /** The timeouts given to requests, adapted to the latency of each type of request. */
+    @Getter
+    public final AdaptiveTimeouts timeouts = new AdaptiveTimeouts();
 
+    /** Create a router with its own event loops and executors, which are shut down when it stops.
+     *
+     * @param host  The host to route requests to.
+     * @param port  The port to route requests to.
+     */
     public NettyClientRouter(String host, Integer port)
+    {
+        this(host, port, null);
+    }
+
+    /** Create a router which services its channel with the given resources.
+     *
+     * @param host          The host to route requests to.
+     * @param port          The port to route requests to.
+     * @param resources     The resources to share with other routers, or null for the router
+     *                      to create its own.
+     */
+    public NettyClientRouter(String host, Integer port, NettyClientResources resources)
     {
         this.host = host;
         this.port = port;
+        this.ownsResources = resources == null;
+        this.resources = resources;
 
         clientID = UUID.randomUUID();
         handlerMap = new ConcurrentHashMap<>();
@@ -136,34 +168,13 @@ implements IClientRouter {
 
     public void start()
     {
-        workerGroup = new NioEventLoopGroup(Runtime.getRuntime().availableProcessors() * 2, new ThreadFactory() {
-            final AtomicInteger threadNum = new AtomicInteger(0);
-
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread(r);
-                t.setName("worker-" + threadNum.getAndIncrement());
-                t.setDaemon(true);
-                return t;
-            }
-        });
-
-        ee = new DefaultEventExecutorGroup(Runtime.getRuntime().availableProcessors() * 2, new ThreadFactory() {
-
-            final AtomicInteger threadNum = new AtomicInteger(0);
-
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread(r);
-                t.setName(this.getClass().getName() + "event-" + threadNum.getAndIncrement());
-                t.setDaemon(true);
-                return t;
-            }
-        });
-
+        if (ownsResources && resources == null) {
+            resources = new NettyClientResources();
+        }
+        final EventExecutorGroup ee = resources.getExecutorGroup();
 
         Bootstrap b = new Bootstrap();
-        b.group(workerGroup);
+        b.group(resources.getWorkerGroup());
         b.channel(NioSocketChannel.class);
         b.option(ChannelOption.SO_KEEPALIVE, true);
         b.option(ChannelOption.TCP_NODELAY, true);
@@ -173,6 +184,7 @@ implements IClientRouter {
             public void initChannel(SocketChannel ch) throws Exception {
                 ch.pipeline().addLast(new LengthFieldPrepender(4));
                 ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
+                ch.pipeline().addLast(new NettyFlushConsolidationHandler(flushBatchSize, flushBatchBytes));
                 ch.pipeline().addLast(ee, new NettyCorfuMessageDecoder());
                 ch.pipeline().addLast(ee, new NettyCorfuMessageEncoder());
                 ch.pipeline().addLast(ee, router);
@@ -198,7 +210,13 @@ implements IClientRouter {
      */
     @Override
     public void stop() {
-        channel.disconnect();
+        if (channel != null) {
+            channel.disconnect();
+        }
+        if (ownsResources && resources != null) {
+            resources.shutdown();
+            resources = null;
+        }
     }
 
     /** Send a message and get a completable future to be fulfilled by the reply.
@@ -207,20 +225,35 @@ implements IClientRouter {
      * @param message       The message to send.
      * @param <T>           The type of completable to return.
      * @return              A completable future which will be fulfilled by the reply,
-     *                      or a timeout in the case there is no response.
+     *                      or a timeout in the case there is no response. The timeout
+     *                      adapts to the latency of the type of message, and is no later
+     *                      than the deadline of the operation of the calling thread.
      */
     public <T> CompletableFuture<T> sendMessageAndGetCompletable(ChannelHandlerContext ctx, CorfuMsg message)
     {
+        final long timeout = OperationDeadline.remaining(timeouts.getTimeout(message.getMsgType()).toMillis());
+        if (timeout <= 0) {
+            // The operation has run out of time, don't bother sending the request.
+            final CompletableFuture<T> expired = new CompletableFuture<>();
+            expired.completeExceptionally(new TimeoutException("Deadline passed before sending " + message.getMsgType()));
+            return expired;
+        }
         // Get the next request ID.
         final long thisRequest = requestID.getAndIncrement();
         // Set the message fields.
         message.setClientID(clientID);
         message.setRequestID(thisRequest);
         message.setEpoch(epoch);
+        message.setDeadline(System.currentTimeMillis() + timeout);
         // Generate a future and put it in the completion table.
         final CompletableFuture<T> cf = new CompletableFuture<>();
         outstandingRequests.put(thisRequest, cf);
-        // Write the message out to the channel.
+        // Record the latency of successful requests to adapt the timeout.
+        final CorfuMsg.CorfuMsgType type = message.getMsgType();
+        final long start = System.nanoTime();
+        cf.thenRun(() -> timeouts.recordLatency(type, System.nanoTime() - start));
+        // Write the message out to the channel. The flush is coalesced with other
+        // messages written in the same event loop turn.
         if (ctx == null) {
             channel.writeAndFlush(message);
         }
@@ -229,9 +262,13 @@ implements IClientRouter {
         }
         log.trace("Sent message: {}", message);
         // Generate a timeout future, which will complete exceptionally if the main future is not completed.
-        final CompletableFuture<T> cfTimeout = CFUtils.within(cf, Duration.ofSeconds(5));
+        final CompletableFuture<T> cfTimeout = CFUtils.within(cf, Duration.ofMillis(timeout));
         cfTimeout.exceptionally(e -> {
             outstandingRequests.remove(thisRequest);
+            if (e instanceof TimeoutException || e.getCause() instanceof TimeoutException) {
+                // Back off, so a type whose latency has grown is not timed out on every retry.
+                timeouts.recordTimeout(type, Duration.ofMillis(timeout).toNanos());
+            }
             log.debug("Remove request {} due to timeout!", thisRequest);
             return null;
         });
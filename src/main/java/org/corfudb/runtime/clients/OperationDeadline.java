@@ -0,0 +1,45 @@
+package org.corfudb.runtime.clients;
+
+import org.corfudb.protocols.wireprotocol.CorfuMsg;
+
+/**
+ * The deadline of the operation the calling thread is performing.
+ *
+ * A view sets the deadline when it starts an operation, and the requests the thread sends while
+ * performing the operation are timed out no later than the deadline. The deadline is carried in
+ * the header of each request, so that servers can drop requests the client has given up on.
+ */
+public class OperationDeadline {
+
+    static final ThreadLocal<Long> deadline = ThreadLocal.withInitial(() -> CorfuMsg.NO_DEADLINE);
+
+    /** Get the deadline of the current operation.
+     *
+     * @return  The deadline, in milliseconds since the epoch, or NO_DEADLINE if there is none.
+     */
+    public static long get() {
+        return deadline.get();
+    }
+
+    /** Set the deadline of the current operation.
+     *
+     * @param deadlineMillis    The deadline, in milliseconds since the epoch, or NO_DEADLINE.
+     */
+    public static void set(long deadlineMillis) {
+        deadline.set(deadlineMillis);
+    }
+
+    /** Get the time remaining before the deadline of the current operation.
+     *
+     * @param timeoutMillis     The time to wait if the operation has no deadline.
+     * @return                  The smaller of the given time and the time remaining before the
+     *                          deadline, which is zero or less if the deadline has passed.
+     */
+    public static long remaining(long timeoutMillis) {
+        long d = deadline.get();
+        if (d == CorfuMsg.NO_DEADLINE) {
+            return timeoutMillis;
+        }
+        return Math.min(timeoutMillis, d - System.currentTimeMillis());
+    }
+}
@@ -8,6 +8,7 @@ import lombok.Setter;
 import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.protocols.wireprotocol.TokenRequestMsg;
 import org.corfudb.protocols.wireprotocol.TokenResponseMsg;
+import org.corfudb.protocols.wireprotocol.TxResolutionInfo;
 
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +30,8 @@ public class SequencerClient implements IClient {
     public class TokenResponse {
         public final Long token;
         public final Map<UUID, Long> backpointerMap;
+        /** The decision the sequencer made on the transaction the token was requested for. */
+        public TokenResponseMsg.TxResolution txResolution = TokenResponseMsg.TxResolution.UNRESOLVED;
     }
 
     /**
@@ -43,8 +46,9 @@ public class SequencerClient implements IClient {
         {
             case TOKEN_RES:
                 TokenResponseMsg tmsg = ((TokenResponseMsg)msg);
-                router.completeRequest(msg.getRequestID(),
-                        new TokenResponse(tmsg.getToken(), tmsg.getBackpointerMap()));
+                TokenResponse response = new TokenResponse(tmsg.getToken(), tmsg.getBackpointerMap());
+                response.setTxResolution(tmsg.getTxResolution());
+                router.completeRequest(msg.getRequestID(), response);
                 break;
         }
     }
@@ -64,4 +68,18 @@ public class SequencerClient implements IClient {
                 new TokenRequestMsg(streamIDs, numTokens));
     }
 
+    /** Request tokens for a transaction, and have the sequencer decide whether it commits.
+     *
+     * @param streamIDs         The streams the transaction writes to.
+     * @param numTokens         The number of tokens to request.
+     * @param txResolution      The reads and writes of the transaction.
+     * @return                  A future which completes with the token and the decision.
+     */
+    public CompletableFuture<TokenResponse> nextToken(Set<UUID> streamIDs, long numTokens,
+                                                      TxResolutionInfo txResolution)
+    {
+        return router.sendMessageAndGetCompletable(
+                new TokenRequestMsg(streamIDs, numTokens, txResolution));
+    }
+
 }
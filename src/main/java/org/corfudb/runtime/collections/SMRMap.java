@@ -58,7 +58,7 @@ public class SMRMap<K,V> implements Map<K,V>, ICorfuSMRObject<HashMap<K,V>> {
      *                              (<a href="{@docRoot}/java/util/Collection.html#optional-restrictions">optional</a>)
      */
     @Override
-    @Accessor
+    @Accessor(conflictParameter = 0)
     public boolean containsKey(Object key) {
         return getSMRObject().containsKey(key);
     }
@@ -113,7 +113,7 @@ public class SMRMap<K,V> implements Map<K,V>, ICorfuSMRObject<HashMap<K,V>> {
      *                              (<a href="{@docRoot}/java/util/Collection.html#optional-restrictions">optional</a>)
      */
     @Override
-    @Accessor
+    @Accessor(conflictParameter = 0)
     public V get(Object key) {
         return getSMRObject().get(key);
     }
@@ -143,7 +143,7 @@ public class SMRMap<K,V> implements Map<K,V>, ICorfuSMRObject<HashMap<K,V>> {
      *                                       or value prevents it from being stored in this map
      */
     @Override
-    @MutatorAccessor(name="put")
+    @MutatorAccessor(name="put", conflictParameter = 0)
     public V put(K key, V value) {
         return getSMRObject().put(key, value);
     }
@@ -179,7 +179,7 @@ public class SMRMap<K,V> implements Map<K,V>, ICorfuSMRObject<HashMap<K,V>> {
      *                                       (<a href="{@docRoot}/java/util/Collection.html#optional-restrictions">optional</a>)
      */
     @Override
-    @MutatorAccessor(name="remove")
+    @MutatorAccessor(name="remove", conflictParameter = 0)
     public V remove(Object key) {
         return getSMRObject().remove(key);
     }
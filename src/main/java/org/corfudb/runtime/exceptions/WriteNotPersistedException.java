@@ -0,0 +1,9 @@
+package org.corfudb.runtime.exceptions;
+
+/**
+ * Thrown when a log unit could not make a write durable. The write may or may not
+ * be present on the log unit.
+ */
+public class WriteNotPersistedException extends LogUnitException {
+
+}
@@ -9,4 +9,8 @@ import java.lang.annotation.*;
 @Retention(RetentionPolicy.RUNTIME)
 @Inherited
 public @interface Accessor {
+    /** The index of the parameter which identifies the part of the object the method touches,
+     * such as the key of a map, or -1 if the method touches the whole object. Transactions
+     * use it to detect conflicts at the granularity of that part. */
+    int conflictParameter() default -1;
 }
@@ -78,13 +78,8 @@ public class CorfuObjectProxy<P> {
             log.debug("Optimistic TXn, flatten TX into write set.");
             return originalCall.call();
         }
-        // TODO: can we get rid of this origin based call?
-        boolean invoked = Arrays.stream(new Exception().getStackTrace())
-                .map(StackTraceElement::getClassName)
-                .anyMatch(e -> e.endsWith("TXLambdaReferenceEntry"));
-
         // If we were called from TXLambdaReferenceEntry::invoke...
-        if (invoked) {
+        if (ProxyCallStack.get().contains(ProxyCallStack.CallType.TX_LAMBDA)) {
             log.debug("Redirect to original TX call");
             return originalCall.call();
         }
@@ -219,7 +219,7 @@ public class CorfuProxyBuilder {
                         ILogUnitEntry entry = sv.read();
                         while (entry != null) {
                             if (entry.getPayload() instanceof SMREntry &&
-                                    ((SMREntry) entry.getPayload()).getSMRMethod().equals("default"))
+                                    "default".equals(((SMREntry) entry.getPayload()).getSMRMethod()))
                             {
                                 log.trace("Setting contructor arguments to {}", ((SMREntry) entry.getPayload())
                                         .getSMRArguments());
@@ -247,6 +247,11 @@ public class CorfuProxyBuilder {
             if (proxy instanceof CorfuSMRObjectProxy) {
                 ((CorfuSMRObjectProxy)proxy).calculateMethodHashTable(ret.getClass());
             }
+            if (proxy instanceof CorfuSMRObjectProxy && options.contains(ObjectOpenOptions.RESTORE_CHECKPOINT)) {
+                // Start from the latest checkpoint, if there is one, instead of replaying the whole stream.
+                // This costs a sequencer query, plus reads of the checkpoint, so it is only done on request.
+                ((CorfuSMRObjectProxy)proxy).restoreCheckpoint();
+            }
             if (type.isAnnotationPresent(CorfuObject.class)) {
                 CorfuObject annotation = type.getAnnotation(CorfuObject.class);
                 if (annotation.objectType().equals(ObjectType.SMR) &&
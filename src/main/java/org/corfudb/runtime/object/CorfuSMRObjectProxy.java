@@ -1,8 +1,12 @@
 package org.corfudb.runtime.object;
 
+import com.google.common.hash.Hashing;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 import net.bytebuddy.implementation.bind.annotation.*;
+import org.corfudb.protocols.logprotocol.CheckpointEntry;
 import org.corfudb.protocols.logprotocol.LogEntry;
 import org.corfudb.protocols.logprotocol.SMREntry;
 import org.corfudb.protocols.logprotocol.TXEntry;
@@ -68,6 +72,13 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
 
     ICorfuSMRObject.SMRHandlerMethod postHandler;
 
+    /** The index of the conflict parameter of each annotated method, by SMR method name. */
+    Map<String, Integer> conflictParameterTable = new ConcurrentHashMap<>();
+
+    /** Dispatches updates to the methods of the object without reflection. */
+    @Getter
+    SMRMethodDispatcher dispatcher;
+
     public CorfuSMRObjectProxy(CorfuRuntime runtime, StreamView sv,
                                Class<P> originalClass, Serializers.SerializerType serializer) {
         super(runtime, sv, originalClass, serializer);
@@ -92,6 +103,21 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
     }
 
     public void calculateMethodHashTable(Class proxyClass) {
+        dispatcher = new SMRMethodDispatcher(originalClass, this::getSMRMethodName);
+        Arrays.stream(originalClass.getMethods())
+                .forEach(x -> {
+                    int conflictParameter = -1;
+                    if (x.isAnnotationPresent(Accessor.class)) {
+                        conflictParameter = x.getAnnotation(Accessor.class).conflictParameter();
+                    } else if (x.isAnnotationPresent(Mutator.class)) {
+                        conflictParameter = x.getAnnotation(Mutator.class).conflictParameter();
+                    } else if (x.isAnnotationPresent(MutatorAccessor.class)) {
+                        conflictParameter = x.getAnnotation(MutatorAccessor.class).conflictParameter();
+                    }
+                    if (conflictParameter >= 0) {
+                        conflictParameterTable.put(getSMRMethodName(x), conflictParameter);
+                    }
+                });
         Arrays.stream(originalClass.getDeclaredMethods())
                 .forEach(x -> {
                     for (Annotation a : x.getDeclaredAnnotations())
@@ -166,14 +192,11 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
 
     public Object findTransactionalSMRObject()
     {
-        for (StackTraceElement ste : new Exception().getStackTrace()) {
-            if (ste.getMethodName().equals("interceptAccessor")) {
-                return TransactionalContext.getCurrentContext().getObjectRead(this);
-            } else if (ste.getMethodName().equals("interceptMutator")) {
-                return TransactionalContext.getCurrentContext().getObjectWrite(this);
-            } else if (ste.getMethodName().equals("interceptMutatorAccessor")) {
-                return TransactionalContext.getCurrentContext().getObjectReadWrite(this);
-            }
+        ProxyCallStack.CallType call = ProxyCallStack.get().getInnermostInterceptedCall();
+        if (call == ProxyCallStack.CallType.ACCESSOR) {
+            return TransactionalContext.getCurrentContext().getObjectRead(this);
+        } else if (call == ProxyCallStack.CallType.MUTATOR) {
+            return TransactionalContext.getCurrentContext().getObjectWrite(this);
         }
         return TransactionalContext.getCurrentContext().getObjectReadWrite(this);
     }
@@ -213,8 +236,19 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
             String method = getSMRMethodName(Mmethod);
             log.debug("Object[{}]: +Mutator {} {}", getStreamID(),
                     TransactionalContext.isInTransaction() ? "tx" : "", method);
-            StackTraceElement[] stack = new Exception().getStackTrace();
-            if (stack.length > 6 && stack[6].getClassName().equals("org.corfudb.runtime.object.CorfuSMRObjectProxy")) {
+            ProxyCallStack calls = ProxyCallStack.get();
+            boolean upcall = calls.contains(ProxyCallStack.CallType.UPCALL, this);
+            calls.push(ProxyCallStack.CallType.MUTATOR, this);
+            try {
+                return handleMutator(Mmethod, method, allArguments, superMethod, upcall);
+            } finally {
+                calls.pop();
+            }
+    }
+
+    private Object handleMutator(Method Mmethod, String method, Object[] allArguments,
+                                 Callable superMethod, boolean upcall) throws Exception {
+            if (upcall) {
                 if (isCorfuObject) {
                     return superMethod.call();
                 } else {
@@ -252,8 +286,19 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
             log.debug("Object[{}] +MutatorAccessor {} {}", getStreamID(),
                     TransactionalContext.isInTransaction() ? "tx" : "", method);
 
-            StackTraceElement[] stack = new Exception().getStackTrace();
-            if (stack.length > 6 && stack[6].getClassName().equals("org.corfudb.runtime.object.CorfuSMRObjectProxy")) {
+            ProxyCallStack calls = ProxyCallStack.get();
+            boolean upcall = calls.contains(ProxyCallStack.CallType.UPCALL, this);
+            calls.push(ProxyCallStack.CallType.MUTATOR_ACCESSOR, this);
+            try {
+                return handleMutatorAccessor(Mmethod, method, superMethod, allArguments, obj, upcall);
+            } finally {
+                calls.pop();
+            }
+    }
+
+    private Object handleMutatorAccessor(Method Mmethod, String method, Callable superMethod,
+                                         Object[] allArguments, P obj, boolean upcall) throws Exception {
+            if (upcall) {
                 return doUnderlyingCall(superMethod, Mmethod, allArguments);
             } else if (!TransactionalContext.isInTransaction()) {
                 // write the update to the stream and map a future for the completion.
@@ -282,20 +327,27 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
                                     @AllArguments Object[] arguments,
                                     @This P obj) throws Exception {
             log.trace("Object[{}] +Accessor {} {}", getStreamID(), TransactionalContext.isInTransaction() ? "tx" : "", method);
+            ProxyCallStack calls = ProxyCallStack.get();
+            calls.push(ProxyCallStack.CallType.ACCESSOR, this);
+            try {
+                return handleAccessor(superMethod, method, arguments, obj);
+            } finally {
+                calls.pop();
+            }
+    }
+
+    private Object handleAccessor(Callable superMethod, Method method, Object[] arguments, P obj)
+            throws Exception {
             // Linearize this access with respect to other accesses in the system.
             if (!TransactionalContext.isInTransaction()) {
                 sync(obj, Long.MAX_VALUE);
                 return doUnderlyingCall(superMethod, method, arguments);
             } else {
                 doTransactionalSync(obj);
-                Object ret = doUnderlyingCall(superMethod, method, arguments);
-                // If the object was written to (due to transactional clone), the read set is not resolvable.
-                if (!TransactionalContext.getCurrentContext().isObjectCloned(this)) {
-                    // Store the read set with the context.
-                    TransactionalContext.getCurrentContext().addReadSet(this,
-                            getSMRMethodName(method), ret);
-                }
-                return ret;
+                // Store the read set with the context.
+                TransactionalContext.getCurrentContext().addReadSet(this,
+                        getSMRMethodName(method), arguments);
+                return doUnderlyingCall(superMethod, method, arguments);
             }
     }
 
@@ -338,16 +390,55 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
         return ReflectionUtils.getShortMethodName(method.toString());
     }
 
+    /** Create an entry for an update, which carries the ID of the method instead of its name
+     * if the runtime writes method IDs and the method has one.
+     *
+     * @param method        The SMR method name.
+     * @param arguments     The arguments to the method.
+     * @return              An SMR entry for the update.
+     */
+    SMREntry createSMREntry(String method, Object[] arguments)
+    {
+        if (runtime.isSmrMethodIdsEnabled() && dispatcher != null && dispatcher.hasMethodId(method)) {
+            return new SMREntry(method, SMRMethodDispatcher.getMethodId(method), arguments, serializer);
+        }
+        return new SMREntry(method, arguments, serializer);
+    }
+
+    /** Get the conflict key of a call to an SMR method, which identifies the part of the
+     * object the call touches. The key is a hash of the serialized conflict parameter, so that
+     * all clients compute the same key for the same parameter.
+     *
+     * @param method        The SMR method name.
+     * @param arguments     The arguments to the method.
+     * @return              The conflict key, or null if the call touches the whole object.
+     */
+    public Long getConflictKey(String method, Object[] arguments)
+    {
+        Integer conflictParameter = conflictParameterTable.get(method);
+        if (conflictParameter == null || conflictParameter >= arguments.length) {
+            return null;
+        }
+        ByteBuf b = Unpooled.buffer();
+        try {
+            Serializers.getSerializer(serializer).serialize(arguments[conflictParameter], b);
+            return Hashing.murmur3_128().hashBytes(b.array(), b.arrayOffset() + b.readerIndex(),
+                    b.readableBytes()).asLong();
+        } finally {
+            b.release();
+        }
+    }
+
     long writeUpdate(String method, Object[] arguments)
     {
         log.trace("Write update: {} with arguments {}", method, arguments);
-        return sv.write(new SMREntry(method, arguments, serializer));
+        return sv.write(createSMREntry(method, arguments));
     }
 
     long writeUpdateAndMapFuture(String method, Object[] arguments)
     {
         log.trace("Write update and map future: {} with arguments {}", method, arguments);
-        return sv.acquireAndWrite(new SMREntry(method, arguments, serializer),
+        return sv.acquireAndWrite(createSMREntry(method, arguments),
                 t -> {completableFutureMap.put(t.getToken(), new CompletableFuture<>()); return true;},
                t -> {completableFutureMap.remove(t.getToken()); return true;});
     }
@@ -355,23 +446,42 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
     boolean applySMRUpdate(long address, SMREntry entry, P obj)
     {
         log.trace("Apply SMR update at {} : {}", address, entry);
-        // Look for the uninstrumented method
+        String method = entry.getSMRMethod();
         try {
-            // Find the method by using the method name hash table.
-            Method m = methodHashTable.computeIfAbsent(entry.getSMRMethod(),
-                    s -> {
-                        try {
-                        return obj.getClass().getMethod(ReflectionUtils.getMethodNameOnlyFromString(entry.getSMRMethod()),
-                                ReflectionUtils.getArgumentTypesFromString(entry.getSMRMethod()));
-                        }
-                        catch (NoSuchMethodException nsme)
-                        {
-                            return null;
-                        }});
-
-            if (m == null) { throw new NoSuchMethodException(entry.getSMRMethod()); }
-            // Execute the SMR command
-            Object ret = m.invoke(obj, entry.getSMRArguments());
+            // Entries written with a method ID don't carry the name of the method.
+            if (method == null) {
+                method = dispatcher == null ? null : dispatcher.getMethodName(entry.getSMRMethodId());
+                if (method == null) { throw new NoSuchMethodException("SMR method ID " + entry.getSMRMethodId()); }
+            }
+            // Use the generated invoker if there is one, otherwise look for the uninstrumented method.
+            SMRMethodDispatcher.Invoker invoker = dispatcher == null ? null : dispatcher.getInvoker(method);
+            Method m = null;
+            if (invoker == null) {
+                // Find the method by using the method name hash table.
+                final String methodName = method;
+                m = methodHashTable.computeIfAbsent(methodName,
+                        s -> {
+                            try {
+                            return obj.getClass().getMethod(ReflectionUtils.getMethodNameOnlyFromString(methodName),
+                                    ReflectionUtils.getArgumentTypesFromString(methodName));
+                            }
+                            catch (NoSuchMethodException nsme)
+                            {
+                                return null;
+                            }});
+
+                if (m == null) { throw new NoSuchMethodException(methodName); }
+            }
+            // Execute the SMR command, marking it as an upcall so that it is not written to the log again.
+            Object ret;
+            ProxyCallStack calls = ProxyCallStack.get();
+            calls.push(ProxyCallStack.CallType.UPCALL, this);
+            try {
+                ret = invoker != null ? invoker.invoke(obj, entry.getSMRArguments())
+                        : m.invoke(obj, entry.getSMRArguments());
+            } finally {
+                calls.pop();
+            }
             // Update the current timestamp.
             timestamp = address;
             log.trace("Timestamp for [{}] updated to {}",sv.getStreamID(), address);
@@ -380,24 +490,24 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
                 completableFutureMap.get(address).complete(ret);
             }
             if (postHandler != null) {
-                postHandler.handle(entry.getSMRMethod(), entry.getSMRArguments(), obj);
+                postHandler.handle(method, entry.getSMRArguments(), obj);
             }
             return true;
         } catch (NoSuchMethodException n) {
-            log.error("Couldn't find method {} during apply update", entry.getSMRMethod(), n);
+            log.error("Couldn't find method {} during apply update", method, n);
             if (completableFutureMap.containsKey(address))
             {
                 completableFutureMap.get(address).completeExceptionally(n);
             }
         } catch (InvocationTargetException | IllegalAccessException iae) {
-            log.error("Couldn't dispatch method {} during apply update", entry.getSMRMethod(), iae);
+            log.error("Couldn't dispatch method {} during apply update", method, iae);
             if (completableFutureMap.containsKey(address))
             {
                 completableFutureMap.get(address).completeExceptionally(iae);
             }
         } catch (Exception e)
         {
-            log.warn("Exception during application of SMR method {}", entry.getSMRMethod());
+            log.warn("Exception during application of SMR method {}", method);
             if (completableFutureMap.containsKey(address))
             {
                 completableFutureMap.get(address).completeExceptionally(e);
@@ -424,17 +534,24 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
             return true;
         } else if (entry instanceof TXLambdaReferenceEntry) {
                 log.debug("Apply TXLambdaRef {} at {}", ((TXLambdaReferenceEntry) entry).getMethod().toString(), address);
-            try (TXLambdaReferenceEntry.LambdaLock ll = TXLambdaReferenceEntry.getLockForTXAddress(address)) {
+            try (TXLambdaReferenceEntry.LambdaLock ll = TXLambdaReferenceEntry.getLockForTXAddress(address,
+                    ((TXLambdaReferenceEntry) entry).getAffectedStreams())) {
                 // unlock the sync lock :::
                 // TODO: fixme this is ugly
                 rwLock.writeLock().unlock();
                 try {
-                    ll.getLock().lock();
+                    ll.lock();
                     // check if the timestamp has moved past this lambda ref (due to another thread applying the same TX)
                     log.info("Object[{}]: execute TXLambdaRef@{}", getStreamID(), address);
                     if (timestamp < address) {
                         TransactionalContext.newContext(new LambdaTransactionalContext(runtime, address));
-                        ((TXLambdaReferenceEntry) entry).invoke();
+                        ProxyCallStack calls = ProxyCallStack.get();
+                        calls.push(ProxyCallStack.CallType.TX_LAMBDA, this);
+                        try {
+                            ((TXLambdaReferenceEntry) entry).invoke();
+                        } finally {
+                            calls.pop();
+                        }
                         TransactionalContext.removeContext();
                     }
                 } finally {
@@ -446,6 +563,83 @@ public class CorfuSMRObjectProxy<P> extends CorfuObjectProxy<P> {
         return false;
     }
 
+    /** Write a checkpoint of the state of this object to its checkpoint stream.
+     *
+     * The object is first synced to the tail of its stream. The state is then written
+     * while holding the sync lock, so that no updates are applied to it while it is
+     * being serialized.
+     *
+     * @param obj               The object to checkpoint.
+     * @param serializerType    The serializer to serialize the state with.
+     * @return                  The address the checkpoint was written at, or -1L if
+     *                          the stream is empty and there was nothing to checkpoint.
+     */
+    @SuppressWarnings("unchecked")
+    public long checkpoint(P obj, Serializers.SerializerType serializerType) throws Exception {
+        if (selfState) {
+            throw new UnsupportedOperationException("Objects which hold their own state cannot be checkpointed.");
+        }
+        try (LockUtils.AutoCloseRWLock writeLock = new LockUtils.AutoCloseRWLock(rwLock).writeLock()) {
+            sync(obj, Long.MAX_VALUE);
+            long checkpointAddress = sv.getLogPointer() - 1;
+            if (checkpointAddress < 0) {
+                log.debug("Object[{}]: stream is empty, not writing checkpoint.", getStreamID());
+                return -1L;
+            }
+            if (smrObject == null) {
+                smrObject = constructSMRObject(isCorfuObject ? (ICorfuSMRObject<P>) obj : null);
+            }
+            long address = runtime.getStreamsView().write(
+                    Collections.singleton(CheckpointEntry.getCheckpointStreamID(getStreamID())),
+                    new CheckpointEntry(getStreamID(), checkpointAddress, smrObject, serializerType));
+            log.debug("Object[{}]: wrote checkpoint of stream address {} at {}", getStreamID(),
+                    checkpointAddress, address);
+            return address;
+        }
+    }
+
+    /** Restore the state of this object from the latest checkpoint in its checkpoint stream,
+     * if there is one. Only the entries after the checkpoint will be replayed by subsequent syncs.
+     *
+     * @return  True, if the object was restored from a checkpoint,
+     *          False otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean restoreCheckpoint() {
+        if (selfState) {
+            return false;
+        }
+        UUID checkpointStream = CheckpointEntry.getCheckpointStreamID(getStreamID());
+        long token = runtime.getSequencerView().nextToken(Collections.singleton(checkpointStream), 0).getToken();
+        while (token != -1L) {
+            ILogUnitEntry entry = runtime.getAddressSpaceView().read(token);
+            if (entry.getResultType() == LogUnitReadResponseMsg.ReadResultType.DATA
+                    && entry.getPayload() instanceof CheckpointEntry
+                    && ((CheckpointEntry) entry.getPayload()).getStreamID().equals(getStreamID())) {
+                CheckpointEntry checkpoint = (CheckpointEntry) entry.getPayload();
+                try (LockUtils.AutoCloseRWLock writeLock = new LockUtils.AutoCloseRWLock(rwLock).writeLock()) {
+                    if (checkpoint.getCheckpointAddress() < sv.getLogPointer()) {
+                        log.debug("Object[{}]: already past checkpoint at {}, not restoring.",
+                                getStreamID(), checkpoint.getCheckpointAddress());
+                        return false;
+                    }
+                    smrObject = (P) checkpoint.getState();
+                    timestamp = checkpoint.getCheckpointAddress();
+                    sv.seek(checkpoint.getCheckpointAddress() + 1);
+                    log.debug("Object[{}]: restored checkpoint of stream address {} from {}", getStreamID(),
+                            checkpoint.getCheckpointAddress(), token);
+                    return true;
+                }
+            }
+            // The latest checkpoint may not have been completely written, so fall back to the previous one.
+            if (!entry.hasBackpointer(checkpointStream)) {
+                break;
+            }
+            token = entry.getBackpointer(checkpointStream);
+        }
+        return false;
+    }
+
     @Override
     public void sync(P obj, long maxPos) {
         try (LockUtils.AutoCloseRWLock writeLock = new LockUtils.AutoCloseRWLock(rwLock).writeLock()) {
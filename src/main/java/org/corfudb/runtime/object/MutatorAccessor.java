@@ -10,4 +10,8 @@ import java.lang.annotation.*;
 @Inherited
 public @interface MutatorAccessor{
     String name() default "";
+    /** The index of the parameter which identifies the part of the object the method touches,
+     * such as the key of a map, or -1 if the method touches the whole object. Transactions
+     * use it to detect conflicts at the granularity of that part. */
+    int conflictParameter() default -1;
 }
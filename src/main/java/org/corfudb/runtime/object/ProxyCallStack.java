@@ -0,0 +1,116 @@
+package org.corfudb.runtime.object;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the proxy calls which are in progress on each thread.
+ *
+ * Proxies push a frame when they intercept a call, apply an update or invoke a
+ * transactional lambda, and pop it when the call returns. Re-entrant calls can then
+ * find out where they were called from by inspecting the frames of their thread,
+ * instead of capturing and walking a stack trace on every call.
+ *
+ * The stack only grows as deep as proxied calls are nested, so it is searched linearly.
+ */
+class ProxyCallStack {
+
+    /** The type of call a frame was pushed for. */
+    enum CallType {
+        /** A call intercepted by interceptAccessor. */
+        ACCESSOR,
+        /** A call intercepted by interceptMutator. */
+        MUTATOR,
+        /** A call intercepted by interceptMutatorAccessor. */
+        MUTATOR_ACCESSOR,
+        /** An update being applied to an object from the log. */
+        UPCALL,
+        /** A transactional lambda being invoked from the log. */
+        TX_LAMBDA
+    }
+
+    /** The call stack of each thread. */
+    static final ThreadLocal<ProxyCallStack> threadCallStack = ThreadLocal.withInitial(ProxyCallStack::new);
+
+    /** The type of each frame, from the outermost to the innermost call. */
+    CallType[] types = new CallType[8];
+
+    /** The proxy which pushed each frame. */
+    Object[] proxies = new Object[8];
+
+    /** The number of frames on the stack. */
+    int depth = 0;
+
+    /** Get the call stack of the current thread.
+     *
+     * @return  The call stack of the current thread.
+     */
+    static ProxyCallStack get() {
+        return threadCallStack.get();
+    }
+
+    /** Push a frame for a call which is starting.
+     *
+     * @param type      The type of the call.
+     * @param proxy     The proxy making the call.
+     */
+    void push(CallType type, Object proxy) {
+        if (depth == types.length) {
+            types = Arrays.copyOf(types, depth * 2);
+            proxies = Arrays.copyOf(proxies, depth * 2);
+        }
+        types[depth] = type;
+        proxies[depth] = proxy;
+        depth++;
+    }
+
+    /** Pop the frame of the innermost call, which has returned. */
+    void pop() {
+        depth--;
+        proxies[depth] = null;
+        types[depth] = null;
+    }
+
+    /** Check whether a call of the given type is in progress on this thread.
+     *
+     * @param type      The type of call to look for.
+     * @return          True, if a call of the given type by any proxy is in progress.
+     */
+    boolean contains(CallType type) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (types[i] == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Check whether a call of the given type by the given proxy is in progress on this thread.
+     *
+     * @param type      The type of call to look for.
+     * @param proxy     The proxy which made the call.
+     * @return          True, if the proxy has a call of the given type in progress.
+     */
+    boolean contains(CallType type, Object proxy) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (types[i] == type && proxies[i] == proxy) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Get the type of the innermost intercepted accessor or mutator call.
+     *
+     * @return  The type of the innermost call intercepted by a proxy, or null
+     *          if no intercepted call is in progress.
+     */
+    CallType getInnermostInterceptedCall() {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (types[i] == CallType.ACCESSOR || types[i] == CallType.MUTATOR
+                    || types[i] == CallType.MUTATOR_ACCESSOR) {
+                return types[i];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,210 @@
+package org.corfudb.runtime.object;
+
+import lombok.extern.slf4j.Slf4j;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.dynamic.scaffold.InstrumentedType;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.implementation.bytecode.ByteCodeAppender;
+import net.bytebuddy.implementation.bytecode.StackManipulation;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.implementation.bytecode.assign.TypeCasting;
+import net.bytebuddy.implementation.bytecode.collection.ArrayAccess;
+import net.bytebuddy.implementation.bytecode.constant.IntegerConstant;
+import net.bytebuddy.implementation.bytecode.constant.NullConstant;
+import net.bytebuddy.implementation.bytecode.member.MethodInvocation;
+import net.bytebuddy.implementation.bytecode.member.MethodReturn;
+import net.bytebuddy.implementation.bytecode.member.MethodVariableAccess;
+import net.bytebuddy.matcher.ElementMatchers;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Dispatches SMR updates to the methods of an object without reflection.
+ *
+ * When a proxy is built, an invoker class is generated for every public mutator and
+ * mutatorAccessor of the proxied class. The invoker unpacks the argument array and calls
+ * the method directly, so applying an update does not pay for reflective access checks.
+ * Invokers are generated once per method and shared between proxies.
+ *
+ * Each method is also given a compact ID, the hash of its SMR method name, which
+ * SMR entries may carry instead of the name. Methods whose IDs collide are only
+ * dispatched by name.
+ */
+@Slf4j
+public class SMRMethodDispatcher {
+
+    /** Calls a method on an object, with arguments taken from an array. */
+    public interface Invoker {
+        /** Invoke the method.
+         *
+         * @param target        The object to invoke the method on.
+         * @param arguments     The arguments to the method.
+         * @return              The result of the method, or null if it returns void.
+         */
+        Object invoke(Object target, Object[] arguments) throws Exception;
+    }
+
+    /** The invokers which have been generated, by method. */
+    static final Map<Method, Invoker> invokerCache = new ConcurrentHashMap<>();
+
+    /** The invokers of this class, by SMR method name. */
+    final Map<String, Invoker> invokersByName = new ConcurrentHashMap<>();
+
+    /** The SMR method names of this class, by method ID. */
+    final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+
+    /** Build a dispatcher for the mutators and mutatorAccessors of a class.
+     *
+     * @param originalClass     The class being proxied.
+     * @param nameFunction      A function which returns the SMR method name of a method.
+     */
+    public SMRMethodDispatcher(Class<?> originalClass, Function<Method, String> nameFunction) {
+        List<Integer> collisions = new ArrayList<>();
+        for (Method m : originalClass.getMethods()) {
+            if (m.isBridge() || !(m.isAnnotationPresent(Mutator.class)
+                    || m.isAnnotationPresent(MutatorAccessor.class))) {
+                continue;
+            }
+            String name = nameFunction.apply(m);
+            Invoker invoker = getInvoker(m);
+            if (invoker == null || invokersByName.containsKey(name)) {
+                continue;
+            }
+            invokersByName.put(name, invoker);
+            String previous = namesById.putIfAbsent(getMethodId(name), name);
+            if (previous != null) {
+                log.warn("SMR methods {} and {} of {} have the same ID, dispatching them by name.",
+                        previous, name, originalClass);
+                collisions.add(getMethodId(name));
+            }
+        }
+        collisions.forEach(namesById::remove);
+    }
+
+    /** Get the ID of an SMR method.
+     *
+     * @param name      The SMR method name.
+     * @return          The ID of the method.
+     */
+    public static int getMethodId(String name) {
+        return name.hashCode();
+    }
+
+    /** Check whether updates to an SMR method can be written with its ID.
+     *
+     * @param name      The SMR method name.
+     * @return          True, if the ID of the method resolves to it.
+     */
+    public boolean hasMethodId(String name) {
+        return name.equals(namesById.get(getMethodId(name)));
+    }
+
+    /** Get the name of the SMR method with the given ID.
+     *
+     * @param id        The ID of the method.
+     * @return          The SMR method name, or null if no method has the ID.
+     */
+    public String getMethodName(int id) {
+        return namesById.get(id);
+    }
+
+    /** Get the invoker for an SMR method.
+     *
+     * @param name      The SMR method name.
+     * @return          The invoker, or null if the method must be invoked reflectively.
+     */
+    public Invoker getInvoker(String name) {
+        return invokersByName.get(name);
+    }
+
+    /** Get an invoker for the given method, generating it if it has not been generated yet.
+     *
+     * @param m         The method to invoke.
+     * @return          An invoker, or null if the method cannot be called directly.
+     */
+    static Invoker getInvoker(Method m) {
+        if (!Modifier.isPublic(m.getModifiers()) || !Modifier.isPublic(m.getDeclaringClass().getModifiers())
+                || Modifier.isStatic(m.getModifiers())) {
+            return null;
+        }
+        return invokerCache.computeIfAbsent(m, SMRMethodDispatcher::generateInvoker);
+    }
+
+    static Invoker generateInvoker(Method m) {
+        try {
+            // The invoker must see both the declaring class and the Invoker interface.
+            ClassLoader loader = m.getDeclaringClass().getClassLoader() == null
+                    ? SMRMethodDispatcher.class.getClassLoader() : m.getDeclaringClass().getClassLoader();
+            return (Invoker) new ByteBuddy()
+                    .subclass(Object.class)
+                    .implement(Invoker.class)
+                    .method(ElementMatchers.named("invoke"))
+                    .intercept(new DirectCall(m))
+                    .make()
+                    .load(loader, ClassLoadingStrategy.Default.WRAPPER)
+                    .getLoaded()
+                    .newInstance();
+        } catch (Exception | LinkageError e) {
+            log.debug("Couldn't generate an invoker for {}, it will be invoked reflectively.", m, e);
+            return null;
+        }
+    }
+
+    /** Implements Invoker.invoke as a direct call to a method. */
+    static class DirectCall implements Implementation, ByteCodeAppender {
+
+        final MethodDescription target;
+
+        DirectCall(Method m) {
+            this.target = new MethodDescription.ForLoadedMethod(m);
+        }
+
+        @Override
+        public InstrumentedType prepare(InstrumentedType instrumentedType) {
+            return instrumentedType;
+        }
+
+        @Override
+        public ByteCodeAppender appender(Target implementationTarget) {
+            return this;
+        }
+
+        @Override
+        public Size apply(net.bytebuddy.jar.asm.MethodVisitor methodVisitor, Context implementationContext,
+                          MethodDescription instrumentedMethod) {
+            List<StackManipulation> code = new ArrayList<>();
+            // Load the target, cast to the declaring type.
+            code.add(MethodVariableAccess.REFERENCE.loadOffset(1));
+            code.add(TypeCasting.to(target.getDeclaringType().asErasure()));
+            // Load each argument from the array, casting or unboxing it to the parameter type.
+            for (int i = 0; i < target.getParameters().size(); i++) {
+                code.add(MethodVariableAccess.REFERENCE.loadOffset(2));
+                code.add(IntegerConstant.forValue(i));
+                code.add(ArrayAccess.REFERENCE.load());
+                code.add(Assigner.DEFAULT.assign(TypeDescription.Generic.OBJECT,
+                        target.getParameters().get(i).getType(), Assigner.Typing.DYNAMIC));
+            }
+            code.add(MethodInvocation.invoke(target));
+            // Return the result, boxing it if it is a primitive.
+            if (target.getReturnType().represents(void.class)) {
+                code.add(NullConstant.INSTANCE);
+            } else {
+                code.add(Assigner.DEFAULT.assign(target.getReturnType(),
+                        TypeDescription.Generic.OBJECT, Assigner.Typing.STATIC));
+            }
+            code.add(MethodReturn.REFERENCE);
+            StackManipulation.Size size = new StackManipulation.Compound(code)
+                    .apply(methodVisitor, implementationContext);
+            return new Size(size.getMaximalSize(), instrumentedMethod.getStackSize());
+        }
+    }
+}
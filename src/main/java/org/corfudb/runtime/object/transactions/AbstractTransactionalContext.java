@@ -62,11 +62,12 @@ public abstract class AbstractTransactionalContext implements AutoCloseable {
     abstract public void addTransaction(AbstractTransactionalContext tc);
 
     /** Add to the read set
-     * @param proxy     The SMR Object proxy to get an object for writing.
-     * @param <T>       The type of object to get for writing.
-     * @return          An object for writing.
+     * @param proxy         The SMR Object proxy which is being read.
+     * @param SMRMethod     The accessor being called.
+     * @param SMRArguments  The arguments to the accessor.
+     * @param <T>           The type of the proxy.
      */
-    abstract public <T> void addReadSet(CorfuSMRObjectProxy<T> proxy, String SMRMethod, Object result);
+    abstract public <T> void addReadSet(CorfuSMRObjectProxy<T> proxy, String SMRMethod, Object[] SMRArguments);
 
     /** Open an object for reading. The implementation will avoid creating a copy of the object
      * if it has not already been done.
@@ -0,0 +1,251 @@
+package org.corfudb.runtime.object.transactions;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The state of a map-backed SMR object as seen by a transaction which wrote to it.
+ *
+ * Instead of cloning the committed map on the first write, a transaction buffers its writes
+ * in this overlay. Entries the transaction put are held in the overlay itself, keys it removed
+ * are held as tombstones, and every other key is read through to the committed map. Reads and
+ * writes of a single key only touch the overlay and a single entry of the committed map, while
+ * operations on the whole map (iteration, containsValue) merge the overlay with the committed
+ * map when they are called.
+ *
+ * The views returned by keySet, values and entrySet are snapshots, and cannot be modified.
+ */
+class HashMapWriteOverlay<K, V> extends HashMap<K, V> {
+
+    /** The committed state of the object. */
+    final Map<K, V> base;
+
+    /** Keys of the committed map which the transaction removed. */
+    final Set<Object> removed = new HashSet<>();
+
+    /** Whether the transaction cleared the map, so that the committed map is hidden. */
+    boolean cleared = false;
+
+    HashMapWriteOverlay(Map<K, V> base) {
+        this.base = base;
+    }
+
+    /** Check whether a key is read through to the committed map.
+     *
+     * @param key   The key to check.
+     * @return      True, if the key was not written by the transaction and is in the committed map.
+     */
+    boolean inBase(Object key) {
+        return !cleared && !super.containsKey(key) && !removed.contains(key) && base.containsKey(key);
+    }
+
+    /** Merge the overlay with the committed map.
+     *
+     * @return  A new map, with the contents of the map as seen by the transaction.
+     */
+    HashMap<K, V> materialize() {
+        HashMap<K, V> merged = cleared ? new HashMap<>() : new HashMap<>(base);
+        removed.forEach(merged::remove);
+        for (Map.Entry<K, V> e : super.entrySet()) {
+            merged.put(e.getKey(), e.getValue());
+        }
+        return merged;
+    }
+
+    @Override
+    public int size() {
+        if (cleared) {
+            return super.size();
+        }
+        int size = base.size() + super.size();
+        for (K key : super.keySet()) {
+            if (base.containsKey(key)) {
+                size--;
+            }
+        }
+        for (Object key : removed) {
+            if (base.containsKey(key)) {
+                size--;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (super.containsKey(key)) {
+            return super.get(key);
+        }
+        return inBase(key) ? base.get(key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return super.containsKey(key) || inBase(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        V previous = get(key);
+        removed.remove(key);
+        super.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        m.forEach(this::put);
+    }
+
+    @Override
+    public V remove(Object key) {
+        V previous = get(key);
+        super.remove(key);
+        if (!cleared && base.containsKey(key)) {
+            removed.add(key);
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        removed.clear();
+        cleared = true;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return materialize().containsValue(value);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(materialize().keySet());
+    }
+
+    @Override
+    public Collection<V> values() {
+        return Collections.unmodifiableCollection(materialize().values());
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return Collections.unmodifiableSet(materialize().entrySet());
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        materialize().forEach(action);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        materialize().forEach((k, v) -> put(k, function.apply(k, v)));
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return containsKey(key) ? get(key) : defaultValue;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        V current = get(key);
+        return current == null ? put(key, value) : current;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (!containsKey(key) || !Objects.equals(get(key), value)) {
+            return false;
+        }
+        remove(key);
+        return true;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (!containsKey(key) || !Objects.equals(get(key), oldValue)) {
+            return false;
+        }
+        put(key, newValue);
+        return true;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return containsKey(key) ? put(key, value) : null;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V current = get(key);
+        if (current == null) {
+            V value = mappingFunction.apply(key);
+            if (value != null) {
+                put(key, value);
+                return value;
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        V current = get(key);
+        if (current == null) {
+            return null;
+        }
+        V value = remappingFunction.apply(key, current);
+        if (value == null) {
+            remove(key);
+        } else {
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        V value = remappingFunction.apply(key, get(key));
+        if (value == null) {
+            if (containsKey(key)) {
+                remove(key);
+            }
+        } else {
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        V current = get(key);
+        V merged = current == null ? value : remappingFunction.apply(current, value);
+        if (merged == null) {
+            remove(key);
+        } else {
+            put(key, merged);
+        }
+        return merged;
+    }
+
+    @Override
+    public Object clone() {
+        return materialize();
+    }
+}
@@ -119,12 +119,12 @@ public class LambdaTransactionalContext extends AbstractTransactionalContext {
     /**
      * Add to the read set
      *
-     * @param proxy     The SMR Object proxy to get an object for writing.
-     * @param SMRMethod
-     * @param result    @return          An object for writing.
+     * @param proxy         The SMR Object proxy which is being read.
+     * @param SMRMethod     The accessor being called.
+     * @param SMRArguments  The arguments to the accessor.
      */
     @Override
-    public <T> void addReadSet(CorfuSMRObjectProxy<T> proxy, String SMRMethod, Object result) {
+    public <T> void addReadSet(CorfuSMRObjectProxy<T> proxy, String SMRMethod, Object[] SMRArguments) {
 
     }
 
@@ -64,11 +64,21 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
     class TransactionalObjectData<T> {
 
         CorfuSMRObjectProxy<T> proxy;
+        /** The object as seen by the transaction, once it wrote to it. This is either a clone of the
+         * committed object, or an overlay of the writes on it if the committed object is a plain map. */
         T smrObjectClone;
         long readTimestamp;
         List<SMREntry> bufferedWrites;
         boolean objectIsRead;
         boolean nextCloneIsReset;
+        /** The conflict keys which were read, if only parts of the object were read. */
+        Set<Long> readKeys;
+        /** Whether a read depended on the whole object. */
+        boolean readAll;
+        /** The conflict keys which were written, if only parts of the object were written. */
+        Set<Long> writeKeys;
+        /** Whether a write touched the whole object. */
+        boolean writeAll;
 
         public TransactionalObjectData(CorfuSMRObjectProxy<T> proxy)
         {
@@ -77,6 +87,54 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
             this.readTimestamp = Long.MIN_VALUE;
             this.objectIsRead = false;
             this.nextCloneIsReset = false;
+            this.readKeys = new HashSet<>();
+            this.readAll = false;
+            this.writeKeys = new HashSet<>();
+            this.writeAll = false;
+        }
+
+        /** Record a read in the read set.
+         *
+         * @param conflictKey   The conflict key which was read, or null if the read
+         *                      depended on the whole object.
+         */
+        void addRead(Long conflictKey) {
+            if (nextCloneIsReset) {
+                // The object was reset by this transaction, so reads don't depend on the log.
+                return;
+            }
+            objectIsRead = true;
+            if (conflictKey == null) {
+                readAll = true;
+            } else {
+                readKeys.add(conflictKey);
+            }
+        }
+
+        /** Record a write in the write set.
+         *
+         * @param conflictKey   The conflict key which was written, or null if the write
+         *                      touched the whole object.
+         */
+        void addWrite(Long conflictKey) {
+            if (conflictKey == null) {
+                writeAll = true;
+            } else {
+                writeKeys.add(conflictKey);
+            }
+        }
+
+        /** Merge the read and write sets of a nested transaction into this one.
+         *
+         * @param other     The data of the nested transaction.
+         */
+        void merge(TransactionalObjectData<T> other) {
+            bufferedWrites.addAll(other.bufferedWrites);
+            objectIsRead |= other.objectIsRead;
+            readAll |= other.readAll;
+            readKeys.addAll(other.readKeys);
+            writeAll |= other.writeAll;
+            writeKeys.addAll(other.writeKeys);
         }
 
         public boolean objectIsCloned() {
@@ -85,7 +143,7 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
 
         T cloneAndGetObject() {
             if (smrObjectClone == null) {
-                log.debug("Cloning SMR object {} due to transactional write.", proxy.getSv().getStreamID());
+                log.debug("Copying SMR object {} due to transactional write.", proxy.getSv().getStreamID());
                 if (nextCloneIsReset) {
                     log.trace("SMR object was marked for reset, constructing from scratch.");
                     try {
@@ -95,14 +153,20 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
                         log.warn("Error constructing SMR object" , ex);
                     }
                 }
+                Object committed = proxy.getSmrObject();
+                if (committed != null && committed.getClass() == HashMap.class) {
+                    // Overlay the writes on the committed map instead of copying all of it.
+                    smrObjectClone = (T) new HashMapWriteOverlay<>((HashMap) committed);
+                    return smrObjectClone;
+                }
                 smrObjectClone = (T) Serializers.getSerializer(proxy.getSerializer())
-                        .clone(proxy.getSmrObject(), proxy.getRuntime());
+                        .clone(committed, proxy.getRuntime());
             }
             return smrObjectClone;
         }
 
         public T readObject() {
-            if (bufferedWrites.isEmpty()) { objectIsRead = true; }
+            // The read is recorded by addReadSet, which knows which part of the object is read.
             readTimestamp = proxy.getTimestamp();
             return (T) (smrObjectClone == null ? proxy.getSmrObject() : smrObjectClone);
         }
@@ -112,7 +176,7 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
         }
 
         public T readWriteObject() {
-            if (bufferedWrites.isEmpty()) { objectIsRead = true; }
+            if (bufferedWrites.isEmpty()) { addRead(null); }
             readTimestamp = proxy.getTimestamp();
             return cloneAndGetObject();
         }
@@ -131,7 +195,9 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
         Map<UUID, TXEntry.TXObjectEntry> entryMap = new HashMap<>();
         objectMap.entrySet().stream()
                 .forEach(x -> entryMap.put(x.getKey().getSv().getStreamID(),
-                        new TXEntry.TXObjectEntry(x.getValue().bufferedWrites, x.getValue().objectIsRead)));
+                        new TXEntry.TXObjectEntry(x.getValue().bufferedWrites, x.getValue().objectIsRead,
+                                x.getValue().readAll ? null : x.getValue().readKeys,
+                                x.getValue().writeAll ? null : x.getValue().writeKeys)));
         return new TXEntry(entryMap, isFirstReadTimestampSet() ? getFirstReadTimestamp() : -1L);
     }
 
@@ -149,6 +215,7 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
     public <T> void bufferObjectUpdate(CorfuSMRObjectProxy<T> proxy, String SMRMethod,
                                        Object[] SMRArguments, Serializers.SerializerType serializer, boolean writeOnly)
     {
+        Long conflictKey = proxy.getConflictKey(SMRMethod, SMRArguments);
         objectMap
                 .compute(proxy, (k,v) ->
                 {
@@ -158,8 +225,9 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
                     }
 
                     if (!writeOnly) {
-                        data.objectIsRead = true;
+                        data.addRead(conflictKey);
                     }
+                    data.addWrite(conflictKey);
                     data.bufferedWrites.add(new SMREntry(SMRMethod, SMRArguments, serializer));
                     return data;
                 });
@@ -176,6 +244,9 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
                     }
 
                     data.objectIsRead = false;
+                    data.readAll = false;
+                    data.readKeys.clear();
+                    data.writeKeys.clear();
 
                     data.bufferedWrites.clear();
                     data.nextCloneIsReset = true;
@@ -195,8 +266,7 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
             ((OptimisticTransactionalContext) tc).getObjectMap().entrySet().stream()
                     .forEach(e -> {
                         if (objectMap.containsKey(e.getKey())) {
-                            objectMap.get(e.getKey())
-                                    .bufferedWrites.addAll(e.getValue().bufferedWrites);
+                            objectMap.get(e.getKey()).merge(e.getValue());
                         } else {
                             objectMap.put(e.getKey(), e.getValue());
                         }
@@ -205,15 +275,20 @@ public class OptimisticTransactionalContext extends AbstractTransactionalContext
     }
 
     /**
-     * Add to the read set
+     * Add to the read set. Reads of annotated accessors with a conflict parameter are
+     * tracked by key, any other read depends on the whole object.
      *
-     * @param proxy     The SMR Object proxy to get an object for writing.
-     * @param SMRMethod
-     * @param result    @return          An object for writing.
+     * @param proxy         The SMR Object proxy which is being read.
+     * @param SMRMethod     The accessor being called.
+     * @param SMRArguments  The arguments to the accessor.
      */
     @Override
-    public <T> void addReadSet(CorfuSMRObjectProxy<T> proxy, String SMRMethod, Object result) {
-
+    @SuppressWarnings("unchecked")
+    public <T> void addReadSet(CorfuSMRObjectProxy<T> proxy, String SMRMethod, Object[] SMRArguments) {
+        Long conflictKey = proxy.getConflictKey(SMRMethod, SMRArguments);
+        objectMap
+                .computeIfAbsent(proxy, x -> new TransactionalObjectData<>(proxy))
+                .addRead(conflictKey);
     }
 
 
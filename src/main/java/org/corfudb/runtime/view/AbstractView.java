@@ -2,7 +2,9 @@ package org.corfudb.runtime.view;
 
 
 import lombok.extern.slf4j.Slf4j;
+import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.clients.OperationDeadline;
 
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
@@ -55,8 +57,9 @@ public abstract class AbstractView {
     }
 
     /** Helper function for view to retrieve layouts.
-     * This function will retry the given function indefinitely, invalidating the view if there was a exception
-     * contacting the endpoint.
+     * This function will retry the given function, invalidating the view if there was a exception
+     * contacting the endpoint. If the runtime has an operation timeout, the function is retried
+     * until the deadline of the operation passes, otherwise it is retried indefinitely.
      * @param function  The function to execute.
      * @param <T>       The return type of the function.
      * @param <A>       Any exception the function may throw.
@@ -69,32 +72,58 @@ public abstract class AbstractView {
     T layoutHelper (LayoutFunction<Layout,T,A,B,C,D> function)
     throws A,B,C,D
     {
-        while(true) {
-            try {
-                return function.apply(runtime.layout.get());
-            }
-            catch (RuntimeException re) {
-                if (re.getCause() instanceof TimeoutException)
-                {
-                    log.warn("Timeout executing remote call, invalidating view and retrying in {}s", runtime.retryRate);
-                    runtime.invalidateLayout();
-                    try {
-                        Thread.sleep(runtime.retryRate * 1000);
-                    } catch (InterruptedException ie) {
+        // Only the outermost call starts an operation, nested calls share its deadline.
+        final boolean startsOperation = OperationDeadline.get() == CorfuMsg.NO_DEADLINE
+                && runtime.getOperationTimeout() != null;
+        if (startsOperation) {
+            OperationDeadline.set(System.currentTimeMillis() + runtime.getOperationTimeout().toMillis());
+        }
+        try {
+            while (true) {
+                try {
+                    return function.apply(runtime.layout.get());
+                }
+                catch (RuntimeException re) {
+                    if (re.getCause() instanceof TimeoutException)
+                    {
+                        log.warn("Timeout executing remote call, invalidating view and retrying in {}s", runtime.retryRate);
+                        runtime.invalidateLayout();
+                        if (!waitToRetry()) {
+                            throw re;
+                        }
+                    }
+                    else {
+                        throw re;
                     }
                 }
-                else {
-                    throw re;
+                catch (InterruptedException | ExecutionException ex) {
+                    log.warn("Error executing remote call, invalidating view and retrying in {}s", runtime.retryRate, ex);
+                    runtime.invalidateLayout();
+                    if (!waitToRetry()) {
+                        throw new RuntimeException("Deadline passed executing remote call", ex);
+                    }
                 }
             }
-            catch (InterruptedException | ExecutionException ex) {
-                log.warn("Error executing remote call, invalidating view and retrying in {}s", runtime.retryRate, ex);
-                runtime.invalidateLayout();
-                try {
-                    Thread.sleep(runtime.retryRate * 1000);
-                } catch (InterruptedException ie) {
-                }
+        } finally {
+            if (startsOperation) {
+                OperationDeadline.set(CorfuMsg.NO_DEADLINE);
             }
         }
     }
+
+    /** Wait for the retry rate of the runtime before retrying, or until the deadline of the
+     * current operation, whichever is sooner.
+     * @return  True, if the operation should be retried, or false if its deadline has passed.
+     */
+    boolean waitToRetry() {
+        long wait = OperationDeadline.remaining(runtime.retryRate * 1000L);
+        if (wait <= 0) {
+            return false;
+        }
+        try {
+            Thread.sleep(wait);
+        } catch (InterruptedException ie) {
+        }
+        return OperationDeadline.remaining(1L) > 0;
+    }
 }
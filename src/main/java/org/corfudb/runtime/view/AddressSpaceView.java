@@ -1,14 +1,11 @@
 package org.corfudb.runtime.view;
 
 import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
-import lombok.Getter;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.corfudb.protocols.logprotocol.LogEntry;
 import org.corfudb.protocols.wireprotocol.ILogUnitEntry;
@@ -16,46 +13,46 @@ import org.corfudb.protocols.wireprotocol.LogUnitReadResponseMsg;
 import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.runtime.clients.LogUnitClient;
 import org.corfudb.runtime.exceptions.OverwriteException;
-import org.corfudb.util.CFUtils;
 import org.corfudb.util.Utils;
 
-import java.time.Duration;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /** A view of the address space implemented by Corfu.
+ *
+ * Each runtime has its own caches, so that runtimes sharing a JVM do not evict each other's entries.
+ * Read results are cached up to a maximum total size, with Caffeine's frequency-aware admission
+ * keeping entries which are read repeatedly over entries which are read once. Empty reads are cached
+ * apart from data for a short time, since an empty address may be a write which is still in progress.
+ * The addresses of streams are cached up to a maximum number of addresses over all streams.
  *
  * Created by mwei on 12/10/15.
  */
 @Slf4j
 public class AddressSpaceView extends AbstractView {
 
+    /** The maximum number of empty reads to cache. */
+    static final int MAX_EMPTY_ENTRIES = 10_000;
+
     /** A cache for read results. */
-    static LoadingCache<Long, ILogUnitEntry> readCache;
+    Cache<Long, ILogUnitEntry> readCache;
 
-    /** A cache for stream addresses. */
-    static LoadingCache<UUID, Set<Long>> streamAddressCache;
+    /** A cache for empty read results, which expire so that the address is read again. */
+    Cache<Long, ILogUnitEntry> emptyCache;
 
-    /** Duration before retrying an empty read. */
-    @Getter
-    @Setter
-    Duration emptyDuration = Duration.ofMillis(5000L);
+    /** A cache for stream addresses. */
+    LoadingCache<UUID, Set<Long>> streamAddressCache;
 
     public AddressSpaceView(CorfuRuntime runtime)
     {
         super(runtime);
-        // We don't lock readCache, this should be ok in the rare
-        // case we generate a second readCache as it won't be pointed to.
-        if (readCache == null) {
-            resetCaches();
-        }
-        else {
-            log.debug("Read cache already built, re-using existing read cache.");
-        }
+        resetCaches();
     }
 
     /** Reset all in-memory caches. */
@@ -64,22 +61,67 @@ public class AddressSpaceView extends AbstractView {
         readCache = Caffeine.<Long, ILogUnitEntry>newBuilder()
                 .<Long, ILogUnitEntry>weigher((k,v) -> v.getSizeEstimate())
                 .maximumWeight(runtime.getMaxCacheSize())
-                .build(new CacheLoader<Long, ILogUnitEntry>() {
-                    @Override
-                    public ILogUnitEntry load(Long aLong) throws Exception {
-                        return cacheFetch(aLong);
-                    }
+                .build();
 
-                    @Override
-                    public Map<Long, ILogUnitEntry> loadAll(Iterable<? extends Long> keys) throws Exception {
-                        return cacheFetch((Iterable<Long>) keys);
-                    }
-                });
+        emptyCache = Caffeine.newBuilder()
+                .maximumSize(MAX_EMPTY_ENTRIES)
+                .expireAfterWrite(runtime.getEmptyEntryCacheDuration().toNanos(), TimeUnit.NANOSECONDS)
+                .build();
 
-        streamAddressCache = Caffeine.newBuilder()
+        streamAddressCache = Caffeine.<UUID, Set<Long>>newBuilder()
+                .<UUID, Set<Long>>weigher((k,v) -> v.size())
+                .maximumWeight(runtime.getMaxStreamAddressCacheSize())
                 .build(this::getStream);
     }
 
+    /** Get a cached read result.
+     *
+     * @param address   The address to look up.
+     * @return          The cached result, or null if the address is not cached.
+     */
+    private ILogUnitEntry getCached(long address)
+    {
+        ILogUnitEntry entry = readCache.getIfPresent(address);
+        return entry == null ? emptyCache.getIfPresent(address) : entry;
+    }
+
+    /** Insert a read result into the cache. Empty results are cached apart from data,
+     * and only if empty results are cached at all.
+     *
+     * @param address   The address which was read.
+     * @param entry     The result of the read.
+     */
+    private void cacheResult(long address, ILogUnitEntry entry)
+    {
+        if (entry.getResultType() != LogUnitReadResponseMsg.ReadResultType.EMPTY) {
+            readCache.put(address, entry);
+        } else if (!runtime.getEmptyEntryCacheDuration().isZero()) {
+            log.trace("Caching empty entry at {}.", address);
+            emptyCache.put(address, entry);
+        }
+    }
+
+    /** Read a set of addresses through the cache.
+     *
+     * @param addresses The addresses to read.
+     * @return          A map of the results.
+     */
+    private Map<Long, ILogUnitEntry> readThroughCache(Set<Long> addresses)
+    {
+        Map<Long, ILogUnitEntry> result = new ConcurrentHashMap<>(readCache.getAllPresent(addresses));
+        result.putAll(emptyCache.getAllPresent(addresses));
+        Set<Long> toRead = new HashSet<>(addresses);
+        toRead.removeAll(result.keySet());
+        if (!toRead.isEmpty()) {
+            cacheFetch(toRead).forEach((address, entry) -> {
+                entry.setRuntime(runtime);
+                cacheResult(address, entry);
+                result.put(address, entry);
+            });
+        }
+        return result;
+    }
+
     /** Learn about a stream for the first time.
      *  This method will dump all learned stream entries into the stream.
      *
@@ -95,7 +137,7 @@ public class AddressSpaceView extends AbstractView {
                                 .getReplicationView(l, s.getReplicationMode(), s);
                         Map<Long, ILogUnitEntry> r = v.read(streamID);
                         if (!runtime.cacheDisabled) {
-                            readCache.putAll(r);
+                            r.forEach(this::cacheResult);
                         }
                         rSet.addAll(r.keySet());
                     }
@@ -118,7 +160,7 @@ public class AddressSpaceView extends AbstractView {
                         .getReplicationView(l, s.getReplicationMode(), s);
                 Map<Long, ILogUnitEntry> r = v.read(streamID);
                 if (!runtime.cacheDisabled) {
-                    readCache.putAll(r);
+                    r.forEach(this::cacheResult);
                 }
                 rMap.putAll(r);
             }
@@ -156,6 +198,7 @@ public class AddressSpaceView extends AbstractView {
         // Insert this write to our local cache.
         if (!runtime.isCacheDisabled()) {
             readCache.put(address, cachedEntry);
+            emptyCache.invalidate(address);
         }
     }
 
@@ -168,7 +211,13 @@ public class AddressSpaceView extends AbstractView {
     public ILogUnitEntry read(long address)
     {
         if (!runtime.isCacheDisabled()) {
-            return readCache.get(address);
+            ILogUnitEntry entry = getCached(address);
+            if (entry == null) {
+                log.trace("Cache miss @ {}, fetching.", address);
+                entry = fetch(address);
+                cacheResult(address, entry);
+            }
+            return entry;
         }
         return fetch(address);
     }
@@ -183,11 +232,41 @@ public class AddressSpaceView extends AbstractView {
     {
 
         if (!runtime.isCacheDisabled()) {
-            return readCache.getAll(Utils.discretizeRangeSet(addresses));
+            return readThroughCache(Utils.discretizeRangeSet(addresses));
         }
         return this.cacheFetch(Utils.discretizeRangeSet(addresses));
     }
 
+    /**
+     * Speculatively read a range of addresses, which may not have been written yet.
+     *
+     * Unlike read, entries which are empty are returned but not inserted into the cache,
+     * so that a write which is still in progress is not observed as a hole by later reads.
+     *
+     * @param addresses An address range to read from.
+     * @return          A map of the results which were read.
+     */
+    public Map<Long, ILogUnitEntry> prefetch(RangeSet<Long> addresses)
+    {
+        Set<Long> toRead = Utils.discretizeRangeSet(addresses);
+        Map<Long, ILogUnitEntry> result = new ConcurrentHashMap<>();
+        if (!runtime.isCacheDisabled()) {
+            result.putAll(readCache.getAllPresent(toRead));
+            toRead.removeAll(result.keySet());
+        }
+        if (!toRead.isEmpty()) {
+            cacheFetch(toRead).forEach((address, entry) -> {
+                entry.setRuntime(runtime);
+                if (!runtime.isCacheDisabled()
+                        && entry.getResultType() != LogUnitReadResponseMsg.ReadResultType.EMPTY) {
+                    readCache.put(address, entry);
+                }
+                result.put(address, entry);
+            });
+        }
+        return result;
+    }
+
     /**
      * Read the given object from a range of addresses.
      *
@@ -198,57 +277,33 @@ public class AddressSpaceView extends AbstractView {
     {
 
         if (!runtime.isCacheDisabled()) {
-            return readCache.getAll(streamAddressCache.get(stream));
+            return readThroughCache(streamAddressCache.get(stream));
         }
         return fetchStream(stream);
     }
 
 
-    /**
-     * Fetch an address for insertion into the cache.
-     * @param address An address to read from.
-     * @return        A result to be cached. If the readresult is empty,
-     *                This entry will be scheduled to self invalidate.
-     */
-    private ILogUnitEntry cacheFetch(long address)
-    {
-        log.trace("Cache miss @ {}, fetching.", address);
-        ILogUnitEntry result = fetch(address);
-        if (result.getResultType() == LogUnitReadResponseMsg.ReadResultType.EMPTY)
-        {
-            //schedule an eviction
-            CompletableFuture.runAsync(() -> {
-                log.trace("Evicting empty entry at {}.", address);
-                CFUtils.runAfter(emptyDuration, () -> {
-                    readCache.invalidate(address);
-                });
-            });
-        }
-        return result;
-    }
-
     /**
      * Fetch an address for insertion into the cache.
      * @param addresses An address to read from.
-     * @return        A result to be cached. If the readresult is empty,
-     *                This entry will be scheduled to self invalidate.
+     * @return        The results to be cached.
      */
     private Map<Long, ILogUnitEntry> cacheFetch(Iterable<Long> addresses)
     {
-        // for each address, figure out which replication group it goes to.
-        Map<AbstractReplicationView, RangeSet<Long>> groupMap = new ConcurrentHashMap<>();
         return layoutHelper(l -> {
+                    // for each address, figure out which segment it goes to, so that each segment is read at once.
+                    Map<Layout.LayoutSegment, RangeSet<Long>> groupMap = new HashMap<>();
                     for (Long a : addresses) {
-                        AbstractReplicationView v = AbstractReplicationView
-                                .getReplicationView(l, l.getReplicationMode(a), l.getSegment(a));
-                        groupMap.computeIfAbsent(v, x -> TreeRangeSet.<Long>create())
-                                .add(Range.singleton(a));
+                        groupMap.computeIfAbsent(l.getSegment(a), x -> TreeRangeSet.<Long>create())
+                                .add(Range.closedOpen(a, a + 1));
                     }
                     Map<Long, ILogUnitEntry> result =
                             new ConcurrentHashMap<Long, ILogUnitEntry>();
-                    for (AbstractReplicationView vk : groupMap.keySet())
+                    for (Map.Entry<Layout.LayoutSegment, RangeSet<Long>> e : groupMap.entrySet())
                     {
-                        result.putAll(vk.read(groupMap.get(vk)));
+                        result.putAll(AbstractReplicationView
+                                .getReplicationView(l, e.getKey().getReplicationMode(), e.getKey())
+                                .read(e.getValue()));
                     }
                     return result;
                 }
@@ -15,9 +15,12 @@ import org.corfudb.util.Utils;
 import org.corfudb.util.serializer.Serializers;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -34,6 +37,12 @@ import java.util.stream.Collectors;
  * every replica in sequence. In general, chain replication is best suited for
  * small chains.
  *
+ * If the runtime enables pipelined writes, the head is written first, and every
+ * other replica is written in parallel as soon as the head has accepted the write.
+ * No replica ever holds a value the head rejected, so the winner at the head wins
+ * at every replica, but a write costs two round trips regardless of the length of
+ * the chain.
+ *
  * Created by mwei on 12/11/15.
  */
 @Slf4j
@@ -63,6 +72,30 @@ public class ChainReplicationView extends AbstractReplicationView {
             Serializers.getSerializer(Serializers.SerializerType.CORFU)
                     .serialize(data, b);
             payloadBytes = b.readableBytes();
+            if (getLayout().getRuntime().isPipelinedChainWrites()) {
+                List<CompletableFuture<Boolean>> results = writeAsync(address, stream, data, backpointerMap);
+                // Wait for every replica, so that failures are reported for each replica.
+                Throwable headFailure = null;
+                Throwable failure = null;
+                for (int i = 0; i < numUnits; i++) {
+                    try {
+                        CFUtils.getUninterruptibly(results.get(i), OverwriteException.class);
+                        log.trace("Write[{}]: chain {}/{} complete", address, i+1, numUnits);
+                    } catch (OverwriteException | RuntimeException e) {
+                        log.debug("Write[{}]: chain {}/{} failed: {}", address, i+1, numUnits, e.toString());
+                        headFailure = i == 0 ? e : headFailure;
+                        failure = failure == null ? e : failure;
+                    }
+                }
+                // A failure at the head takes precedence, since it determines whether the write was accepted.
+                failure = headFailure == null ? failure : headFailure;
+                if (failure instanceof OverwriteException) {
+                    throw (OverwriteException) failure;
+                } else if (failure != null) {
+                    throw (RuntimeException) failure;
+                }
+            }
+            else {
                 for (int i = 0; i < numUnits; i++)
                 {
                     log.trace("Write[{}]: chain {}/{}", address, i+1, numUnits);
@@ -71,10 +104,46 @@ public class ChainReplicationView extends AbstractReplicationView {
                                 getLayout().getLogUnitClient(address, i)
                                         .write(getLayout().getLocalAddress(address), stream, 0L, data, backpointerMap), OverwriteException.class);
                 }
+            }
         }
         return payloadBytes;
     }
 
+    /**
+     * Write the given object to every replica in the chain, pipelining the writes.
+     *
+     * The head is written first, and every other replica is written in parallel once the head
+     * has accepted the write, so no replica ever holds a value which the head rejected. If the
+     * head rejects the write, no other replica is written and their futures complete
+     * exceptionally with the same cause.
+     *
+     * @param address           An address to write to.
+     * @param stream            The streams which will belong on this entry.
+     * @param data              The data to write.
+     * @param backpointerMap    The map of backpointers to write.
+     * @return                  A list of futures, one per replica in chain order, which complete
+     *                          when that replica has completed the write.
+     */
+    public List<CompletableFuture<Boolean>> writeAsync(long address, Set<UUID> stream, Object data,
+                                                       Map<UUID, Long> backpointerMap) {
+        int numUnits = getLayout().getSegmentLength(address);
+        long localAddress = getLayout().getLocalAddress(address);
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(numUnits);
+        log.trace("Write[{}]: chain 1/{} (pipelined)", address, numUnits);
+        CompletableFuture<Boolean> head = getLayout().getLogUnitClient(address, 0)
+                .write(localAddress, stream, 0L, data, backpointerMap);
+        results.add(head);
+        for (int i = 1; i < numUnits; i++) {
+            int unit = i;
+            LogUnitClient replica = getLayout().getLogUnitClient(address, i);
+            results.add(head.thenCompose(accepted -> {
+                log.trace("Write[{}]: chain {}/{} (pipelined, head accepted)", address, unit+1, numUnits);
+                return replica.write(localAddress, stream, 0L, data, backpointerMap);
+            }));
+        }
+        return results;
+    }
+
     /**
      * Read the given object from an address, using the replication method given.
      *
@@ -104,10 +173,10 @@ public class ChainReplicationView extends AbstractReplicationView {
         ConcurrentHashMap<Layout.LayoutStripe, RangeSet<Long>> rangeMap = new ConcurrentHashMap<>();
         ConcurrentHashMap<Layout.LayoutStripe, Long> eMap = new ConcurrentHashMap<>();
         Set<Long> total = Utils.discretizeRangeSet(addresses);
-        total.parallelStream()
-                .forEach(l-> {
+        // Range sets are not thread safe, so they are built sequentially.
+        total.forEach(l-> {
             rangeMap.computeIfAbsent(layout.getStripe(l), k -> TreeRangeSet.create())
-                    .add(Range.singleton(layout.getLocalAddress(l)));
+                    .add(Range.closedOpen(layout.getLocalAddress(l), layout.getLocalAddress(l) + 1));
                     eMap.computeIfAbsent(layout.getStripe(l), k->l);
         });
         ConcurrentHashMap<Long, ILogUnitEntry> resultMap = new ConcurrentHashMap<>();
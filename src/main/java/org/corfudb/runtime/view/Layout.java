@@ -9,17 +9,26 @@ import org.corfudb.runtime.clients.*;
 import org.corfudb.runtime.exceptions.WrongEpochException;
 import org.corfudb.util.CFUtils;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Stream;
 
 /**
  * This class represents the layout of a Corfu instance.
+ *
+ * Addresses are resolved through an index of the segments by start address, which is built
+ * the first time an address is resolved, so that resolution does not scan the segments.
+ *
  * Created by mwei on 12/8/15.
  */
 @Slf4j
-@ToString(exclude="runtime")
+@ToString(exclude={"runtime", "segmentIndex", "stripeIndex"})
 public class Layout implements Cloneable {
     /** A list of layout servers in the layout. */
     @Getter
@@ -124,60 +133,119 @@ public class Layout implements Cloneable {
         }
     }
 
-    public long getLocalAddress(long globalAddress)
+    /** A segment of the layout, with its stripe arithmetic precomputed. */
+    static class IndexedSegment {
+        final LayoutSegment segment;
+        final LayoutStripe[] stripes;
+        /** The log2 of the number of stripes, if it is a power of two, or -1 otherwise. */
+        final int shift;
+
+        IndexedSegment(LayoutSegment segment) {
+            this.segment = segment;
+            this.stripes = segment.getStripes().toArray(new LayoutStripe[0]);
+            this.shift = Long.bitCount(stripes.length) == 1 ? Long.numberOfTrailingZeros(stripes.length) : -1;
+        }
+
+        boolean contains(long globalAddress) {
+            return segment.end > globalAddress || segment.end == -1;
+        }
+
+        long getLocalAddress(long globalAddress) {
+            // TODO: this does not account for shifting segments.
+            return shift >= 0 ? globalAddress >>> shift : globalAddress / stripes.length;
+        }
+
+        LayoutStripe getStripe(long globalAddress) {
+            // TODO: this does not account for shifting segments.
+            return stripes[(int) (shift >= 0 ? globalAddress & (stripes.length - 1) : globalAddress % stripes.length)];
+        }
+    }
+
+    /** The position of a stripe in the layout. */
+    @Data
+    static class StripePosition {
+        final IndexedSegment segment;
+        final int index;
+    }
+
+    /** The segments of the layout, by the address they start at. Built when an address is first
+     * resolved, after which the segments of the layout must not be changed. */
+    transient volatile NavigableMap<Long, IndexedSegment> segmentIndex;
+
+    /** The position of each stripe in the layout. Built together with the segment index. */
+    transient volatile Map<LayoutStripe, StripePosition> stripeIndex;
+
+    /** Get the segment index, building it if this is the first address resolved.
+     *
+     * @return  The segments of the layout, by the address they start at.
+     */
+    NavigableMap<Long, IndexedSegment> getSegmentIndex()
     {
-        for (LayoutSegment ls : segments)
-        {
-            if (ls.start <= globalAddress && (ls.end > globalAddress || ls.end == -1))
-            {
-                // TODO: this does not account for shifting segments.
-                return globalAddress / ls.getNumberOfStripes();
+        NavigableMap<Long, IndexedSegment> index = segmentIndex;
+        if (index == null) {
+            index = new TreeMap<>();
+            Map<LayoutStripe, StripePosition> stripes = new HashMap<>();
+            for (LayoutSegment ls : segments) {
+                IndexedSegment is = new IndexedSegment(ls);
+                // If segments overlap, the first in the list takes precedence.
+                index.putIfAbsent(ls.getStart(), is);
+                for (int i = 0; i < is.stripes.length; i++) {
+                    stripes.putIfAbsent(is.stripes[i], new StripePosition(is, i));
+                }
             }
+            stripeIndex = Collections.unmodifiableMap(stripes);
+            index = Collections.unmodifiableNavigableMap(index);
+            segmentIndex = index;
         }
-        throw new RuntimeException("Unmapped address!");
+        return index;
+    }
+
+    /** Find the segment an address belongs to.
+     *
+     * @param globalAddress     The address to look up.
+     * @return                  The segment, or null if the address is unmapped.
+     */
+    IndexedSegment findSegment(long globalAddress)
+    {
+        Map.Entry<Long, IndexedSegment> e = getSegmentIndex().floorEntry(globalAddress);
+        return e == null || !e.getValue().contains(globalAddress) ? null : e.getValue();
+    }
+
+    public long getLocalAddress(long globalAddress)
+    {
+        IndexedSegment is = findSegment(globalAddress);
+        if (is == null) {
+            throw new RuntimeException("Unmapped address!");
+        }
+        return is.getLocalAddress(globalAddress);
     }
 
     public long getGlobalAddress(LayoutStripe stripe, long localAddress)
     {
-        for (LayoutSegment ls : segments)
-        {
-            if (ls.getStripes().contains(stripe))
-            {
-                for (int i = 0; i < ls.getNumberOfStripes(); i++)
-                {
-                    if (ls.getStripes().get(i).equals(stripe))
-                    {
-                        return (localAddress * ls.getNumberOfStripes()) + i;
-                    }
-                }
-            }
+        getSegmentIndex();
+        StripePosition position = stripeIndex.get(stripe);
+        if (position == null) {
+            throw new RuntimeException("Unmapped address!");
         }
-        throw new RuntimeException("Unmapped address!");
+        return (localAddress * position.getSegment().stripes.length) + position.getIndex();
     }
 
     public LayoutStripe getStripe(long globalAddress)
     {
-        for (LayoutSegment ls : segments)
-        {
-            if (ls.start <= globalAddress && (ls.end > globalAddress || ls.end == -1))
-            {
-                // TODO: this does not account for shifting segments.
-                return ls.getStripes().get((int)(globalAddress % ls.getNumberOfStripes()));
-            }
+        IndexedSegment is = findSegment(globalAddress);
+        if (is == null) {
+            throw new RuntimeException("Unmapped address!");
         }
-        throw new RuntimeException("Unmapped address!");
+        return is.getStripe(globalAddress);
     }
 
     public LayoutSegment getSegment(long globalAddress)
     {
-        for (LayoutSegment ls : segments)
-        {
-            if (ls.start <= globalAddress && (ls.end > globalAddress || ls.end == -1))
-            {
-                return ls;
-            }
+        IndexedSegment is = findSegment(globalAddress);
+        if (is == null) {
+            throw new RuntimeException("Unmapped address " + Long.toString(globalAddress) + "!");
         }
-        throw new RuntimeException("Unmapped address " + Long.toString(globalAddress) + "!");
+        return is.segment;
     }
 
     /** Get the length of a segment at a particular address.
@@ -197,14 +265,8 @@ public class Layout implements Cloneable {
      */
     public ReplicationMode getReplicationMode(long address)
     {
-        for (LayoutSegment ls : segments)
-        {
-            if (ls.start <= address && (ls.end > address || ls.end == -1))
-            {
-                return ls.getReplicationMode();
-            }
-        }
-        return null;
+        IndexedSegment is = findSegment(address);
+        return is == null ? null : is.segment.getReplicationMode();
     }
 
     /** Get a log unit client at a given index of a particular address.
@@ -5,5 +5,6 @@ package org.corfudb.runtime.view;
  */
 public enum ObjectOpenOptions {
     NO_CACHE,
-    CREATE_ONLY
+    CREATE_ONLY,
+    RESTORE_CHECKPOINT
 }
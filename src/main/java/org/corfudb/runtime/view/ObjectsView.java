@@ -137,6 +137,43 @@ public class ObjectsView extends AbstractView {
         return copy(obj, CorfuRuntime.getStreamID(destination));
     }
 
+    /** Writes a checkpoint of an object, so that opening the object later with
+     * RESTORE_CHECKPOINT only replays the entries after the checkpoint. The state is serialized
+     * with the Java serializer.
+     *
+     * @param obj           The object to checkpoint.
+     * @param <T>           The type of the object being checkpointed.
+     * @return              The address the checkpoint was written at, or -1L if
+     *                      there was nothing to checkpoint.
+     */
+    public <T> long checkpoint(@NonNull T obj) {
+        return checkpoint(obj, Serializers.SerializerType.JAVA);
+    }
+
+    /** Writes a checkpoint of an object, so that opening the object later with
+     * RESTORE_CHECKPOINT only replays the entries after the checkpoint.
+     *
+     * @param obj           The object to checkpoint.
+     * @param serializer    The serializer to serialize the object state with.
+     * @param <T>           The type of the object being checkpointed.
+     * @return              The address the checkpoint was written at, or -1L if
+     *                      there was nothing to checkpoint.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> long checkpoint(@NonNull T obj, @NonNull Serializers.SerializerType serializer) {
+        if (!(obj instanceof ICorfuObject) || !(((ICorfuObject) obj).getProxy() instanceof CorfuSMRObjectProxy)) {
+            throw new UnsupportedOperationException("Only SMR objects can be checkpointed.");
+        }
+        CorfuSMRObjectProxy<T> proxy = (CorfuSMRObjectProxy<T>) ((ICorfuObject) obj).getProxy();
+        try {
+            return proxy.checkpoint(obj, serializer);
+        } catch (RuntimeException re) {
+            throw re;
+        } catch (Exception e) {
+            throw new RuntimeException("Unexpected exception checkpointing object", e);
+        }
+    }
+
     /** Begins a transaction on the current thread.
      *  Automatically selects the correct transaction strategy.
      *  Modifications to objects will not be visible
@@ -241,7 +278,18 @@ public class ObjectsView extends AbstractView {
                 TransactionalContext.getCurrentContext().addTransaction(context);
             } else {
                 TXEntry entry = ((OptimisticTransactionalContext)context).getEntry();
-                long address = runtime.getStreamsView().write(entry.getAffectedStreams(), entry);
+                long address;
+                if (runtime.isSequencerTxResolution()) {
+                    // The sequencer decides whether the transaction commits, and the decision
+                    // is recorded in the entry before it is written.
+                    address = runtime.getStreamsView().acquireAndWrite(entry.getAffectedStreams(), entry,
+                            entry.getTxResolutionInfo(), t -> {
+                                entry.setResolution(t.getTxResolution());
+                                return true;
+                            }, t -> true);
+                } else {
+                    address = runtime.getStreamsView().write(entry.getAffectedStreams(), entry);
+                }
                 TransactionalContext.removeContext();
                 log.trace("TX entry {} written at address {}", entry, address);
                 //now check if the TX will be an abort...
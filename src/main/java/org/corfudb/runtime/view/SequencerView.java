@@ -1,5 +1,6 @@
 package org.corfudb.runtime.view;
 
+import org.corfudb.protocols.wireprotocol.TxResolutionInfo;
 import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.runtime.clients.SequencerClient;
 import org.corfudb.util.CFUtils;
@@ -26,4 +27,17 @@ public class SequencerView extends AbstractView {
     public SequencerClient.TokenResponse nextToken(Set<UUID> streamIDs, int numTokens) {
         return layoutHelper(l -> CFUtils.getUninterruptibly(l.getSequencer(0).nextToken(streamIDs, numTokens)));
     }
+
+    /** Return the next token for a transaction, along with the sequencer's decision on whether it commits.
+     *
+     * @param streamIDs      The stream IDs the transaction writes to.
+     * @param numTokens      The number of tokens to reserve.
+     * @param txResolution   The reads and writes of the transaction.
+     * @return               The first token retrieved.
+     */
+    public SequencerClient.TokenResponse nextToken(Set<UUID> streamIDs, int numTokens,
+                                                   TxResolutionInfo txResolution) {
+        return layoutHelper(l -> CFUtils.getUninterruptibly(
+                l.getSequencer(0).nextToken(streamIDs, numTokens, txResolution)));
+    }
 }
@@ -1,5 +1,7 @@
 package org.corfudb.runtime.view;
 
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
 import lombok.Getter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
@@ -25,6 +27,9 @@ import java.util.function.Function;
 @Slf4j
 public class StreamView implements AutoCloseable {
 
+    /** The maximum number of addresses to prefetch in a single batch when resolving backpointers. */
+    static final long MAX_PREFETCH_WINDOW = 1024L;
+
     CorfuRuntime runtime;
 
     /** The ID of the stream. */
@@ -155,6 +160,52 @@ public class StreamView implements AutoCloseable {
         return runtime.getSequencerView().nextToken(Collections.singleton(streamID), 0).getToken();
     }
 
+    /** Reads the entries along a chain of backpointers in batches.
+     *
+     * When a hop is not covered by a previous batch, the window of addresses at and
+     * below it is read with a single range read, since the next backpointers are likely
+     * to be in the window. Each miss doubles the window, up to MAX_PREFETCH_WINDOW, so
+     * that sparse streams need only a few batches to reach the read pointer.
+     */
+    class BackpointerPrefetcher {
+
+        /** The lowest address which will be prefetched. */
+        final long floor;
+
+        /** The entries which have been prefetched. */
+        final Map<Long, ILogUnitEntry> prefetched = new HashMap<>();
+
+        /** The number of addresses to prefetch on the next miss. */
+        long window;
+
+        BackpointerPrefetcher(long floor) {
+            this.floor = Math.max(floor, 0L);
+            this.window = runtime.getBackpointerPrefetchSize();
+        }
+
+        /** Read the entry at the given address, prefetching the addresses below it on a miss.
+         *
+         * @param address   The address to read.
+         * @return          The entry at the address.
+         */
+        ILogUnitEntry read(long address) {
+            ILogUnitEntry r = prefetched.get(address);
+            if (r != null) {
+                return r;
+            }
+            if (window <= 1 || address <= floor) {
+                return runtime.getAddressSpaceView().read(address);
+            }
+            long start = Math.max(floor, address - window + 1);
+            log.trace("Prefetching backpointers from {} to {}", start, address);
+            prefetched.putAll(runtime.getAddressSpaceView()
+                    .prefetch(ImmutableRangeSet.of(Range.closed(start, address))));
+            window = Math.min(window * 2, MAX_PREFETCH_WINDOW);
+            r = prefetched.get(address);
+            return r == null ? runtime.getAddressSpaceView().read(address) : r;
+        }
+    }
+
     /** Resolve a list of entries, using backpointers, to read.
      *
      * @param read  The current address we are reading from.
@@ -172,7 +223,8 @@ public class StreamView implements AutoCloseable {
         boolean hitBeforeRead = false;
         if (!runtime.backpointersDisabled) {
             resolvedBackpointers.add(latestToken);
-            ILogUnitEntry r = runtime.getAddressSpaceView().read(latestToken);
+            BackpointerPrefetcher prefetcher = new BackpointerPrefetcher(read);
+            ILogUnitEntry r = prefetcher.read(latestToken);
             long backPointer = latestToken;
             while (r.getResultType() != LogUnitReadResponseMsg.ReadResultType.EMPTY
                     && r.getBackpointerMap().containsKey(streamID)) {
@@ -200,7 +252,7 @@ public class StreamView implements AutoCloseable {
 
                 // following backpointers...
                 log.trace("Following backpointer to {}", backPointer);
-                r = runtime.getAddressSpaceView().read(backPointer);
+                r = prefetcher.read(backPointer);
             }
         }
         else {
@@ -302,6 +354,16 @@ public class StreamView implements AutoCloseable {
         }
     }
 
+    /** Move the pointer of the current context forward to the given address,
+     * so that entries before it are not read.
+     *
+     * @param pos   The address to read from next.
+     */
+    public synchronized void seek(long pos) {
+        getCurrentContext().currentBackpointerList.headSet(pos).clear();
+        getCurrentContext().logPointer.set(pos);
+    }
+
     public synchronized ILogUnitEntry[] readTo(long pos) {
         long latestToken = pos;
         boolean max = false;
@@ -2,6 +2,7 @@ package org.corfudb.runtime.view;
 
 import lombok.extern.slf4j.Slf4j;
 import org.corfudb.protocols.logprotocol.StreamCOWEntry;
+import org.corfudb.protocols.wireprotocol.TxResolutionInfo;
 import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.runtime.clients.SequencerClient;
 import org.corfudb.runtime.exceptions.OverwriteException;
@@ -95,10 +96,27 @@ public class StreamsView {
     public long acquireAndWrite(Set<UUID> streamIDs, Object object,
                                 Function<SequencerClient.TokenResponse, Boolean> acquisitionCallback,
                                 Function<SequencerClient.TokenResponse, Boolean> deacquisitionCallback)
+    {
+        return acquireAndWrite(streamIDs, object, null, acquisitionCallback, deacquisitionCallback);
+    }
+
+    /** Write an object to multiple streams, retuning the physical address it
+     * was written at. If the reads and writes of a transaction are given, the
+     * sequencer decides whether the transaction commits when it issues the token,
+     * and the acquisition callback receives the decision with the token.
+     *
+     * @param object        The object to write to the stream.
+     * @param txResolution  The reads and writes of the transaction being written, or null.
+     * @return              The address this
+     */
+    public long acquireAndWrite(Set<UUID> streamIDs, Object object, TxResolutionInfo txResolution,
+                                Function<SequencerClient.TokenResponse, Boolean> acquisitionCallback,
+                                Function<SequencerClient.TokenResponse, Boolean> deacquisitionCallback)
     {
         while (true) {
-            SequencerClient.TokenResponse token =
-                    runtime.getSequencerView().nextToken(streamIDs, 1);
+            SequencerClient.TokenResponse token = txResolution == null
+                    ? runtime.getSequencerView().nextToken(streamIDs, 1)
+                    : runtime.getSequencerView().nextToken(streamIDs, 1, txResolution);
             log.trace("Write: acquired token = {}", token.getToken());
             if (acquisitionCallback != null) {
                 if (!acquisitionCallback.apply(token)) {
@@ -121,6 +139,12 @@ public class StreamsView {
                     log.trace("Acquisition rejected overwrite at {}, not retrying.", token);
                     return -1L;}
                 log.debug("Overwrite occurred at {}, retrying.", token);
+                if (txResolution != null) {
+                    // The sequencer recorded the transaction's writes at the failed token, so it must
+                    // not mistake them for conflicts when it decides the transaction again.
+                    txResolution = new TxResolutionInfo(txResolution.getReadTimestamp(),
+                            txResolution.getReadSet(), txResolution.getWriteSet(), token.getToken());
+                }
             }
         }
     }
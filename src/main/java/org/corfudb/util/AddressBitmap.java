@@ -0,0 +1,188 @@
+package org.corfudb.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A compressed, concurrent set of log addresses.
+ *
+ * Addresses are split into containers keyed by their high bits, each of which holds the low 16 bits of up to
+ * 65,536 addresses. A container starts as a sorted array of the low bits (2 bytes per address), is converted to a
+ * bitmap (8KB) once it holds more than 4,096 addresses, and drops its bitmap entirely once every address in it has
+ * been set. A densely written log therefore costs a few bytes per 65,536 addresses, and a sparse one 2 bytes per
+ * address, instead of a boxed Long and a map entry per address.
+ *
+ * Containers are kept in address order, so the first address which is not set can be found by scanning words
+ * rather than sorting addresses. Each container is locked independently, so writers to different parts of the
+ * log do not contend.
+ */
+public class AddressBitmap {
+
+    /** The number of addresses in a container. */
+    static final int CONTAINER_SIZE = 1 << 16;
+
+    /** The maximum number of addresses held in an array container, after which it is converted to a bitmap. */
+    static final int ARRAY_MAX = 4096;
+
+    /** The containers, keyed by the high bits of the addresses they hold. */
+    final Map<Long, Container> containers = new ConcurrentSkipListMap<>();
+
+    static class Container {
+        /** The number of addresses set in this container. */
+        int cardinality;
+
+        /** The sorted low bits of the addresses set, while this container is an array. */
+        char[] values = new char[4];
+
+        /** The bitmap of addresses set, once this container is a bitmap. Once full, both are null. */
+        long[] words;
+
+        synchronized boolean add(int low)
+        {
+            if (cardinality == CONTAINER_SIZE) {
+                return false;
+            }
+            if (words != null) {
+                long bit = 1L << low;
+                if ((words[low >>> 6] & bit) != 0) {
+                    return false;
+                }
+                words[low >>> 6] |= bit;
+                if (++cardinality == CONTAINER_SIZE) {
+                    words = null;
+                }
+                return true;
+            }
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (i >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_MAX) {
+                words = new long[CONTAINER_SIZE / 64];
+                for (int j = 0; j < cardinality; j++) {
+                    words[values[j] >>> 6] |= 1L << values[j];
+                }
+                values = null;
+                words[low >>> 6] |= 1L << low;
+                cardinality++;
+                return true;
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(values.length * 2, ARRAY_MAX));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = (char) low;
+            cardinality++;
+            return true;
+        }
+
+        synchronized boolean contains(int low)
+        {
+            if (cardinality == CONTAINER_SIZE) {
+                return true;
+            }
+            if (words != null) {
+                return (words[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, (char) low) >= 0;
+        }
+
+        /** Find the first low bits, starting from the given low bits, which are not set.
+         *
+         * @param low   The low bits to start from.
+         * @return      The first low bits which are not set, or -1 if every address from low is set.
+         */
+        synchronized int nextClear(int low)
+        {
+            if (cardinality == CONTAINER_SIZE) {
+                return -1;
+            }
+            if (words != null) {
+                int w = low >>> 6;
+                long word = ~words[w] & (-1L << low);
+                while (word == 0) {
+                    if (++w == words.length) {
+                        return -1;
+                    }
+                    word = ~words[w];
+                }
+                return w * 64 + Long.numberOfTrailingZeros(word);
+            }
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (i < 0) {
+                return low;
+            }
+            while (i + 1 < cardinality && values[i + 1] == values[i] + 1) {
+                i++;
+            }
+            int next = values[i] + 1;
+            return next == CONTAINER_SIZE ? -1 : next;
+        }
+
+        synchronized int getCardinality()
+        {
+            return cardinality;
+        }
+    }
+
+    /** Add an address to the set.
+     *
+     * @param address   The address to add, which must not be negative.
+     * @return          True, if the address was not already in the set.
+     */
+    public boolean add(long address)
+    {
+        return containers.computeIfAbsent(address >>> 16, k -> new Container())
+                .add((int) (address & (CONTAINER_SIZE - 1)));
+    }
+
+    /** Check whether an address is in the set.
+     *
+     * @param address   The address to check.
+     * @return          True, if the address is in the set.
+     */
+    public boolean contains(long address)
+    {
+        Container c = containers.get(address >>> 16);
+        return c != null && c.contains((int) (address & (CONTAINER_SIZE - 1)));
+    }
+
+    /** Find the first address, starting from the given address, which is not in the set.
+     *
+     * @param address   The address to start from, which must not be negative.
+     * @return          The first address not in the set.
+     */
+    public long nextClearAddress(long address)
+    {
+        while (true) {
+            Container c = containers.get(address >>> 16);
+            if (c == null) {
+                return address;
+            }
+            int low = c.nextClear((int) (address & (CONTAINER_SIZE - 1)));
+            if (low != -1) {
+                return (address & ~(long) (CONTAINER_SIZE - 1)) | low;
+            }
+            address = ((address >>> 16) + 1) << 16;
+        }
+    }
+
+    /** Get the number of addresses in the set.
+     *
+     * @return  The number of addresses in the set.
+     */
+    public long getCardinality()
+    {
+        return containers.values().stream()
+                .mapToLong(Container::getCardinality)
+                .sum();
+    }
+
+    /** Remove every address from the set. */
+    public void clear()
+    {
+        containers.clear();
+    }
+}
@@ -2,17 +2,26 @@ package org.corfudb.infrastructure;
 
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
 import com.google.common.io.Files;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import org.corfudb.protocols.wireprotocol.CorfuMsg;
+import org.corfudb.protocols.wireprotocol.CorfuRangeMsg;
 import org.corfudb.protocols.wireprotocol.LayoutRankMsg;
+import org.corfudb.protocols.wireprotocol.LogUnitReadRangeResponseMsg;
 import org.corfudb.protocols.wireprotocol.LogUnitReadResponseMsg;
 import org.corfudb.protocols.wireprotocol.LogUnitWriteMsg;
 import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.runtime.view.Layout;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
 import java.util.Collections;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -128,6 +137,129 @@ public class LogUnitServerTest extends AbstractServerTest {
                 .matchesDataAtAddress(10000000, "10000000".getBytes());
     }
 
+    @Test
+    public void checkThatOffsetIndexIsRebuilt()
+            throws Exception
+    {
+        String serviceDir = getTempDir();
+
+        LogUnitServer s1 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", serviceDir)
+                .put("--memory", false)
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .build());
+
+        this.router.setServerUnderTest(s1);
+        for (long i = 0; i < 3; i++) {
+            LogUnitWriteMsg m = new LogUnitWriteMsg(i);
+            m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+            m.setRank(0L);
+            m.setBackpointerMap(Collections.emptyMap());
+            m.setPayload(Long.toString(i).getBytes());
+            sendMessage(m);
+        }
+        s1.shutdown();
+
+        // Tear the last record of the index, the remaining entries must be recovered from the log.
+        File index = new File(serviceDir + File.separator + "log0.index");
+        assertThat(index.length())
+                .isEqualTo(3 * FileLogUnitStorage.INDEX_RECORD_SIZE);
+        try (RandomAccessFile raf = new RandomAccessFile(index, "rw")) {
+            raf.setLength(index.length() - FileLogUnitStorage.INDEX_RECORD_SIZE / 2);
+        }
+
+        LogUnitServer s2 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", serviceDir)
+                .put("--memory", false)
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .build());
+        this.router.setServerUnderTest(s2);
+
+        assertThat(s2)
+                .matchesDataAtAddress(0, "0".getBytes())
+                .matchesDataAtAddress(1, "1".getBytes())
+                .matchesDataAtAddress(2, "2".getBytes())
+                .isEmptyAtAddress(3);
+
+        // A write after recovery must be appended after the existing entries.
+        LogUnitWriteMsg m = new LogUnitWriteMsg(3L);
+        m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+        m.setRank(0L);
+        m.setBackpointerMap(Collections.emptyMap());
+        m.setPayload("3".getBytes());
+        sendMessage(m);
+        s2.shutdown();
+
+        // Remove the index entirely, it must be rebuilt from the log.
+        assertThat(index.delete())
+                .isTrue();
+
+        LogUnitServer s3 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", serviceDir)
+                .put("--memory", false)
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .build());
+        this.router.setServerUnderTest(s3);
+
+        assertThat(s3)
+                .matchesDataAtAddress(0, "0".getBytes())
+                .matchesDataAtAddress(1, "1".getBytes())
+                .matchesDataAtAddress(2, "2".getBytes())
+                .matchesDataAtAddress(3, "3".getBytes());
+        assertThat(index.length())
+                .isEqualTo(4 * FileLogUnitStorage.INDEX_RECORD_SIZE);
+        s3.shutdown();
+    }
+
+    @Test
+    public void checkThatSyncWritesAreAcknowledgedAfterGroupCommit()
+            throws Exception
+    {
+        LogUnitServer s1 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", getTempDir())
+                .put("--memory", false)
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .put("--group-commit-size", 2)
+                .put("--group-commit-linger", 60_000_000L)
+                .build());
+
+        this.router.setServerUnderTest(s1);
+        LogUnitWriteMsg m = new LogUnitWriteMsg(0L);
+        m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+        m.setRank(0L);
+        m.setBackpointerMap(Collections.emptyMap());
+        m.setPayload("0".getBytes());
+        sendMessage(m);
+
+        // The batch is not full and the linger time has not expired, so the write is not acknowledged.
+        assertThat(getResponseMessages())
+                .isEmpty();
+
+        m = new LogUnitWriteMsg(1L);
+        m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+        m.setRank(0L);
+        m.setBackpointerMap(Collections.emptyMap());
+        m.setPayload("1".getBytes());
+        sendMessage(m);
+
+        // The batch is full, so both writes are forced and acknowledged together.
+        for (int i = 0; i < 100 && getResponseMessages().size() < 2; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(getResponseMessages())
+                .extracting(CorfuMsg::getMsgType)
+                .containsExactly(CorfuMsg.CorfuMsgType.ERROR_OK, CorfuMsg.CorfuMsgType.ERROR_OK);
+        s1.shutdown();
+    }
+
     @Test
     public void checkThatContiguousStreamIsCorrectlyCalculated()
             throws Exception
@@ -188,6 +320,49 @@ public class LogUnitServerTest extends AbstractServerTest {
         s1.shutdown();
     }
 
+    @Test
+    public void overwritesDoNotReplaceStreamsOfWrittenEntries()
+            throws Exception
+    {
+        LogUnitServer s1 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--memory", true)
+                .put("--single", false)
+                .put("--max-cache", 1000000)
+                .build());
+
+        this.router.setServerUnderTest(s1);
+        LogUnitWriteMsg m = new LogUnitWriteMsg(1L);
+        m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+        m.setRank(0L);
+        m.setBackpointerMap(Collections.emptyMap());
+        m.setPayload("1".getBytes());
+        sendMessage(m);
+        // Once evicted from the cache, the overwrite is only rejected by the storage engine.
+        s1.getDataCache().invalidateAll();
+        m = new LogUnitWriteMsg(1L);
+        m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("b")));
+        m.setRank(0L);
+        m.setBackpointerMap(Collections.emptyMap());
+        m.setPayload("overwrite".getBytes());
+        sendMessage(m);
+        assertThat(getLastMessage().getMsgType())
+                .isEqualTo(CorfuMsg.CorfuMsgType.ERROR_OVERWRITE);
+
+        m = new LogUnitWriteMsg(0L);
+        m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+        m.setRank(0L);
+        m.setBackpointerMap(Collections.emptyMap());
+        m.setPayload("0".getBytes());
+        sendMessage(m);
+        s1.compactTail();
+
+        assertThat(s1)
+                .hasContiguousStreamEntryAt(CorfuRuntime.getStreamID("a"), 1L);
+        assertThat(s1)
+                .doestNotHaveContiguousStreamEntryAt(CorfuRuntime.getStreamID("b"), 1L);
+        s1.shutdown();
+    }
+
     @Test
     public void checkThatContiguousTailIsCorrectlyCalculated()
             throws Exception
@@ -232,5 +407,423 @@ public class LogUnitServerTest extends AbstractServerTest {
 
         s1.shutdown();
     }
-}
 
+    @Test
+    public void rangeReadsAreBounded()
+            throws Exception
+    {
+        LogUnitServer s1 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--memory", true)
+                .put("--single", false)
+                .put("--max-cache", 1000000)
+                .put("--max-range-read", 4)
+                .build());
+
+        this.router.setServerUnderTest(s1);
+        for (long address = 0; address < 10; address++) {
+            LogUnitWriteMsg m = new LogUnitWriteMsg(address);
+            m.setStreams(Collections.emptySet());
+            m.setRank(0L);
+            m.setBackpointerMap(Collections.emptyMap());
+            m.setPayload(Long.toString(address).getBytes());
+            sendMessage(m);
+        }
+
+        RangeSet<Long> ranges = TreeRangeSet.create();
+        ranges.add(Range.closed(2L, 3L));
+        ranges.add(Range.closed(6L, 20L));
+        sendMessage(new CorfuRangeMsg(CorfuMsg.CorfuMsgType.READ_RANGE, ranges));
+        LogUnitReadRangeResponseMsg response = getLastMessageAs(LogUnitReadRangeResponseMsg.class);
+        assertThat(response.getResponseMap())
+                .containsOnlyKeys(2L, 3L, 6L, 7L);
+        assertThat(response.getResumeAddress())
+                .isEqualTo(8L);
+
+        // A range which fits in a single response is answered completely.
+        ranges = TreeRangeSet.create();
+        ranges.add(Range.closed(8L, 11L));
+        sendMessage(new CorfuRangeMsg(CorfuMsg.CorfuMsgType.READ_RANGE, ranges));
+        response = getLastMessageAs(LogUnitReadRangeResponseMsg.class);
+        assertThat(response.getResponseMap())
+                .containsOnlyKeys(8L, 9L);
+        assertThat(response.getResumeAddress())
+                .isEqualTo(-1L);
+    }
+
+    @Test
+    public void idleLogFilesAreClosedAndReopened()
+            throws Exception
+    {
+        String serviceDir = getTempDir();
+        LogUnitServer s1 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", serviceDir)
+                .put("--memory", false)
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .put("--max-open-segments", 1)
+                .build());
+
+        this.router.setServerUnderTest(s1);
+        for (long address : new long[] {0L, 10000L, 20000L}) {
+            LogUnitWriteMsg m = new LogUnitWriteMsg(address);
+            m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+            m.setRank(0L);
+            m.setBackpointerMap(Collections.emptyMap());
+            m.setPayload(Long.toString(address).getBytes());
+            sendMessage(m);
+        }
+        // Wait for the group commit to release the files.
+        for (int i = 0; i < 100 && getResponseMessages().size() < 3; i++) {
+            Thread.sleep(50);
+        }
+        s1.getDataCache().invalidateAll();
+
+        assertThat(s1)
+                .matchesDataAtAddress(0, "0".getBytes())
+                .matchesDataAtAddress(10000, "10000".getBytes())
+                .matchesDataAtAddress(20000, "20000".getBytes());
+        assertThat(((FileLogUnitStorage) s1.getStorage()).channelMap.size())
+                .isEqualTo(1);
+        // Files are no longer mapped, so they only grow with the entries written to them.
+        assertThat(new File(serviceDir + File.separator + "log0").length())
+                .isLessThan(4096L);
+        s1.shutdown();
+    }
+
+    @Test
+    public void corruptedEntriesAreDetectedOnRecovery()
+            throws Exception
+    {
+        String serviceDir = getTempDir();
+
+        LogUnitServer s1 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", serviceDir)
+                .put("--memory", false)
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .build());
+
+        this.router.setServerUnderTest(s1);
+        for (long i = 0; i < 3; i++) {
+            LogUnitWriteMsg m = new LogUnitWriteMsg(i);
+            m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+            m.setRank(0L);
+            m.setBackpointerMap(Collections.emptyMap());
+            m.setPayload(Long.toString(i).getBytes());
+            sendMessage(m);
+        }
+        s1.shutdown();
+
+        // Corrupt the data of the second entry, and leave a partial entry at the end of the log.
+        File log = new File(serviceDir + File.separator + "log0");
+        long length = log.length();
+        try (RandomAccessFile index = new RandomAccessFile(serviceDir + File.separator + "log0.index", "r");
+             RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+            index.seek(FileLogUnitStorage.INDEX_RECORD_SIZE + 8);
+            int offset = index.readInt();
+            raf.seek(offset + 12);
+            int size = raf.readInt();
+            raf.seek(offset + size - 5);
+            int b = raf.read();
+            raf.seek(offset + size - 5);
+            raf.write(b ^ 0xFF);
+            raf.seek(length);
+            raf.write(new byte[] {0x4C, 0x45, 0, 1, 0, 0});
+        }
+
+        LogUnitServer s2 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", serviceDir)
+                .put("--memory", false)
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .build());
+        this.router.setServerUnderTest(s2);
+
+        assertThat(s2)
+                .matchesDataAtAddress(0, "0".getBytes())
+                .isEmptyAtAddress(1)
+                .matchesDataAtAddress(2, "2".getBytes());
+        // The partial entry is truncated, so the next write is appended right after the last entry.
+        assertThat(log.length())
+                .isEqualTo(length);
+
+        LogUnitWriteMsg m = new LogUnitWriteMsg(3L);
+        m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+        m.setRank(0L);
+        m.setBackpointerMap(Collections.emptyMap());
+        m.setPayload("3".getBytes());
+        sendMessage(m);
+        s2.getDataCache().invalidateAll();
+
+        assertThat(s2)
+                .matchesDataAtAddress(3, "3".getBytes());
+        s2.shutdown();
+    }
+
+    @Test
+    public void damagedRegionsDoNotLoseLaterEntriesOnRecovery()
+            throws Exception
+    {
+        String serviceDir = getTempDir();
+        ImmutableMap<String, Object> opts = new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", serviceDir)
+                .put("--memory", false)
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .build();
+
+        LogUnitServer s1 = new LogUnitServer(opts);
+        this.router.setServerUnderTest(s1);
+        for (long i = 0; i < 6; i++) {
+            LogUnitWriteMsg m = new LogUnitWriteMsg(i);
+            m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+            m.setRank(0L);
+            m.setBackpointerMap(Collections.emptyMap());
+            m.setPayload(Long.toString(i).getBytes());
+            sendMessage(m);
+        }
+        s1.shutdown();
+
+        // Zero the index record of the second entry and the whole of the fourth entry, as if the
+        // server crashed before the file was closed.
+        File log = new File(serviceDir + File.separator + "log0");
+        long length = log.length();
+        new File(serviceDir + File.separator + "log0.summary").delete();
+        try (RandomAccessFile index = new RandomAccessFile(serviceDir + File.separator + "log0.index", "rw");
+             RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+            index.seek(FileLogUnitStorage.INDEX_RECORD_SIZE);
+            index.write(new byte[FileLogUnitStorage.INDEX_RECORD_SIZE]);
+            index.seek(FileLogUnitStorage.INDEX_RECORD_SIZE * 3 + 8);
+            int offset = index.readInt();
+            raf.seek(offset + 12);
+            int size = raf.readInt();
+            raf.seek(offset);
+            raf.write(new byte[size]);
+        }
+
+        LogUnitServer s2 = new LogUnitServer(opts);
+        this.router.setServerUnderTest(s2);
+
+        assertThat(s2)
+                .matchesDataAtAddress(0, "0".getBytes())
+                .matchesDataAtAddress(1, "1".getBytes())
+                .matchesDataAtAddress(2, "2".getBytes())
+                .isEmptyAtAddress(3)
+                .matchesDataAtAddress(4, "4".getBytes())
+                .matchesDataAtAddress(5, "5".getBytes());
+        // The entries after the damaged region are kept, so the log is not truncated.
+        assertThat(log.length())
+                .isEqualTo(length);
+
+        LogUnitWriteMsg m = new LogUnitWriteMsg(6L);
+        m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+        m.setRank(0L);
+        m.setBackpointerMap(Collections.emptyMap());
+        m.setPayload("6".getBytes());
+        sendMessage(m);
+        s2.shutdown();
+
+        // The invalid index record is left in place, and the file is still trusted once closed cleanly.
+        LogUnitServer s3 = new LogUnitServer(opts);
+        this.router.setServerUnderTest(s3);
+        assertThat(s3)
+                .matchesDataAtAddress(1, "1".getBytes())
+                .isEmptyAtAddress(3)
+                .matchesDataAtAddress(5, "5".getBytes())
+                .matchesDataAtAddress(6, "6".getBytes());
+        s3.shutdown();
+    }
+
+    @Test
+    public void contiguousTailIsRecoveredFromLogFiles()
+            throws Exception
+    {
+        String serviceDir = getTempDir();
+        ImmutableMap<String, Object> opts = new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", serviceDir)
+                .put("--memory", false)
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .put("--recovery-threads", 2)
+                .build();
+
+        LogUnitServer s1 = new LogUnitServer(opts);
+        this.router.setServerUnderTest(s1);
+        for (long address : new long[] {0L, 1L, 2L, 10000L}) {
+            LogUnitWriteMsg m = new LogUnitWriteMsg(address);
+            m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+            m.setRank(0L);
+            m.setBackpointerMap(Collections.emptyMap());
+            m.setPayload(Long.toString(address).getBytes());
+            sendMessage(m);
+        }
+        s1.shutdown();
+
+        // Both files were closed cleanly, so they are recovered from their summaries without being opened.
+        LogUnitServer s2 = new LogUnitServer(opts);
+        this.router.setServerUnderTest(s2);
+        assertThat(s2.getContiguousTail())
+                .isEqualTo(2L);
+        assertThat(((FileLogUnitStorage) s2.getStorage()).channelMap)
+                .isEmpty();
+
+        LogUnitWriteMsg m = new LogUnitWriteMsg(3L);
+        m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+        m.setRank(0L);
+        m.setBackpointerMap(Collections.emptyMap());
+        m.setPayload("3".getBytes());
+        sendMessage(m);
+        s2.shutdown();
+
+        // Without a summary, as after a crash, the first file must be recovered from its contents.
+        File summary = new File(serviceDir + File.separator + "log0.summary");
+        assertThat(summary.delete())
+                .isTrue();
+
+        LogUnitServer s3 = new LogUnitServer(opts);
+        this.router.setServerUnderTest(s3);
+        assertThat(s3.getContiguousTail())
+                .isEqualTo(3L);
+        assertThat(((FileLogUnitStorage) s3.getStorage()).channelMap.keySet())
+                .containsExactly(0L);
+        assertThat(summary)
+                .exists();
+        assertThat(s3)
+                .matchesDataAtAddress(3, "3".getBytes())
+                .matchesDataAtAddress(10000, "10000".getBytes());
+        s3.shutdown();
+    }
+
+    @Test
+    public void writesAreFailedWhenGroupCommitFails()
+            throws Exception
+    {
+        LogUnitServer s1 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .put("--group-commit-size", 1)
+                .build(), new FileLogUnitStorage(getTempDir(), true, 256, 1) {
+                    @Override
+                    public void sync(Collection<Long> addresses)
+                            throws IOException
+                    {
+                        throw new IOException("Sync failed");
+                    }
+                });
+
+        this.router.setServerUnderTest(s1);
+        LogUnitWriteMsg m = new LogUnitWriteMsg(0L);
+        m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+        m.setRank(0L);
+        m.setBackpointerMap(Collections.emptyMap());
+        m.setPayload("0".getBytes());
+        sendMessage(m);
+
+        for (int i = 0; i < 100 && getResponseMessages().isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(getResponseMessages())
+                .extracting(CorfuMsg::getMsgType)
+                .containsExactly(CorfuMsg.CorfuMsgType.ERROR_SYNC);
+        s1.shutdown();
+    }
+
+    @Test
+    public void groupCommitSurvivesUncheckedSyncFailures()
+            throws Exception
+    {
+        LogUnitServer s1 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--single", false)
+                .put("--sync", true)
+                .put("--max-cache", 1000000)
+                .put("--group-commit-size", 1)
+                .build(), new FileLogUnitStorage(getTempDir(), true, 256, 1) {
+                    @Override
+                    public void sync(Collection<Long> addresses)
+                    {
+                        throw new RuntimeException(new IOException("Reopening the log file failed"));
+                    }
+                });
+
+        this.router.setServerUnderTest(s1);
+        for (long address = 0L; address < 2L; address++) {
+            LogUnitWriteMsg m = new LogUnitWriteMsg(address);
+            m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+            m.setRank(0L);
+            m.setBackpointerMap(Collections.emptyMap());
+            m.setPayload(Long.toString(address).getBytes());
+            sendMessage(m);
+        }
+
+        // Both writes are answered, so the group commit thread survived the first failure.
+        for (int i = 0; i < 100 && getResponseMessages().size() < 2; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(getResponseMessages())
+                .extracting(CorfuMsg::getMsgType)
+                .containsExactly(CorfuMsg.CorfuMsgType.ERROR_SYNC, CorfuMsg.CorfuMsgType.ERROR_SYNC);
+        s1.shutdown();
+    }
+
+    @Test
+    public void inMemoryStorageTrimsLowestAddressesWhenFull()
+            throws Exception
+    {
+        LogUnitServer s1 = new LogUnitServer(new ImmutableMap.Builder<String,Object>()
+                .put("--single", false)
+                .put("--max-cache", 1000000)
+                .build(), new InMemoryLogUnitStorage(2));
+
+        this.router.setServerUnderTest(s1);
+        for (long address = 0L; address < 3L; address++) {
+            LogUnitWriteMsg m = new LogUnitWriteMsg(address);
+            m.setStreams(Collections.singleton(CorfuRuntime.getStreamID("a")));
+            m.setRank(0L);
+            m.setBackpointerMap(Collections.emptyMap());
+            m.setPayload(Long.toString(address).getBytes());
+            sendMessage(m);
+        }
+        // The trimmed entry is no longer cached once the write which trimmed it returns.
+        assertThat(s1.getDataCache().getIfPresent(0L))
+                .isNull();
+        assertThat(s1.storageTrims)
+                .isEmpty();
+        // Entries are still served once evicted from the cache.
+        s1.getDataCache().invalidateAll();
+
+        assertThat(s1)
+                .matchesDataAtAddress(1, "1".getBytes())
+                .matchesDataAtAddress(2, "2".getBytes());
+        assertThat(s1.trimRange.contains(0L))
+                .isTrue();
+    }
+
+    @Test
+    public void storageEngineIsSelectedByOption()
+    {
+        assertThat(LogUnitServer.createStorage(new ImmutableMap.Builder<String,Object>()
+                .put("--memory", true)
+                .put("--max-cache", 1000000)
+                .build()))
+                .isInstanceOf(InMemoryLogUnitStorage.class);
+        assertThat(LogUnitServer.createStorage(new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", getTempDir())
+                .put("--memory", false)
+                .put("--storage", "memory")
+                .put("--max-cache", 1000000)
+                .build()))
+                .isInstanceOf(InMemoryLogUnitStorage.class);
+        assertThat(LogUnitServer.createStorage(new ImmutableMap.Builder<String,Object>()
+                .put("--log-path", getTempDir())
+                .put("--memory", false)
+                .put("--max-cache", 1000000)
+                .build()))
+                .isInstanceOf(FileLogUnitStorage.class);
+    }
+}
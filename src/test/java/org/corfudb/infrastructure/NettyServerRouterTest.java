@@ -0,0 +1,49 @@
+package org.corfudb.infrastructure;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.corfudb.AbstractCorfuTest;
+import org.corfudb.protocols.wireprotocol.CorfuMsg;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NettyServerRouterTest extends AbstractCorfuTest {
+
+    CorfuMsg ping(long deadline) {
+        CorfuMsg m = new CorfuMsg(CorfuMsg.CorfuMsgType.PING);
+        m.setClientID(UUID.randomUUID());
+        m.setDeadline(deadline);
+        // Deadlines are carried as the time remaining, so send the message over the wire.
+        ByteBuf b = Unpooled.buffer();
+        m.serialize(b);
+        return CorfuMsg.deserialize(b);
+    }
+
+    @Test
+    public void messagesPastTheirDeadlineAreDropped() {
+        NettyServerRouter nsr = new NettyServerRouter();
+        nsr.addServer(new BaseServer(nsr));
+        EmbeddedChannel ch = new EmbeddedChannel(nsr);
+
+        ch.writeInbound(ping(System.currentTimeMillis() + 60_000L));
+        assertThat(ch.outboundMessages())
+                .hasSize(1);
+        assertThat(((CorfuMsg) ch.readOutbound()).getMsgType())
+                .isEqualTo(CorfuMsg.CorfuMsgType.PONG);
+
+        CorfuMsg expired = ping(System.currentTimeMillis() + 60_000L);
+        expired.setDeadline(System.currentTimeMillis() - 1L);
+        ch.writeInbound(expired);
+        assertThat(ch.outboundMessages())
+                .isEmpty();
+
+        ch.writeInbound(ping(CorfuMsg.NO_DEADLINE));
+        assertThat(ch.outboundMessages())
+                .hasSize(1);
+        ch.finish();
+    }
+}
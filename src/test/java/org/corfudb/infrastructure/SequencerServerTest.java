@@ -4,11 +4,19 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
 import org.corfudb.protocols.wireprotocol.TokenRequestMsg;
 import org.corfudb.protocols.wireprotocol.TokenResponseMsg;
+import org.corfudb.protocols.wireprotocol.TxResolutionInfo;
 import org.corfudb.runtime.CorfuRuntime;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.corfudb.infrastructure.SequencerServerAssertions.assertThat;
@@ -106,6 +114,80 @@ public class SequencerServerTest extends AbstractServerTest {
         }
     }
 
+    @Test
+    public void batchedRequestsAreIssuedTogether()
+    {
+        UUID streamA = CorfuRuntime.getStreamID("a");
+        router.setBatchingReads(true);
+
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1));
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 2));
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1));
+
+        // Nothing is issued until the batch has been completely read.
+        assertThat(getResponseMessages())
+                .isEmpty();
+
+        router.completeRead();
+
+        assertThat(getResponseMessages())
+                .hasSize(3);
+        TokenResponseMsg r0 = (TokenResponseMsg) getResponseMessages().get(0);
+        TokenResponseMsg r1 = (TokenResponseMsg) getResponseMessages().get(1);
+        TokenResponseMsg r2 = (TokenResponseMsg) getResponseMessages().get(2);
+        assertThat(r0.getToken()).isEqualTo(0L);
+        assertThat(r0.getBackpointerMap()).containsEntry(streamA, -1L);
+        assertThat(r1.getToken()).isEqualTo(1L);
+        assertThat(r1.getBackpointerMap()).containsEntry(streamA, 0L);
+        assertThat(r2.getToken()).isEqualTo(3L);
+        assertThat(r2.getBackpointerMap()).containsEntry(streamA, 2L);
+
+        // A query in the middle of a batch observes the requests before it.
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1));
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 0));
+        assertThat(getLastMessageAs(TokenResponseMsg.class).getToken())
+                .isEqualTo(4L);
+        router.completeRead();
+        assertThat(getResponseMessages())
+                .hasSize(5);
+    }
+
+    @Test
+    public void concurrentRequestsHaveConsistentBackpointers()
+            throws Exception
+    {
+        UUID streamA = CorfuRuntime.getStreamID("a");
+        UUID streamB = CorfuRuntime.getStreamID("b");
+        final int num_threads = 4;
+        final int num_requests = 1000;
+
+        scheduleConcurrently(num_threads, threadNumber -> {
+            UUID stream = threadNumber % 2 == 0 ? streamA : streamB;
+            for (int i = 0; i < num_requests; i++) {
+                sendMessage(new TokenRequestMsg(Collections.singleton(stream), 1));
+            }
+        });
+        executeScheduled(num_threads, 30, TimeUnit.SECONDS);
+
+        assertThat(getResponseMessages())
+                .hasSize(num_threads * num_requests);
+
+        // For each stream, every backpointer must be the previous token issued for that stream.
+        for (UUID stream : new UUID[] {streamA, streamB}) {
+            List<TokenResponseMsg> issued = getResponseMessages().stream()
+                    .map(m -> (TokenResponseMsg) m)
+                    .filter(m -> m.getBackpointerMap().containsKey(stream))
+                    .sorted(Comparator.comparing(TokenResponseMsg::getToken))
+                    .collect(Collectors.toList());
+            long previous = -1L;
+            for (TokenResponseMsg m : issued) {
+                assertThat(m.getBackpointerMap().get(stream))
+                        .isEqualTo(previous);
+                previous = m.getToken();
+            }
+        }
+    }
+
     @Test
     public void checkSequencerCheckpointingWorks()
             throws Exception
@@ -138,4 +220,116 @@ public class SequencerServerTest extends AbstractServerTest {
                 .tokenIsAt(2);
     }
 
+    @Test
+    public void checkSequencerCheckpointRecoversStreamTails()
+            throws Exception
+    {
+        String serviceDir = getTempDir();
+        UUID streamA = CorfuRuntime.getStreamID("a");
+        UUID streamB = CorfuRuntime.getStreamID("b");
+
+        SequencerServer s1 = new SequencerServer(new ImmutableMap.Builder<String,Object>()
+                .put("--initial-token", "0")
+                .put("--log-path", serviceDir)
+                .put("--memory", false)
+                .put("--checkpoint", 60)
+                .build());
+
+        this.router.setServerUnderTest(s1);
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1));
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamB), 1));
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1));
+        s1.shutdown();
+
+        SequencerServer s2 = new SequencerServer(new ImmutableMap.Builder<String,Object>()
+                .put("--initial-token", -1)
+                .put("--log-path", serviceDir)
+                .put("--memory", false)
+                .put("--checkpoint", 60)
+                .build());
+        this.router.setServerUnderTest(s2);
+        assertThat(s2)
+                .tokenIsAt(3);
+
+        // The stream tails were recovered, so queries and backpointers survive the restart.
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamB), 0));
+        assertThat(getLastMessageAs(TokenResponseMsg.class).getToken())
+                .isEqualTo(1L);
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1));
+        assertThat(getLastMessageAs(TokenResponseMsg.class).getToken())
+                .isEqualTo(3L);
+        assertThat(getLastMessageAs(TokenResponseMsg.class).getBackpointerMap())
+                .containsEntry(streamA, 2L);
+    }
+
+    @Test
+    public void sequencerResolvesTransactionsByConflictKey()
+    {
+        UUID streamA = UUID.nameUUIDFromBytes("streamA".getBytes());
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1));
+        long readTimestamp = getLastMessageAs(TokenResponseMsg.class).getToken();
+
+        // A transaction writes key 1 after the others read.
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1,
+                new TxResolutionInfo(readTimestamp, Collections.emptyMap(),
+                        Collections.singletonMap(streamA, Collections.singleton(1L)))));
+        assertThat(getLastMessageAs(TokenResponseMsg.class).getTxResolution())
+                .isEqualTo(TokenResponseMsg.TxResolution.COMMITTED);
+
+        // A transaction which read key 2 commits, one which read key 1 aborts.
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1,
+                new TxResolutionInfo(readTimestamp,
+                        Collections.singletonMap(streamA, Collections.singleton(2L)),
+                        Collections.singletonMap(streamA, Collections.singleton(2L)))));
+        assertThat(getLastMessageAs(TokenResponseMsg.class).getTxResolution())
+                .isEqualTo(TokenResponseMsg.TxResolution.COMMITTED);
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1,
+                new TxResolutionInfo(readTimestamp,
+                        Collections.singletonMap(streamA, Collections.singleton(1L)),
+                        Collections.singletonMap(streamA, Collections.singleton(3L)))));
+        assertThat(getLastMessageAs(TokenResponseMsg.class).getTxResolution())
+                .isEqualTo(TokenResponseMsg.TxResolution.ABORTED);
+
+        // The aborted write of key 3 is not recorded, but a write of the whole object conflicts with every key.
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1,
+                new TxResolutionInfo(readTimestamp,
+                        Collections.singletonMap(streamA, Collections.singleton(3L)),
+                        Collections.emptyMap())));
+        assertThat(getLastMessageAs(TokenResponseMsg.class).getTxResolution())
+                .isEqualTo(TokenResponseMsg.TxResolution.COMMITTED);
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1));
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1,
+                new TxResolutionInfo(readTimestamp + 4,
+                        Collections.singletonMap(streamA, Collections.singleton(3L)),
+                        Collections.emptyMap())));
+        assertThat(getLastMessageAs(TokenResponseMsg.class).getTxResolution())
+                .isEqualTo(TokenResponseMsg.TxResolution.ABORTED);
+    }
+
+    @Test
+    public void retriedTransactionsDoNotConflictWithThemselves()
+    {
+        UUID streamA = UUID.nameUUIDFromBytes("streamA".getBytes());
+        sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1));
+        long readTimestamp = getLastMessageAs(TokenResponseMsg.class).getToken();
+
+        // A transaction which read the key it writes, and one which read the whole stream.
+        for (Set<Long> keys : Arrays.asList(Collections.singleton(1L), (Set<Long>) null)) {
+            Map<UUID, Set<Long>> readSet = Collections.singletonMap(streamA, keys);
+            Map<UUID, Set<Long>> writeSet = Collections.singletonMap(streamA, Collections.singleton(1L));
+            sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1,
+                    new TxResolutionInfo(readTimestamp, readSet, writeSet)));
+            TokenResponseMsg first = getLastMessageAs(TokenResponseMsg.class);
+            assertThat(first.getTxResolution())
+                    .isEqualTo(TokenResponseMsg.TxResolution.COMMITTED);
+
+            // Writing the token failed, so the transaction is retried with the same reads and writes.
+            sendMessage(new TokenRequestMsg(Collections.singleton(streamA), 1,
+                    new TxResolutionInfo(readTimestamp, readSet, writeSet, first.getToken())));
+            TokenResponseMsg retry = getLastMessageAs(TokenResponseMsg.class);
+            assertThat(retry.getTxResolution())
+                    .isEqualTo(TokenResponseMsg.TxResolution.COMMITTED);
+            readTimestamp = retry.getToken();
+        }
+    }
 }
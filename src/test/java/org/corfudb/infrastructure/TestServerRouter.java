@@ -6,6 +6,7 @@ import lombok.Setter;
 import org.corfudb.protocols.wireprotocol.CorfuMsg;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -25,6 +26,11 @@ public class TestServerRouter implements IServerRouter {
     @Getter
     public List<CorfuMsg> responseMessages;
 
+    /** Whether the server under test should defer responses until {@link #completeRead()}. */
+    @Getter
+    @Setter
+    boolean batchingReads;
+
     public TestServerRouter()
     {
         reset();
@@ -32,7 +38,7 @@ public class TestServerRouter implements IServerRouter {
 
     public void reset()
     {
-        this.responseMessages = new ArrayList<>();
+        this.responseMessages = Collections.synchronizedList(new ArrayList<>());
         this.requestCounter = new AtomicLong();
     }
 
@@ -46,4 +52,10 @@ public class TestServerRouter implements IServerRouter {
         msg.setRequestID(requestCounter.getAndIncrement());
         serverUnderTest.handleMessage(msg, null, this);
     }
+
+    /** Simulate the end of a batch of messages read from a channel. */
+    public void completeRead()
+    {
+        serverUnderTest.handleReadComplete(null, this);
+    }
 }
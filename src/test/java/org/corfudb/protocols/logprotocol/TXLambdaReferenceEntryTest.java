@@ -0,0 +1,43 @@
+package org.corfudb.protocols.logprotocol;
+
+import org.corfudb.runtime.CorfuRuntime;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TXLambdaReferenceEntryTest {
+
+    @Test
+    public void lambdaTransactionsOnTheSameStreamAreSerialized() throws Exception {
+        UUID streamA = CorfuRuntime.getStreamID("a");
+        try (TXLambdaReferenceEntry.LambdaLock ll =
+                     TXLambdaReferenceEntry.getLockForTXAddress(0L, Collections.singleton(streamA))) {
+            ll.lock();
+            // Another transaction on the same stream must wait for the lock.
+            assertThat(CompletableFuture.supplyAsync(() -> {
+                boolean acquired = true;
+                for (Lock l : TXLambdaReferenceEntry.getLockForTXAddress(1L, Collections.singleton(streamA))
+                        .getLocks()) {
+                    acquired &= l.tryLock();
+                }
+                return acquired;
+            }).get())
+                    .isFalse();
+        }
+    }
+
+    @Test
+    public void resolvedMethodsAreCached() throws Exception {
+        Method m = String.class.getMethod("length");
+        Method resolved = TXLambdaReferenceEntry.getMethodFromToString(m.toString());
+        assertThat(resolved)
+                .isEqualTo(m)
+                .isSameAs(TXLambdaReferenceEntry.getMethodFromToString(m.toString()));
+    }
+}
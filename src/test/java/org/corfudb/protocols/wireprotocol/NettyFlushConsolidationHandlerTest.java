@@ -0,0 +1,53 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.corfudb.AbstractCorfuTest;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NettyFlushConsolidationHandlerTest extends AbstractCorfuTest {
+
+    @Test
+    public void flushesAreCoalescedUntilTheEventLoopRuns() {
+        EmbeddedChannel ch = new EmbeddedChannel(new NettyFlushConsolidationHandler(10, 1_000L));
+
+        for (int i = 0; i < 3; i++) {
+            ch.writeAndFlush(Unpooled.wrappedBuffer(new byte[] {(byte) i}));
+        }
+        assertThat(ch.outboundMessages())
+                .isEmpty();
+
+        ch.runPendingTasks();
+        assertThat(ch.outboundMessages())
+                .hasSize(3);
+        ch.finish();
+    }
+
+    @Test
+    public void flushesWhenMessageThresholdIsReached() {
+        EmbeddedChannel ch = new EmbeddedChannel(new NettyFlushConsolidationHandler(2, 1_000L));
+
+        ch.writeAndFlush(Unpooled.wrappedBuffer(new byte[1]));
+        assertThat(ch.outboundMessages())
+                .isEmpty();
+        ch.writeAndFlush(Unpooled.wrappedBuffer(new byte[1]));
+        assertThat(ch.outboundMessages())
+                .hasSize(2);
+        ch.finish();
+    }
+
+    @Test
+    public void flushesWhenByteThresholdIsReached() {
+        EmbeddedChannel ch = new EmbeddedChannel(new NettyFlushConsolidationHandler(10, 100L));
+
+        ch.writeAndFlush(Unpooled.wrappedBuffer(new byte[10]));
+        assertThat(ch.outboundMessages())
+                .isEmpty();
+        ch.writeAndFlush(Unpooled.wrappedBuffer(new byte[100]));
+        assertThat(ch.outboundMessages())
+                .hasSize(2);
+        ch.finish();
+    }
+}
@@ -0,0 +1,35 @@
+package org.corfudb.protocols.wireprotocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.corfudb.AbstractCorfuTest;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TokenResponseMsgTest extends AbstractCorfuTest {
+
+    @Test
+    public void resolutionIsDecoded() {
+        ByteBuf b = Unpooled.buffer();
+        new TokenResponseMsg(10L, Collections.emptyMap(), TokenResponseMsg.TxResolution.ABORTED).serialize(b);
+
+        assertThat(((TokenResponseMsg) CorfuMsg.deserialize(b)).getTxResolution())
+                .isEqualTo(TokenResponseMsg.TxResolution.ABORTED);
+    }
+
+    @Test
+    public void invalidResolutionIsRejected() {
+        ByteBuf b = Unpooled.buffer();
+        new TokenResponseMsg(10L, Collections.emptyMap(), TokenResponseMsg.TxResolution.ABORTED).serialize(b);
+        // The resolution is the last byte of the message.
+        b.setByte(b.writerIndex() - 1, TokenResponseMsg.TxResolution.values().length);
+
+        assertThatThrownBy(() -> CorfuMsg.deserialize(b))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid transaction resolution");
+    }
+}
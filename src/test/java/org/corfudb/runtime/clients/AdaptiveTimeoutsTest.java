@@ -0,0 +1,87 @@
+package org.corfudb.runtime.clients;
+
+import org.corfudb.protocols.wireprotocol.CorfuMsg;
+import org.corfudb.protocols.wireprotocol.CorfuMsg.CorfuMsgType;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveTimeoutsTest {
+
+    @Test
+    public void timeoutIsMaximumUntilLatencyIsKnown() {
+        AdaptiveTimeouts t = new AdaptiveTimeouts();
+        for (int i = 0; i < AdaptiveTimeouts.RECOMPUTE_INTERVAL - 1; i++) {
+            t.recordLatency(CorfuMsgType.TOKEN_REQ, Duration.ofMillis(1).toNanos());
+        }
+        assertThat(t.getTimeout(CorfuMsgType.TOKEN_REQ))
+                .isEqualTo(t.getMaxTimeout());
+    }
+
+    @Test
+    public void timeoutAdaptsToLatencyOfEachType() {
+        AdaptiveTimeouts t = new AdaptiveTimeouts();
+        t.setMinTimeout(Duration.ofMillis(10));
+        for (int i = 0; i < AdaptiveTimeouts.WINDOW_SIZE; i++) {
+            t.recordLatency(CorfuMsgType.TOKEN_REQ, Duration.ofMillis(50).toNanos());
+            t.recordLatency(CorfuMsgType.READ_REQUEST, Duration.ofMillis(1).toNanos());
+            t.recordLatency(CorfuMsgType.WRITE, Duration.ofSeconds(10).toNanos());
+        }
+        assertThat(t.getTimeout(CorfuMsgType.TOKEN_REQ))
+                .isEqualTo(Duration.ofMillis(50 * AdaptiveTimeouts.LATENCY_MULTIPLIER));
+        // Timeouts are bounded by the minimum and maximum.
+        assertThat(t.getTimeout(CorfuMsgType.READ_REQUEST))
+                .isEqualTo(Duration.ofMillis(10));
+        assertThat(t.getTimeout(CorfuMsgType.WRITE))
+                .isEqualTo(t.getMaxTimeout());
+        assertThat(t.getTimeout(CorfuMsgType.FILL_HOLE))
+                .isEqualTo(t.getMaxTimeout());
+    }
+
+    @Test
+    public void timeoutBacksOffWhenLatencyIncreases() {
+        AdaptiveTimeouts t = new AdaptiveTimeouts();
+        t.setMinTimeout(Duration.ofMillis(10));
+        for (int i = 0; i < AdaptiveTimeouts.WINDOW_SIZE; i++) {
+            t.recordLatency(CorfuMsgType.READ_REQUEST, Duration.ofMillis(1).toNanos());
+        }
+        assertThat(t.getTimeout(CorfuMsgType.READ_REQUEST))
+                .isEqualTo(Duration.ofMillis(10));
+        // Reads now take 50ms, so each attempt times out until the timeout has grown past 50ms.
+        Duration latency = Duration.ofMillis(50);
+        int attempts = 0;
+        while (t.getTimeout(CorfuMsgType.READ_REQUEST).compareTo(latency) <= 0) {
+            t.recordTimeout(CorfuMsgType.READ_REQUEST, t.getTimeout(CorfuMsgType.READ_REQUEST).toNanos());
+            attempts++;
+        }
+        assertThat(attempts)
+                .isLessThanOrEqualTo(3);
+        // Once reads complete again, the timeout adapts to the new latency.
+        for (int i = 0; i < AdaptiveTimeouts.WINDOW_SIZE; i++) {
+            t.recordLatency(CorfuMsgType.READ_REQUEST, latency.toNanos());
+        }
+        assertThat(t.getTimeout(CorfuMsgType.READ_REQUEST))
+                .isEqualTo(latency.multipliedBy(AdaptiveTimeouts.LATENCY_MULTIPLIER));
+        // Timeouts never back off past the maximum.
+        for (int i = 0; i < 10; i++) {
+            t.recordTimeout(CorfuMsgType.READ_REQUEST, t.getTimeout(CorfuMsgType.READ_REQUEST).toNanos());
+        }
+        assertThat(t.getTimeout(CorfuMsgType.READ_REQUEST))
+                .isEqualTo(t.getMaxTimeout());
+    }
+
+    @Test
+    public void deadlineLimitsRemainingTime() {
+        assertThat(OperationDeadline.remaining(100L))
+                .isEqualTo(100L);
+        OperationDeadline.set(System.currentTimeMillis() - 1);
+        try {
+            assertThat(OperationDeadline.remaining(100L))
+                    .isLessThanOrEqualTo(0L);
+        } finally {
+            OperationDeadline.set(CorfuMsg.NO_DEADLINE);
+        }
+    }
+}
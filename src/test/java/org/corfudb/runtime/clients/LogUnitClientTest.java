@@ -196,4 +196,52 @@ public class LogUnitClientTest extends AbstractClientTest {
                    .isEqualTo(Integer.toString(i).getBytes());
        }
     }
+
+    @Test
+    public void canReadRangeWithoutLowerBound()
+            throws Exception
+    {
+        client.setRangeReadChunkSize(4);
+        for (int i = 0; i < 10; i++) {
+            client.write(i, Collections.<UUID>emptySet(), 0,
+                    Integer.toString(i).getBytes(), Collections.emptyMap()).get();
+        }
+
+        RangeSet<Long> ranges = TreeRangeSet.create();
+        ranges.add(Range.lessThan(10L));
+        Map<Long, LogUnitReadResponseMsg.ReadResult> rm = client.readRange(ranges).get();
+        assertThat(rm)
+                .hasSize(10);
+        for (long i = 0; i < 10; i++)
+        {
+            assertThat(rm.get(i).getPayload())
+                    .isEqualTo(Long.toString(i).getBytes());
+        }
+    }
+
+    @Test
+    public void canReadRangeInChunks()
+            throws Exception
+    {
+        client.setRangeReadChunkSize(16);
+        client.setRangeReadWindow(2);
+        RangeSet<Long> ranges = TreeRangeSet.create();
+        ranges.add(Range.closed(0L, 9L));
+        ranges.add(Range.closedOpen(20L, 100L));
+        for (int i = 0; i < 100; i++) {
+            client.write(i, Collections.<UUID>emptySet(), 0,
+                    Integer.toString(i).getBytes(), Collections.emptyMap()).get();
+        }
+
+        Map<Long, LogUnitReadResponseMsg.ReadResult> rm = client.readRange(ranges).get();
+        assertThat(rm)
+                .hasSize(90)
+                .doesNotContainKey(10L)
+                .doesNotContainKey(19L);
+        for (long i : Utils.discretizeRangeSet(ranges))
+        {
+            assertThat(rm.get(i).getPayload())
+                    .isEqualTo(Long.toString(i).getBytes());
+        }
+    }
 }
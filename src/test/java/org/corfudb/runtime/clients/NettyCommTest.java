@@ -21,6 +21,7 @@ import org.corfudb.infrastructure.BaseServer;
 import org.corfudb.infrastructure.NettyServerRouter;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageDecoder;
 import org.corfudb.protocols.wireprotocol.NettyCorfuMessageEncoder;
+import org.corfudb.protocols.wireprotocol.NettyFlushConsolidationHandler;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -44,8 +45,57 @@ public class NettyCommTest extends AbstractCorfuTest {
         }
     }
 
+    @FunctionalInterface
+    interface NettyCommTestFunction {
+        void runTest(int port) throws Exception;
+    }
+
     @Test
     public void nettyServerClientPingable() throws Exception {
+        runWithBaseServer(port -> {
+            NettyClientRouter ncr = new NettyClientRouter("localhost", port);
+            try {
+                ncr.addClient(new BaseClient());
+                ncr.start();
+                assertThat(ncr.getClient(BaseClient.class).pingSync())
+                        .isTrue();
+            }
+            finally {
+                ncr.stop();
+            }
+        });
+    }
+
+    @Test
+    public void routersShareClientResources() throws Exception {
+        runWithBaseServer(port -> {
+            NettyClientResources resources = new NettyClientResources(1, 1);
+            try {
+                NettyClientRouter first = new NettyClientRouter("localhost", port, resources);
+                NettyClientRouter second = new NettyClientRouter("localhost", port, resources);
+                first.addClient(new BaseClient());
+                second.addClient(new BaseClient());
+                first.start();
+                second.start();
+                assertThat(first.getClient(BaseClient.class).pingSync())
+                        .isTrue();
+                // Stopping a router leaves the shared resources running for the others.
+                first.stop();
+                assertThat(resources.getWorkerGroup().isShuttingDown())
+                        .isFalse();
+                assertThat(second.getClient(BaseClient.class).pingSync())
+                        .isTrue();
+                second.stop();
+            }
+            finally {
+                resources.shutdown();
+            }
+            assertThat(resources.getWorkerGroup().isShuttingDown())
+                    .isTrue();
+        });
+    }
+
+    void runWithBaseServer(NettyCommTestFunction function) throws Exception {
         NettyServerRouter nsr = new NettyServerRouter();
         nsr.addServer(new BaseServer(nsr));
         int port = findRandomOpenPort();
@@ -102,6 +152,7 @@ public class NettyCommTest extends AbstractCorfuTest {
                         public void initChannel(io.netty.channel.socket.SocketChannel ch) throws Exception {
                             ch.pipeline().addLast(new LengthFieldPrepender(4));
                             ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
+                            ch.pipeline().addLast(new NettyFlushConsolidationHandler());
                             ch.pipeline().addLast(ee, new NettyCorfuMessageDecoder());
                             ch.pipeline().addLast(ee, new NettyCorfuMessageEncoder());
                             ch.pipeline().addLast(ee, nsr);
@@ -109,17 +160,7 @@ public class NettyCommTest extends AbstractCorfuTest {
                     });
             ChannelFuture f = b.bind(port).sync();
 
-            NettyClientRouter ncr = new NettyClientRouter("localhost", port);
-            try {
-
-                ncr.addClient(new BaseClient());
-                ncr.start();
-                assertThat(ncr.getClient(BaseClient.class).pingSync())
-                        .isTrue();
-            }
-            finally {
-                ncr.stop();
-            }
+            function.runTest(port);
             f.channel().close();
 
         }
@@ -38,6 +38,9 @@ public class TestClientRouter implements IClientRouter, IServerRouter {
 
     public AtomicLong requestID;
 
+    /** The number of messages of each type routed to the servers. */
+    public Map<CorfuMsg.CorfuMsgType, AtomicLong> messageCounts;
+
     @Getter
     @Setter
     public long epoch;
@@ -54,6 +57,7 @@ public class TestClientRouter implements IClientRouter, IServerRouter {
         outstandingRequests = new ConcurrentHashMap<>();
         serverMap = new ConcurrentHashMap<>();
         requestID = new AtomicLong();
+        messageCounts = new ConcurrentHashMap<>();
     }
 
     public void addServer(IServer server)
@@ -71,6 +75,7 @@ public class TestClientRouter implements IClientRouter, IServerRouter {
 
     void routeMessage(CorfuMsg message)
     {
+        messageCounts.computeIfAbsent(message.getMsgType(), k -> new AtomicLong()).incrementAndGet();
         CorfuMsg m = simulateSerialization(message);
         serverMap.get(message.getMsgType()).handleMessage(m, null, this);
     }
@@ -135,7 +140,8 @@ public class TestClientRouter implements IClientRouter, IServerRouter {
         log.trace("Sent message: {}", message);
         routeMessage(message);
         // Generate a timeout future, which will complete exceptionally if the main future is not completed.
-        final CompletableFuture<T> cfTimeout = CFUtils.within(cf, Duration.ofMillis(5000));
+        final CompletableFuture<T> cfTimeout = CFUtils.within(cf,
+                Duration.ofMillis(Math.max(0L, OperationDeadline.remaining(5000))));
         cfTimeout.exceptionally(e -> {
             outstandingRequests.remove(thisRequest);
             log.debug("Remove request {} due to timeout!", thisRequest);
@@ -423,6 +423,69 @@ public class SMRMapTest extends AbstractViewTest {
                 .isInstanceOf(TransactionAbortedException.class);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void transactionsOnDisjointKeysDoNotConflict ()
+            throws Exception {
+        checkTransactionsOnDisjointKeys();
+    }
+
+    @Test
+    public void transactionsResolvedBySequencerOnDisjointKeysDoNotConflict ()
+            throws Exception {
+        getRuntime().setSequencerTxResolution(true);
+        checkTransactionsOnDisjointKeys();
+    }
+
+    void checkTransactionsOnDisjointKeys() {
+        addServerForTest(getDefaultEndpoint(), new LayoutServer(defaultOptionsMap()));
+        addServerForTest(getDefaultEndpoint(), new LogUnitServer(defaultOptionsMap()));
+        addServerForTest(getDefaultEndpoint(), new SequencerServer(defaultOptionsMap()));
+        wireRouters();
+
+        getRuntime().connect();
+
+        Map<String,String> testMap = getRuntime().getObjectsView()
+                .open(CorfuRuntime.getStreamID("A"), SMRMap.class);
+        testMap.put("a", "z");
+        testMap.put("b", "z");
+
+        // A transaction which writes a key this transaction did not read doesn't abort it.
+        getRuntime().getObjectsView().TXBegin();
+        assertThat(testMap.get("a"))
+                .isEqualTo("z");
+        testMap.put("a", "a");
+        concurrentTransactionalPut("b", "f");
+        getRuntime().getObjectsView().TXEnd();
+        assertThat(testMap)
+                .containsEntry("a", "a")
+                .containsEntry("b", "f");
+
+        // But one which writes a key this transaction read does.
+        getRuntime().getObjectsView().TXBegin();
+        assertThat(testMap.get("a"))
+                .isEqualTo("a");
+        testMap.put("b", "b");
+        concurrentTransactionalPut("a", "f");
+        assertThatThrownBy(() -> getRuntime().getObjectsView().TXEnd())
+                .isInstanceOf(TransactionAbortedException.class);
+        assertThat(testMap)
+                .containsEntry("a", "f")
+                .containsEntry("b", "f");
+    }
+
+    @SuppressWarnings("unchecked")
+    void concurrentTransactionalPut(String key, String value) {
+        CompletableFuture.runAsync(() -> {
+            Map<String,String> testMap2 = getRuntime().getObjectsView()
+                    .open(UUID.nameUUIDFromBytes("A".getBytes()), SMRMap.class, null,
+                            EnumSet.of(ObjectOpenOptions.NO_CACHE), Serializers.SerializerType.JSON);
+            getRuntime().getObjectsView().TXBegin();
+            testMap2.put(key, value);
+            getRuntime().getObjectsView().TXEnd();
+        }).join();
+    }
+
     @Data
     @ToString
     static class TestObject {
@@ -47,6 +47,64 @@ public class CorfuSMRObjectProxyTest extends AbstractViewTest {
                 .isEqualTo("b");
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void callStackIsEmptyAfterProxiedCalls()
+            throws Exception {
+        getDefaultRuntime();
+
+        Map<String,String> testMap = getRuntime().getObjectsView().open(
+                CorfuRuntime.getStreamID("test"), SMRMap.class);
+        testMap.put("a", "a");
+        assertThat(testMap.put("a", "b"))
+                .isEqualTo("a");
+        assertThat(testMap.get("a"))
+                .isEqualTo("b");
+
+        getRuntime().getObjectsView().TXBegin();
+        testMap.put("b", "b");
+        assertThat(testMap.get("b"))
+                .isEqualTo("b");
+        getRuntime().getObjectsView().TXEnd();
+
+        assertThat(ProxyCallStack.get().depth)
+                .isEqualTo(0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void canReplayUpdatesWrittenWithMethodIds()
+            throws Exception {
+        CorfuRuntime r = getDefaultRuntime().setSmrMethodIdsEnabled(true);
+
+        Map<String,String> testMap = r.getObjectsView().build()
+                .setStreamName("test")
+                .setType(SMRMap.class)
+                .open();
+        SMRMethodDispatcher dispatcher = ((CorfuSMRObjectProxy) ((ICorfuObject) testMap).getProxy())
+                .getDispatcher();
+        assertThat(dispatcher.getInvoker("put"))
+                .isNotNull();
+        assertThat(dispatcher.getMethodName(SMRMethodDispatcher.getMethodId("put")))
+                .isEqualTo("put");
+
+        for (int i = 0; i < 100; i++) {
+            testMap.put(Integer.toString(i), Integer.toString(i));
+        }
+        assertThat(testMap.remove("0"))
+                .isEqualTo("0");
+
+        Map<String,String> replayedMap = r.getObjectsView().build()
+                .setStreamName("test")
+                .setType(SMRMap.class)
+                .addOption(ObjectOpenOptions.NO_CACHE)
+                .open();
+        assertThat(replayedMap)
+                .hasSize(99)
+                .doesNotContainKey("0")
+                .containsEntry("50", "50");
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void multipleWritesConsistencyTest()
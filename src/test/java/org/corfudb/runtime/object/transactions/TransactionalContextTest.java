@@ -39,4 +39,46 @@ public class TransactionalContextTest extends AbstractViewTest {
                 .isEqualTo(1);
 
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void transactionalWritesToMapAreOverlaid() throws Exception {
+        CorfuRuntime cr = getDefaultRuntime();
+
+        Map<String,String> smrMap = cr.getObjectsView().build()
+                .setStreamName("test")
+                .setType(SMRMap.class)
+                .open();
+        smrMap.put("a", "a");
+        smrMap.put("b", "b");
+
+        cr.getObjectsView().TXBegin();
+        assertThat(smrMap.put("a", "z"))
+                .isEqualTo("a");
+        assertThat(smrMap.remove("b"))
+                .isEqualTo("b");
+        smrMap.put("c", "c");
+        assertThat(smrMap)
+                .hasSize(2)
+                .containsEntry("a", "z")
+                .containsEntry("c", "c")
+                .doesNotContainKey("b");
+        assertThat(smrMap.keySet())
+                .containsOnly("a", "c");
+        cr.getObjectsView().TXAbort();
+
+        assertThat(smrMap)
+                .hasSize(2)
+                .containsEntry("a", "a")
+                .containsEntry("b", "b");
+
+        cr.getObjectsView().TXBegin();
+        smrMap.remove("a");
+        smrMap.put("b", "z");
+        cr.getObjectsView().TXEnd();
+
+        assertThat(smrMap)
+                .hasSize(1)
+                .containsEntry("b", "z");
+    }
 }
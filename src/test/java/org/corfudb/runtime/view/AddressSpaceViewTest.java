@@ -36,9 +36,11 @@ public class AddressSpaceViewTest extends AbstractViewTest {
         addServerForTest(getDefaultEndpoint(), new SequencerServer(defaultOptionsMap()));
         wireRouters();
 
-        getRuntime().setCacheDisabled(false).connect();
+        getRuntime().setCacheDisabled(false)
+                .setEmptyEntryCacheDuration(Duration.ofNanos(100))
+                .connect();
+        getRuntime().getAddressSpaceView().resetCaches();
 
-        getRuntime().getAddressSpaceView().setEmptyDuration(Duration.ofNanos(100));
         assertThat(getRuntime().getAddressSpaceView().read(0).getResultType())
                 .isEqualTo(LogUnitReadResponseMsg.ReadResultType.EMPTY);
         getRuntime().getLayoutView().getLayout().getLogUnitClient(0, 0).fillHole(0);
@@ -48,6 +50,33 @@ public class AddressSpaceViewTest extends AbstractViewTest {
                 .isEqualTo(LogUnitReadResponseMsg.ReadResultType.FILLED_HOLE);
     }
 
+    @Test
+    public void emptyEntriesAreNotCachedWhenDisabled() {
+        addServerForTest(getDefaultEndpoint(), new LayoutServer(defaultOptionsMap()));
+        addServerForTest(getDefaultEndpoint(), new LogUnitServer(defaultOptionsMap()));
+        addServerForTest(getDefaultEndpoint(), new SequencerServer(defaultOptionsMap()));
+        wireRouters();
+
+        getRuntime().setCacheDisabled(false)
+                .setEmptyEntryCacheDuration(Duration.ZERO)
+                .connect();
+        getRuntime().getAddressSpaceView().resetCaches();
+
+        assertThat(getRuntime().getAddressSpaceView().read(0).getResultType())
+                .isEqualTo(LogUnitReadResponseMsg.ReadResultType.EMPTY);
+        getRuntime().getLayoutView().getLayout().getLogUnitClient(0, 0).fillHole(0);
+        assertThat(getRuntime().getAddressSpaceView().read(0).getResultType())
+                .isEqualTo(LogUnitReadResponseMsg.ReadResultType.FILLED_HOLE);
+    }
+
+    @Test
+    public void runtimesDoNotShareReadCaches() {
+        CorfuRuntime r1 = new CorfuRuntime();
+        CorfuRuntime r2 = new CorfuRuntime();
+        assertThat(r1.getAddressSpaceView().readCache)
+                .isNotSameAs(r2.getAddressSpaceView().readCache);
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void ensureStripingWorks()
@@ -6,6 +6,8 @@ import org.corfudb.infrastructure.LayoutServer;
 import org.corfudb.infrastructure.LogUnitServer;
 import org.corfudb.protocols.wireprotocol.IMetadata;
 import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.clients.LogUnitClient;
+import org.corfudb.runtime.exceptions.OverwriteException;
 import org.junit.Test;
 
 import java.util.Collections;
@@ -14,6 +16,7 @@ import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.corfudb.infrastructure.LogUnitServerAssertions.assertThat;
 
 /**
@@ -191,4 +194,71 @@ public class ChainReplicationViewTest extends AbstractViewTest {
         assertThat(l9002)
             .matchesDataAtAddress(0, testPayload);
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void pipelinedWritesNeverReachTailWithoutHead()
+            throws Exception
+    {
+        addServerForTest(getEndpoint(9000), new LayoutServer(defaultOptionsMap()));
+
+        LogUnitServer l9000 = new LogUnitServer(defaultOptionsMap());
+        LogUnitServer l9001 = new LogUnitServer(defaultOptionsMap());
+        LogUnitServer l9002 = new LogUnitServer(defaultOptionsMap());
+
+        addServerForTest(getEndpoint(9000), l9000);
+        addServerForTest(getEndpoint(9001), l9001);
+        addServerForTest(getEndpoint(9002), l9002);
+        wireRouters();
+
+        CorfuRuntime r = getRuntime().setPipelinedChainWrites(true).connect();
+        setLayout(new Layout(
+                Collections.singletonList(getEndpoint(9000)),
+                Collections.singletonList(getEndpoint(9000)),
+                Collections.singletonList(new Layout.LayoutSegment(
+                        Layout.ReplicationMode.CHAIN_REPLICATION,
+                        0L,
+                        -1L,
+                        Collections.singletonList(
+                                new Layout.LayoutStripe(
+                                        ImmutableList.<String>builder()
+                                                .add(getEndpoint(9000))
+                                                .add(getEndpoint(9001))
+                                                .add(getEndpoint(9002))
+                                                .build()
+                                )
+                        )
+                )),
+                1L
+        ));
+
+        UUID streamA = UUID.nameUUIDFromBytes("stream A".getBytes());
+        byte[] testPayload = "hello world".getBytes();
+
+        r.getAddressSpaceView().write(0, Collections.singleton(streamA),
+                testPayload, Collections.emptyMap());
+
+        assertThat(l9000)
+                .matchesDataAtAddress(0, testPayload);
+        assertThat(l9001)
+                .matchesDataAtAddress(0, testPayload);
+        assertThat(l9002)
+                .matchesDataAtAddress(0, testPayload);
+
+        // Another writer wins at the head, so the tail must never see our write.
+        byte[] otherPayload = "other".getBytes();
+        r.getRouter(getEndpoint(9000)).getClient(LogUnitClient.class)
+                .write(1, Collections.singleton(streamA), 0L, otherPayload, Collections.emptyMap()).get();
+
+        assertThatThrownBy(() -> r.getAddressSpaceView().write(1, Collections.singleton(streamA),
+                testPayload, Collections.emptyMap()))
+                .isInstanceOf(OverwriteException.class);
+
+        assertThat(l9000)
+                .matchesDataAtAddress(1, otherPayload);
+        assertThat(l9001)
+                .isEmptyAtAddress(1);
+        assertThat(l9002)
+                .isEmptyAtAddress(1);
+    }
 }
@@ -3,12 +3,18 @@ package org.corfudb.runtime.view;
 import lombok.Getter;
 import org.corfudb.infrastructure.LayoutServer;
 import org.corfudb.infrastructure.SequencerServer;
+import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.runtime.CorfuRuntime;
+import org.corfudb.runtime.clients.OperationDeadline;
 import org.junit.Test;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.TimeoutException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Created by mwei on 1/6/16.
@@ -58,4 +64,68 @@ public class LayoutViewTest extends AbstractViewTest {
         assertThat(r.getLayoutView().getLayout().epoch)
                 .isEqualTo(1L);
     }
+
+    @Test
+    public void addressesResolveAcrossSegmentsAndStripes() {
+        Layout.LayoutStripe a = new Layout.LayoutStripe(Collections.singletonList("a:9000"));
+        Layout.LayoutStripe b = new Layout.LayoutStripe(Collections.singletonList("b:9000"));
+        Layout.LayoutStripe c = new Layout.LayoutStripe(Collections.singletonList("c:9000"));
+        Layout.LayoutStripe d = new Layout.LayoutStripe(Collections.singletonList("d:9000"));
+        Layout.LayoutStripe e = new Layout.LayoutStripe(Collections.singletonList("e:9000"));
+        Layout l = new Layout(
+                Collections.singletonList("a:9000"),
+                Collections.singletonList("a:9000"),
+                Arrays.asList(
+                        new Layout.LayoutSegment(Layout.ReplicationMode.CHAIN_REPLICATION,
+                                0L, 100L, Arrays.asList(a, b)),
+                        new Layout.LayoutSegment(Layout.ReplicationMode.QUORUM_REPLICATION,
+                                100L, -1L, Arrays.asList(c, d, e))),
+                1L);
+
+        assertThat(l.getStripe(0L)).isEqualTo(a);
+        assertThat(l.getStripe(99L)).isEqualTo(b);
+        assertThat(l.getLocalAddress(99L)).isEqualTo(49L);
+        assertThat(l.getGlobalAddress(b, 49L)).isEqualTo(99L);
+        assertThat(l.getReplicationMode(99L)).isEqualTo(Layout.ReplicationMode.CHAIN_REPLICATION);
+
+        assertThat(l.getSegment(100L)).isSameAs(l.getSegments().get(1));
+        assertThat(l.getStripe(101L)).isEqualTo(e);
+        assertThat(l.getLocalAddress(1000L)).isEqualTo(333L);
+        assertThat(l.getGlobalAddress(d, 333L)).isEqualTo(1000L);
+        assertThat(l.getReplicationMode(Long.MAX_VALUE)).isEqualTo(Layout.ReplicationMode.QUORUM_REPLICATION);
+    }
+
+    @Test
+    public void unmappedAddressesAreRejected() {
+        Layout l = new Layout(
+                Collections.singletonList("a:9000"),
+                Collections.singletonList("a:9000"),
+                Collections.singletonList(new Layout.LayoutSegment(Layout.ReplicationMode.CHAIN_REPLICATION,
+                        10L, 20L, Collections.singletonList(
+                                new Layout.LayoutStripe(Collections.singletonList("a:9000"))))),
+                1L);
+
+        assertThat(l.getReplicationMode(9L)).isNull();
+        assertThat(l.getReplicationMode(20L)).isNull();
+        assertThatThrownBy(() -> l.getSegment(20L))
+                .isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    public void operationsStopRetryingAtTheirDeadline() {
+        addServerForTest(getDefaultEndpoint(), new LayoutServer(defaultOptionsMap()));
+        wireRouters();
+
+        CorfuRuntime r = getRuntime().connect()
+                .setOperationTimeout(Duration.ofMillis(200));
+        long start = System.currentTimeMillis();
+        assertThatThrownBy(() -> r.getLayoutView().layoutHelper(l -> {
+            throw new RuntimeException(new TimeoutException());
+        })).hasCauseInstanceOf(TimeoutException.class);
+        // The default retry rate would have waited for seconds before the first retry.
+        assertThat(System.currentTimeMillis() - start)
+                .isLessThan(Duration.ofSeconds(2).toMillis());
+        assertThat(OperationDeadline.get())
+                .isEqualTo(CorfuMsg.NO_DEADLINE);
+    }
 }
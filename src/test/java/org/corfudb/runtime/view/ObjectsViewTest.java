@@ -10,6 +10,7 @@ import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.runtime.collections.SMRMap;
 import org.corfudb.runtime.exceptions.TransactionAbortedException;
 import org.corfudb.runtime.object.Accessor;
+import org.corfudb.runtime.object.ICorfuObject;
 import org.corfudb.runtime.object.Mutator;
 import org.corfudb.util.serializer.Serializers;
 import org.junit.Test;
@@ -198,4 +199,62 @@ public class ObjectsViewTest extends AbstractViewTest  {
         assertThat(smrMap)
                 .containsEntry("a", "b");
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void canRestoreObjectFromCheckpoint()
+            throws Exception {
+        //begin tests
+        CorfuRuntime r = getDefaultRuntime();
+        Map<String, String> smrMap = r.getObjectsView().open("map a", SMRMap.class);
+
+        for (int i = 0; i < 100; i++) {
+            smrMap.put(Integer.toString(i), Integer.toString(i));
+        }
+        assertThat(r.getObjectsView().checkpoint(smrMap))
+                .isNotEqualTo(-1L);
+        long checkpointAddress = r.getStreamsView().get(CorfuRuntime.getStreamID("map a")).check();
+        smrMap.put("a", "b");
+
+        // A new instance of the object should start from the checkpoint, if asked to.
+        Map<String, String> restoredMap = r.getObjectsView().build()
+                .setStreamName("map a")
+                .setType(SMRMap.class)
+                .addOption(ObjectOpenOptions.NO_CACHE)
+                .addOption(ObjectOpenOptions.RESTORE_CHECKPOINT)
+                .open();
+        assertThat(((ICorfuObject) restoredMap).getProxy().getTimestamp())
+                .isEqualTo(checkpointAddress);
+        assertThat(restoredMap)
+                .hasSize(101)
+                .containsEntry("50", "50")
+                .containsEntry("a", "b");
+
+        // Otherwise, the whole stream is replayed.
+        Map<String, String> replayedMap = r.getObjectsView().build()
+                .setStreamName("map a")
+                .setType(SMRMap.class)
+                .addOption(ObjectOpenOptions.NO_CACHE)
+                .open();
+        assertThat(((ICorfuObject) replayedMap).getProxy().getTimestamp())
+                .isEqualTo(-1L);
+        assertThat(replayedMap)
+                .hasSize(101)
+                .containsEntry("50", "50")
+                .containsEntry("a", "b");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void emptyObjectIsNotCheckpointed()
+            throws Exception {
+        //begin tests
+        CorfuRuntime r = getDefaultRuntime();
+        Map<String, String> smrMap = r.getObjectsView().open("map a", SMRMap.class);
+
+        assertThat(r.getObjectsView().checkpoint(smrMap))
+                .isEqualTo(-1L);
+        assertThatThrownBy(() -> r.getObjectsView().checkpoint(new HashMap<String, String>()))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
 }
@@ -4,6 +4,7 @@ import lombok.Getter;
 import org.corfudb.infrastructure.LayoutServer;
 import org.corfudb.infrastructure.LogUnitServer;
 import org.corfudb.infrastructure.SequencerServer;
+import org.corfudb.protocols.wireprotocol.CorfuMsg;
 import org.corfudb.protocols.wireprotocol.IMetadata;
 import org.corfudb.runtime.CorfuRuntime;
 import org.corfudb.runtime.clients.SequencerClient;
@@ -15,6 +16,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -108,6 +110,85 @@ public class StreamViewTest extends AbstractViewTest {
 
 
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void canReadSparseStreamWithPrefetchedBackpointers()
+            throws Exception {
+        // default layout is chain replication.
+        addServerForTest(getDefaultEndpoint(), new LayoutServer(defaultOptionsMap()));
+        addServerForTest(getDefaultEndpoint(), new LogUnitServer(defaultOptionsMap()));
+        addServerForTest(getDefaultEndpoint(), new SequencerServer(defaultOptionsMap()));
+        wireRouters();
+
+        //begin tests
+        CorfuRuntime r = getRuntime()
+                .setCacheDisabled(true)
+                .setBackpointerPrefetchSize(2)
+                .connect();
+
+        UUID streamA = UUID.nameUUIDFromBytes("stream A".getBytes());
+        UUID streamB = UUID.nameUUIDFromBytes("stream B".getBytes());
+
+        // Write a stream whose entries are separated by increasingly large gaps,
+        // so that resolving its backpointers needs windows of several sizes.
+        StreamView svA = r.getStreamsView().get(streamA);
+        StreamView svB = r.getStreamsView().get(streamB);
+        for (int i = 0; i < 10; i++) {
+            svA.write(Integer.toString(i).getBytes());
+            for (int j = 0; j < i * 3; j++) {
+                svB.write("filler".getBytes());
+            }
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(svA.read().getPayload())
+                    .isEqualTo(Integer.toString(i).getBytes());
+        }
+        assertThat(svA.read())
+                .isEqualTo(null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void prefetchingBackpointersBatchesReads()
+            throws Exception {
+        // default layout is chain replication.
+        addServerForTest(getDefaultEndpoint(), new LayoutServer(defaultOptionsMap()));
+        addServerForTest(getDefaultEndpoint(), new LogUnitServer(defaultOptionsMap()));
+        addServerForTest(getDefaultEndpoint(), new SequencerServer(defaultOptionsMap()));
+        wireRouters();
+
+        //begin tests
+        final int numEntries = 64;
+        final int prefetchSize = 8;
+        CorfuRuntime r = getRuntime()
+                .setCacheDisabled(false)
+                .setBackpointerPrefetchSize(prefetchSize)
+                .connect();
+
+        UUID streamA = UUID.nameUUIDFromBytes("stream A".getBytes());
+        StreamView sv = r.getStreamsView().get(streamA);
+        for (int i = 0; i < numEntries; i++) {
+            sv.write(Integer.toString(i).getBytes());
+        }
+        r.getAddressSpaceView().resetCaches();
+        Map<CorfuMsg.CorfuMsgType, AtomicLong> counts = routerMap.get(getDefaultEndpoint()).messageCounts;
+        counts.clear();
+
+        StreamView reader = r.getStreamsView().get(streamA);
+        for (int i = 0; i < numEntries; i++) {
+            assertThat(reader.read().getPayload())
+                    .isEqualTo(Integer.toString(i).getBytes());
+        }
+
+        // Every entry is fetched by a range read of a prefetch window, instead of one read per entry.
+        assertThat(counts.getOrDefault(CorfuMsg.CorfuMsgType.READ_RANGE, new AtomicLong()).get())
+                .isGreaterThan(0L)
+                .isLessThanOrEqualTo(numEntries / prefetchSize);
+        assertThat(counts.getOrDefault(CorfuMsg.CorfuMsgType.READ_REQUEST, new AtomicLong()).get())
+                .isEqualTo(0L);
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void canReadWriteFromCachedStream()
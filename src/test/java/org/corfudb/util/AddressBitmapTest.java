@@ -0,0 +1,67 @@
+package org.corfudb.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AddressBitmapTest {
+
+    @Test
+    public void addressesAreAddedOnce() {
+        AddressBitmap b = new AddressBitmap();
+        assertThat(b.add(5L))
+                .isTrue();
+        assertThat(b.add(5L))
+                .isFalse();
+        assertThat(b.add(1L << 40))
+                .isTrue();
+        assertThat(b.contains(5L))
+                .isTrue();
+        assertThat(b.contains(1L << 40))
+                .isTrue();
+        assertThat(b.contains(6L))
+                .isFalse();
+        assertThat(b.getCardinality())
+                .isEqualTo(2L);
+    }
+
+    @Test
+    public void containersMatchASortedSet() {
+        AddressBitmap b = new AddressBitmap();
+        TreeSet<Long> expected = new TreeSet<>();
+        Random r = new Random(0);
+        // Enough addresses in one container to convert it to a bitmap, and a few in the next.
+        for (int i = 0; i < AddressBitmap.ARRAY_MAX * 3; i++) {
+            long address = r.nextInt(AddressBitmap.CONTAINER_SIZE + 1000);
+            assertThat(b.add(address))
+                    .isEqualTo(expected.add(address));
+        }
+        assertThat(b.getCardinality())
+                .isEqualTo(expected.size());
+        for (long address = 0; address < AddressBitmap.CONTAINER_SIZE + 1000; address++) {
+            assertThat(b.contains(address))
+                    .isEqualTo(expected.contains(address));
+        }
+    }
+
+    @Test
+    public void nextClearAddressSkipsContiguousAddresses() {
+        AddressBitmap b = new AddressBitmap();
+        assertThat(b.nextClearAddress(0L))
+                .isEqualTo(0L);
+        // Fill the first container completely, and part of the second.
+        for (long address = 0; address < AddressBitmap.CONTAINER_SIZE + 10; address++) {
+            b.add(address);
+        }
+        b.add(AddressBitmap.CONTAINER_SIZE + 11);
+        assertThat(b.nextClearAddress(0L))
+                .isEqualTo(AddressBitmap.CONTAINER_SIZE + 10);
+        assertThat(b.nextClearAddress(AddressBitmap.CONTAINER_SIZE + 11))
+                .isEqualTo(AddressBitmap.CONTAINER_SIZE + 12);
+        assertThat(b.getCardinality())
+                .isEqualTo(AddressBitmap.CONTAINER_SIZE + 11);
+    }
+}